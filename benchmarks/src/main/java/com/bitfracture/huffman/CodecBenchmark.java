@@ -0,0 +1,149 @@
+package com.bitfracture.huffman;
+
+import com.bitfracture.serial.ArrayOutputStream;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures each stage of the codec against every corpus. Alongside operations per second, each benchmark reports
+ * "megabytes" per second of input processed, and the compression ratio of each corpus is printed during setup. Run
+ * with "-prof gc" to report the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx5g"})
+public class CodecBenchmark {
+    private static final double MEGABYTE = 1024 * 1024;
+    private static final OutputStream SINK = new OutputStream() {
+        @Override
+        public void write(int byt) {}
+
+        @Override
+        public void write(byte[] data, int offset, int length) {}
+    };
+
+    @Param({"TEXT", "LOGS", "RANDOM", "SINGLE", "SKEWED"})
+    public Corpus corpus;
+
+    @Param({"1KB", "1MB", "64MB", "1GB"})
+    public String size;
+
+    private byte[] raw;
+    private byte[] encoded;
+    private int encodedLength;
+    private byte[] encodedInterleaved;
+    private int encodedInterleavedLength;
+    private Histogram histogram;
+    private HuffmanTree tree;
+    private ForkJoinPool pool;
+
+    /**
+     * Counts the input bytes processed, reported by JMH as a rate alongside the operation rate.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Throughput {
+        public double megabytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            megabytes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        raw = corpus.generate(Corpus.parseSize(size));
+        histogram = Histogram.fromStream(new ByteArrayInputStream(raw));
+        tree = HuffmanTree.fromHistogram(histogram, HuffmanTranslator.MAX_CODE_LENGTH);
+        //Encode straight into arrays of the largest size the output can be, rather than growing and copying a buffer,
+        //so that the largest corpora fit. The interleaved format's framing is far smaller than the block framing
+        //allowed for, so the same bound holds for it.
+        ArrayOutputStream out = new ArrayOutputStream();
+        encoded = new byte[HuffmanTranslator.maxCompressedLength(raw.length)];
+        out.reset(encoded, 0, encoded.length);
+        HuffmanTranslator.encode(tree, new ByteArrayInputStream(raw), out);
+        encodedLength = out.getPosition();
+        encodedInterleaved = new byte[encoded.length];
+        out.reset(encodedInterleaved, 0, encodedInterleaved.length);
+        HuffmanTranslator.encodeInterleaved(tree, new ByteArrayInputStream(raw), out);
+        encodedInterleavedLength = out.getPosition();
+        pool = new ForkJoinPool();
+        System.out.printf("%nCompression ratio for %s at %s: %.4f (%d -> %d bytes)%n",
+                corpus, size, (double)encodedLength / raw.length, raw.length, encodedLength);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public Histogram histogram(Throughput throughput) throws IOException {
+        throughput.megabytes += raw.length / MEGABYTE;
+        return Histogram.fromStream(new ByteArrayInputStream(raw));
+    }
+
+    @Benchmark
+    public Histogram histogramParallel(Throughput throughput) {
+        throughput.megabytes += raw.length / MEGABYTE;
+        return Histogram.fromBytes(raw, pool);
+    }
+
+    @Benchmark
+    public HuffmanTree buildTree() {
+        return HuffmanTree.fromHistogram(histogram, HuffmanTranslator.MAX_CODE_LENGTH);
+    }
+
+    @Benchmark
+    public Map<Byte, List<Boolean>> toMap() {
+        return tree.toMap();
+    }
+
+    @Benchmark
+    public void encode(Throughput throughput) throws IOException {
+        throughput.megabytes += raw.length / MEGABYTE;
+        HuffmanTranslator.encode(tree, new ByteArrayInputStream(raw), SINK);
+    }
+
+    @Benchmark
+    public void decode(Throughput throughput) throws IOException {
+        throughput.megabytes += raw.length / MEGABYTE;
+        HuffmanTranslator.decode(new ByteArrayInputStream(encoded, 0, encodedLength), SINK);
+    }
+
+    @Benchmark
+    public void encodeInterleaved(Throughput throughput) throws IOException {
+        throughput.megabytes += raw.length / MEGABYTE;
+        HuffmanTranslator.encodeInterleaved(tree, new ByteArrayInputStream(raw), SINK);
+    }
+
+    @Benchmark
+    public void decodeInterleaved(Throughput throughput) throws IOException {
+        throughput.megabytes += raw.length / MEGABYTE;
+        HuffmanTranslator.decode(new ByteArrayInputStream(encodedInterleaved, 0, encodedInterleavedLength), SINK);
+    }
+}
@@ -0,0 +1,137 @@
+package com.bitfracture.huffman;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * The standard inputs the benchmarks run against. Each is generated deterministically from a fixed seed, so results
+ * are comparable from one build to the next.
+ */
+public enum Corpus {
+    /**
+     * English-like prose, with words drawn from a skewed vocabulary.
+     */
+    TEXT {
+        @Override
+        void fill(byte[] data, Random random) {
+            int position = 0;
+            while (position < data.length) {
+                int sentenceLength = 5 + random.nextInt(15);
+                for (int i = 0; i < sentenceLength; i++) {
+                    String word = WORDS[(int)(WORDS.length * Math.pow(random.nextDouble(), 2.5))];
+                    position = put(data, position, i == 0 ? Character.toUpperCase(word.charAt(0)) + word.substring(1)
+                            : word);
+                    position = put(data, position, i == sentenceLength - 1 ? ". " : " ");
+                }
+                if (random.nextInt(6) == 0) {
+                    position = put(data, position, "\n\n");
+                }
+            }
+        }
+    },
+
+    /**
+     * Service log lines with timestamps, levels, addresses, paths and latencies.
+     */
+    LOGS {
+        @Override
+        void fill(byte[] data, Random random) {
+            int position = 0;
+            long millis = 1700000000000L;
+            while (position < data.length) {
+                millis += random.nextInt(50);
+                position = put(data, position, String.format(Locale.ROOT, "%d %s [worker-%d] 10.0.%d.%d GET /api/v1/%s/%d %d %dms%n",
+                        millis, LEVELS[random.nextInt(10) == 0 ? 1 + random.nextInt(3) : 0], random.nextInt(16),
+                        random.nextInt(4), random.nextInt(256), WORDS[random.nextInt(12)], random.nextInt(100000),
+                        random.nextInt(20) == 0 ? 500 : 200, random.nextInt(300)));
+            }
+        }
+    },
+
+    /**
+     * Uniformly random bytes, which cannot be compressed.
+     */
+    RANDOM {
+        @Override
+        void fill(byte[] data, Random random) {
+            random.nextBytes(data);
+        }
+    },
+
+    /**
+     * A single repeated byte value.
+     */
+    SINGLE {
+        @Override
+        void fill(byte[] data, Random random) {
+            for (int i = 0; i < data.length; i++) {
+                data[i] = 'a';
+            }
+        }
+    },
+
+    /**
+     * A geometric distribution in which each byte value is half as likely as the one before, giving very long codes.
+     */
+    SKEWED {
+        @Override
+        void fill(byte[] data, Random random) {
+            for (int i = 0; i < data.length; i++) {
+                data[i] = (byte)Math.min(255, Long.numberOfTrailingZeros(random.nextLong() | Long.MIN_VALUE));
+            }
+        }
+    };
+
+    private static final long SEED = 0x5EED;
+    private static final String[] LEVELS = {"INFO", "WARN", "ERROR", "DEBUG"};
+    private static final String[] WORDS = {
+            "the", "of", "and", "to", "a", "in", "is", "that", "for", "it", "as", "was", "with", "be", "by", "on",
+            "not", "he", "this", "are", "or", "his", "from", "at", "which", "but", "have", "an", "they", "you",
+            "were", "her", "she", "there", "would", "their", "we", "him", "been", "has", "when", "who", "will",
+            "more", "no", "if", "out", "so", "said", "what", "up", "its", "about", "into", "than", "them", "can",
+            "only", "other", "new", "some", "could", "time", "these", "two", "may", "then", "first", "any",
+            "people", "government", "constitution", "compression", "representatives", "throughput", "benchmark"};
+
+    abstract void fill(byte[] data, Random random);
+
+    /**
+     * @param size  The number of bytes to generate
+     */
+    public byte[] generate(int size) {
+        byte[] data = new byte[size];
+        fill(data, new Random(SEED));
+        return data;
+    }
+
+    /**
+     * Parses a size such as "1KB", "64MB" or "1GB" (binary units).
+     */
+    public static int parseSize(String size) {
+        String upper = size.trim().toUpperCase(Locale.ROOT);
+        long multiplier = 1;
+        if (upper.endsWith("KB")) {
+            multiplier = 1L << 10;
+        } else if (upper.endsWith("MB")) {
+            multiplier = 1L << 20;
+        } else if (upper.endsWith("GB")) {
+            multiplier = 1L << 30;
+        }
+        String digits = upper.replaceAll("[^0-9]", "");
+        long bytes = Long.parseLong(digits) * multiplier;
+        //Arrays top out just short of 2 GB
+        return (int)Math.min(bytes, Integer.MAX_VALUE - 8);
+    }
+
+    /**
+     * Writes ASCII text straight into the corpus, so that no copy of the text is held beside it, stopping at its end.
+     *
+     * @return  The position after the text written
+     */
+    private static int put(byte[] data, int position, String text) {
+        int end = Math.min(data.length, position + text.length());
+        for (int i = position; i < end; i++) {
+            data[i] = (byte)text.charAt(i - position);
+        }
+        return end;
+    }
+}
@@ -0,0 +1,167 @@
+package com.bitfracture.serial;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures raw bit throughput of BitBlock's per-bit push and iteration against BitWriter and BitReader, both with
+ * 1 KiB blocks and with frames of the default frame size, over one megabyte of random bits. Alongside operations per
+ * second, each benchmark reports "megabits" per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BitBlockBenchmark {
+    private static final int BYTES = 1024 * 1024;
+    private static final int CHUNK_BITS = 13;
+
+    private boolean[] bits;
+    private long[] chunks;
+    private byte[] serial;
+    private byte[] framed;
+
+    /**
+     * Counts the bits processed, reported by JMH as a rate alongside the operation rate.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Throughput {
+        public double megabits;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            megabits = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Random random = new Random(1);
+        bits = new boolean[BYTES * 8];
+        chunks = new long[bits.length / CHUNK_BITS];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = random.nextLong() & ((1L << CHUNK_BITS) - 1);
+            for (int bit = 0; bit < CHUNK_BITS; bit++) {
+                bits[i * CHUNK_BITS + bit] = ((chunks[i] >>> bit) & 1) == 1;
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BitWriter writer = new BitWriter(out);
+        for (long chunk : chunks) {
+            writer.write(chunk, CHUNK_BITS);
+        }
+        writer.finish();
+        serial = out.toByteArray();
+
+        out = new ByteArrayOutputStream();
+        writer = new BitWriter(out, BitBlock.DEFAULT_FRAME_SIZE);
+        for (long chunk : chunks) {
+            writer.write(chunk, CHUNK_BITS);
+        }
+        writer.finish();
+        framed = out.toByteArray();
+    }
+
+    @Benchmark
+    public void blockPush(Throughput throughput, Blackhole blackhole) {
+        BitBlock block = new BitBlock();
+        for (boolean bit : bits) {
+            if (!block.push(bit)) {
+                blackhole.consume(block.toSerial());
+                block = new BitBlock();
+                block.push(bit);
+            }
+        }
+        blackhole.consume(block.toSerial());
+        throughput.megabits += bits.length / 1e6;
+    }
+
+    @Benchmark
+    public void blockIterate(Throughput throughput, Blackhole blackhole) throws IOException {
+        InputStream in = new ByteArrayInputStream(serial);
+        for (Optional<BitBlock> block; (block = BitBlock.fromSerialStream(in)).isPresent();) {
+            for (Iterator<Boolean> iter = block.get().iterator(); iter.hasNext();) {
+                blackhole.consume(iter.next().booleanValue());
+            }
+        }
+        throughput.megabits += bits.length / 1e6;
+    }
+
+    @Benchmark
+    public void writerWrite(Throughput throughput, Blackhole blackhole) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(serial.length);
+        BitWriter writer = new BitWriter(out);
+        for (long chunk : chunks) {
+            writer.write(chunk, CHUNK_BITS);
+        }
+        writer.finish();
+        blackhole.consume(out);
+        throughput.megabits += bits.length / 1e6;
+    }
+
+    @Benchmark
+    public long readerRead(Throughput throughput) {
+        InputStream in = new ByteArrayInputStream(serial);
+        BitReader reader = new BitReader(() -> {
+            try {
+                return BitBlock.fromSerialStream(in);
+            } catch (IOException e) {
+                throw new RuntimeException("Data failed to read due to a IO error", e);
+            }
+        });
+        long checksum = 0;
+        while (reader.fill() >= CHUNK_BITS) {
+            checksum += reader.peek() & ((1L << CHUNK_BITS) - 1);
+            reader.skip(CHUNK_BITS);
+        }
+        throughput.megabits += bits.length / 1e6;
+        return checksum;
+    }
+
+    @Benchmark
+    public void framedWriterWrite(Throughput throughput, Blackhole blackhole) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(framed.length);
+        BitWriter writer = new BitWriter(out, BitBlock.DEFAULT_FRAME_SIZE);
+        for (long chunk : chunks) {
+            writer.write(chunk, CHUNK_BITS);
+        }
+        writer.finish();
+        blackhole.consume(out);
+        throughput.megabits += bits.length / 1e6;
+    }
+
+    @Benchmark
+    public long framedReaderRead(Throughput throughput) {
+        BitReader reader = new BitReader(new ByteArrayInputStream(framed), BitBlock.DEFAULT_FRAME_SIZE);
+        long checksum = 0;
+        while (reader.fill() >= CHUNK_BITS) {
+            checksum += reader.peek() & ((1L << CHUNK_BITS) - 1);
+            reader.skip(CHUNK_BITS);
+        }
+        throughput.megabits += bits.length / 1e6;
+        return checksum;
+    }
+}
@@ -0,0 +1,28 @@
+package com.bitfracture.filter;
+
+import java.io.OutputStream;
+
+/**
+ * A reversible transform applied to data before it is Huffman coded, to reshape it into something a byte-wise code
+ * compresses better. Both directions are streams which transform bytes as they are written and pass the result on, so
+ * filters can be chained. Closing a filter stream writes out anything it is still holding and closes the stream it
+ * wraps.
+ */
+public interface ByteFilter {
+    /**
+     * @return  The ID which records this filter in a file header, unique among filters
+     */
+    int getId();
+
+    /**
+     * @param filtered  The stream to write the filtered form of the data to
+     * @return  A stream which filters the data written to it
+     */
+    OutputStream encoder(OutputStream filtered);
+
+    /**
+     * @param raw  The stream to write the restored data to
+     * @return  A stream which restores filtered data written to it
+     */
+    OutputStream decoder(OutputStream raw);
+}
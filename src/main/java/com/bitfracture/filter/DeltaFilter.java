@@ -0,0 +1,44 @@
+package com.bitfracture.filter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Replaces each byte with its difference from the byte before it (modulo 256), the first byte being taken as following
+ * a zero. Slowly varying data, such as sampled sensor readings, becomes a stream of small values clustered around
+ * zero.
+ */
+public class DeltaFilter implements ByteFilter {
+    static final int ID = 3;
+
+    @Override
+    public int getId() {
+        return ID;
+    }
+
+    @Override
+    public OutputStream encoder(OutputStream filtered) {
+        return new StagedOutputStream(filtered) {
+            private int previous = 0;
+
+            @Override
+            void process(int byt) throws IOException {
+                put(byt - previous);
+                previous = byt;
+            }
+        };
+    }
+
+    @Override
+    public OutputStream decoder(OutputStream raw) {
+        return new StagedOutputStream(raw) {
+            private int previous = 0;
+
+            @Override
+            void process(int byt) throws IOException {
+                previous = (previous + byt) & 0xFF;
+                put(previous);
+            }
+        };
+    }
+}
@@ -0,0 +1,106 @@
+package com.bitfracture.filter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An ordered list of filters, applied first to last when encoding and undone last to first when decoding. The
+ * serialized chain is one byte holding the number of filters, then the ID of each in the order they are applied.
+ */
+public class FilterChain {
+    /**
+     * The chain which leaves data unchanged.
+     */
+    public static final FilterChain NONE = new FilterChain();
+
+    private static final int MAX_FILTERS = 255;
+    private static final ByteFilter[] KNOWN_FILTERS = {
+            new RunLengthFilter(), new MoveToFrontFilter(), new DeltaFilter()};
+
+    private final List<ByteFilter> filters;
+
+    /**
+     * @param filters  The filters to apply, in order
+     */
+    public FilterChain(ByteFilter... filters) {
+        if (filters.length > MAX_FILTERS) {
+            throw new IllegalArgumentException("A chain may hold at most " + MAX_FILTERS + " filters");
+        }
+        this.filters = Collections.unmodifiableList(new ArrayList<>(Arrays.asList(filters)));
+    }
+
+    /**
+     * @return  The filters, in the order they are applied when encoding
+     */
+    public List<ByteFilter> getFilters() {
+        return filters;
+    }
+
+    /**
+     * @return  A stream which passes the data written to it through every filter in turn, then on to 'filtered'.
+     *     Closing it closes 'filtered'.
+     */
+    public OutputStream encoder(OutputStream filtered) {
+        OutputStream stream = filtered;
+        for (int i = filters.size() - 1; i >= 0; i--) {
+            stream = filters.get(i).encoder(stream);
+        }
+        return stream;
+    }
+
+    /**
+     * @return  A stream which undoes every filter in turn on the data written to it, then passes it on to 'raw'.
+     *     Closing it closes 'raw'.
+     */
+    public OutputStream decoder(OutputStream raw) {
+        OutputStream stream = raw;
+        for (ByteFilter filter : filters) {
+            stream = filter.decoder(stream);
+        }
+        return stream;
+    }
+
+    public byte[] toSerial() {
+        byte[] serial = new byte[1 + filters.size()];
+        serial[0] = (byte)filters.size();
+        for (int i = 0; i < filters.size(); i++) {
+            serial[i + 1] = (byte)filters.get(i).getId();
+        }
+        return serial;
+    }
+
+    /**
+     * Reads a chain written by toSerial().
+     *
+     * @throws IOException  If the stream ends early, or names a filter which is not known
+     */
+    public static FilterChain fromSerialStream(InputStream input) throws IOException {
+        int count = readByte(input);
+        ByteFilter[] filters = new ByteFilter[count];
+        for (int i = 0; i < count; i++) {
+            int id = readByte(input);
+            filters[i] = Arrays.stream(KNOWN_FILTERS).filter(filter -> filter.getId() == id).findFirst()
+                    .orElseThrow(() -> new IOException("Data was filtered with an unknown filter: " + id));
+        }
+        return new FilterChain(filters);
+    }
+
+    private static int readByte(InputStream input) throws IOException {
+        int byt = input.read();
+        if (byt < 0) {
+            throw new IOException("The data ended part way through its filter chain");
+        }
+        return byt;
+    }
+
+    @Override
+    public String toString() {
+        return filters.isEmpty() ? "none" : filters.stream().map(filter -> filter.getClass().getSimpleName())
+                .reduce((first, second) -> first + " > " + second).get();
+    }
+}
@@ -0,0 +1,60 @@
+package com.bitfracture.filter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Replaces each byte with its position in a list of byte values ordered by how recently each was seen, then moves it
+ * to the front of the list. Data which reuses a small, shifting set of values becomes a stream dominated by small
+ * positions, and repeats become zeros.
+ */
+public class MoveToFrontFilter implements ByteFilter {
+    static final int ID = 2;
+    private static final int SYMBOL_COUNT = 256;
+
+    @Override
+    public int getId() {
+        return ID;
+    }
+
+    @Override
+    public OutputStream encoder(OutputStream filtered) {
+        return new StagedOutputStream(filtered) {
+            private final byte[] order = initialOrder();
+
+            @Override
+            void process(int byt) throws IOException {
+                int position = 0;
+                while ((order[position] & 0xFF) != byt) {
+                    position++;
+                }
+                System.arraycopy(order, 0, order, 1, position);
+                order[0] = (byte)byt;
+                put(position);
+            }
+        };
+    }
+
+    @Override
+    public OutputStream decoder(OutputStream raw) {
+        return new StagedOutputStream(raw) {
+            private final byte[] order = initialOrder();
+
+            @Override
+            void process(int position) throws IOException {
+                byte byt = order[position];
+                System.arraycopy(order, 0, order, 1, position);
+                order[0] = byt;
+                put(byt);
+            }
+        };
+    }
+
+    private static byte[] initialOrder() {
+        byte[] order = new byte[SYMBOL_COUNT];
+        for (int i = 0; i < SYMBOL_COUNT; i++) {
+            order[i] = (byte)i;
+        }
+        return order;
+    }
+}
@@ -0,0 +1,84 @@
+package com.bitfracture.filter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Shortens runs of a repeated byte. Once the same byte has been written RUN_THRESHOLD times in a row, the next byte of
+ * the filtered data is a count (0 to 255) of further repeats which were left out. Short runs pass through unchanged,
+ * so data without long runs grows by at most one byte in RUN_THRESHOLD, while a zero-filled region shrinks by a factor
+ * of about 50.
+ */
+public class RunLengthFilter implements ByteFilter {
+    static final int ID = 1;
+    static final int RUN_THRESHOLD = 4;
+    private static final int MAX_REPEATS = 255;
+
+    @Override
+    public int getId() {
+        return ID;
+    }
+
+    @Override
+    public OutputStream encoder(OutputStream filtered) {
+        return new StagedOutputStream(filtered) {
+            private int previous = -1;
+            private int run = 0;
+            private int repeats = -1;
+
+            @Override
+            void process(int byt) throws IOException {
+                if (repeats >= 0) {
+                    if (byt == previous && repeats < MAX_REPEATS) {
+                        repeats++;
+                        return;
+                    }
+                    endRun();
+                }
+                put(byt);
+                run = byt == previous ? run + 1 : 1;
+                previous = byt;
+                if (run == RUN_THRESHOLD) {
+                    repeats = 0;
+                }
+            }
+
+            @Override
+            void finish() throws IOException {
+                if (repeats >= 0) {
+                    endRun();
+                }
+            }
+
+            private void endRun() throws IOException {
+                put(repeats);
+                repeats = -1;
+                run = 0;
+                previous = -1;
+            }
+        };
+    }
+
+    @Override
+    public OutputStream decoder(OutputStream raw) {
+        return new StagedOutputStream(raw) {
+            private int previous = -1;
+            private int run = 0;
+
+            @Override
+            void process(int byt) throws IOException {
+                if (run == RUN_THRESHOLD) {
+                    for (int i = 0; i < byt; i++) {
+                        put(previous);
+                    }
+                    run = 0;
+                    previous = -1;
+                    return;
+                }
+                put(byt);
+                run = byt == previous ? run + 1 : 1;
+                previous = byt;
+            }
+        };
+    }
+}
@@ -0,0 +1,72 @@
+package com.bitfracture.filter;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The base of the filter streams, which transform one byte at a time. Output is collected in a small buffer and passed
+ * on in bulk, so the wrapped stream sees few, large writes however the filter's output is produced.
+ */
+abstract class StagedOutputStream extends FilterOutputStream {
+    private static final int STAGE_SIZE = 8192;
+
+    private final byte[] stage = new byte[STAGE_SIZE];
+    private int staged = 0;
+
+    StagedOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    /**
+     * Transforms a single byte, passing any output to put().
+     *
+     * @param byt  The byte to transform, as an unsigned value
+     */
+    abstract void process(int byt) throws IOException;
+
+    /**
+     * Called before the stream is closed, to put() any output the filter is still holding back.
+     */
+    void finish() throws IOException {}
+
+    @Override
+    public void write(int byt) throws IOException {
+        process(byt & 0xFF);
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            process(data[i] & 0xFF);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+            drain();
+        } finally {
+            out.close();
+        }
+    }
+
+    void put(int byt) throws IOException {
+        if (staged == STAGE_SIZE) {
+            drain();
+        }
+        stage[staged++] = (byte)byt;
+    }
+
+    private void drain() throws IOException {
+        out.write(stage, 0, staged);
+        staged = 0;
+    }
+}
@@ -0,0 +1,70 @@
+package com.bitfracture.huffman;
+
+/**
+ * Describes one file held in an archive, as listed in the archive's central directory.
+ */
+public class ArchiveEntry {
+    private final String name;
+    private final int method;
+    private final long position;
+    private final long compressedSize;
+    private final long size;
+    private final int crc;
+
+    ArchiveEntry(String name, int method, long position, long compressedSize, long size, int crc) {
+        this.name = name;
+        this.method = method;
+        this.position = position;
+        this.compressedSize = compressedSize;
+        this.size = size;
+        this.crc = crc;
+    }
+
+    /**
+     * @return  The path of the file within the archive, with '/' separating directories
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return  The length of the original file
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return  The number of bytes the file takes up in the archive
+     */
+    public long getCompressedSize() {
+        return compressedSize;
+    }
+
+    /**
+     * @return  Whether the file was Huffman coded, rather than stored as it was because coding would not shrink it
+     */
+    public boolean isCompressed() {
+        return method == ArchiveWriter.METHOD_HUFFMAN;
+    }
+
+    int getMethod() {
+        return method;
+    }
+
+    long getPosition() {
+        return position;
+    }
+
+    /**
+     * @return  The CRC-32 of the original file
+     */
+    int getCrc() {
+        return crc;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s (%d -> %d bytes)", name, size, compressedSize);
+    }
+}
@@ -0,0 +1,208 @@
+package com.bitfracture.huffman;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Reads archives written by ArchiveWriter. Opening reads only the footer and the central directory; each file is then
+ * read with positional reads, so any one file can be extracted without touching the others, and files can be
+ * extracted on several threads at once. Every extracted file is checked against the CRC-32 recorded for it.
+ */
+public class ArchiveReader {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private FileChannel channel;
+    private Map<String, ArchiveEntry> entries;
+
+    private ArchiveReader() {}
+
+    /**
+     * Reads the central directory of an archive. The channel remains owned by the caller.
+     *
+     * @throws IOException  If the channel cannot be read or does not hold an archive
+     */
+    public static ArchiveReader open(FileChannel channel) throws IOException {
+        ArchiveReader reader = new ArchiveReader();
+        reader.channel = channel;
+
+        byte[] magic = new byte[HuffmanTranslator.ARCHIVE_HEADER.length];
+        reader.readAt(0, magic.length).get(magic);
+        if (!Arrays.equals(HuffmanTranslator.ARCHIVE_HEADER, magic)) {
+            throw new IOException("Invalid file header");
+        }
+
+        //Locate and read the central directory
+        long footerPosition = channel.size() - ArchiveWriter.FOOTER_SIZE;
+        if (footerPosition < magic.length) {
+            throw new IOException("Invalid archive footer, which may mean the archive is truncated");
+        }
+        ByteBuffer footer = reader.readAt(footerPosition, ArchiveWriter.FOOTER_SIZE);
+        long directoryPosition = footer.getLong();
+        int entryCount = footer.getInt();
+        byte[] trailer = new byte[magic.length];
+        footer.get(trailer);
+        if (!Arrays.equals(HuffmanTranslator.ARCHIVE_HEADER, trailer)) {
+            throw new IOException("Invalid archive footer, which may mean the archive is truncated");
+        }
+        if (directoryPosition < magic.length || directoryPosition > footerPosition || entryCount < 0
+                || footerPosition - directoryPosition > Integer.MAX_VALUE) {
+            throw new IOException("Invalid archive footer");
+        }
+        ByteBuffer directory = reader.readAt(directoryPosition, (int)(footerPosition - directoryPosition));
+        reader.entries = new LinkedHashMap<>();
+        try {
+            for (int i = 0; i < entryCount; i++) {
+                byte[] name = new byte[directory.getShort() & 0xFFFF];
+                directory.get(name);
+                ArchiveEntry entry = new ArchiveEntry(new String(name, StandardCharsets.UTF_8), directory.get(),
+                        directory.getLong(), directory.getLong(), directory.getLong(), directory.getInt());
+                if (entry.getPosition() < magic.length || entry.getCompressedSize() < 0
+                        || entry.getPosition() + entry.getCompressedSize() > directoryPosition) {
+                    throw new IOException("Entry lies outside of the archive: " + entry.getName());
+                }
+                if (reader.entries.putIfAbsent(entry.getName(), entry) != null) {
+                    throw new IOException("The archive holds more than one entry named " + entry.getName());
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("The central directory ended part way through an entry", e);
+        }
+        return reader;
+    }
+
+    /**
+     * @return  Every entry, in the order the files appear in the archive
+     */
+    public List<ArchiveEntry> getEntries() {
+        return Collections.unmodifiableList(new ArrayList<>(entries.values()));
+    }
+
+    /**
+     * @return  The entry with the given name, or empty if the archive holds no such file
+     */
+    public Optional<ArchiveEntry> getEntry(String name) {
+        return Optional.ofNullable(entries.get(name));
+    }
+
+    /**
+     * Extracts one file, reading only its own bytes of the archive. Safe to call from several threads at once. The file
+     * is streamed from the archive, so files of any size can be extracted.
+     *
+     * @throws IOException  If the channel or rawData fails, or the extracted file does not match its CRC-32
+     */
+    public void extract(ArchiveEntry entry, OutputStream rawData) throws IOException {
+        InputStream payload = new BufferedInputStream(
+                new RangeInputStream(channel, entry.getPosition(), entry.getCompressedSize()), BUFFER_SIZE);
+        CRC32 crc = new CRC32();
+        CheckedOutputStream checked = new CheckedOutputStream(rawData, crc);
+        if (entry.getMethod() == ArchiveWriter.METHOD_STORED) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            for (int read; (read = payload.read(buffer)) >= 0;) {
+                checked.write(buffer, 0, read);
+            }
+        } else if (entry.getMethod() == ArchiveWriter.METHOD_HUFFMAN) {
+            HuffmanTranslator.decode(payload, checked);
+        } else {
+            throw new IOException("Entry uses an unknown method: " + entry.getName());
+        }
+        if ((int)crc.getValue() != entry.getCrc()) {
+            throw new IOException("Entry is corrupt, as its CRC-32 does not match: " + entry.getName());
+        }
+    }
+
+    /**
+     * Extracts one file beneath 'directory', recreating the directories named in its entry. An existing file is
+     * replaced.
+     *
+     * @return  The path of the extracted file
+     * @throws IOException  If the entry's name would place it outside 'directory', or the file fails to extract
+     */
+    public Path extract(ArchiveEntry entry, Path directory) throws IOException {
+        Path target = resolve(entry, directory);
+        Files.createDirectories(target.getParent());
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(target))) {
+            extract(entry, out);
+        }
+        return target;
+    }
+
+    /**
+     * Extracts every file beneath 'directory', recreating the directories named in each entry, with files extracted
+     * on the executor. Existing files are replaced. Every name is checked before any file is extracted.
+     *
+     * @throws IOException  If an entry's name would place it outside 'directory', or any file fails to extract
+     */
+    public void extractAll(Path directory, ExecutorService executor) throws IOException {
+        for (ArchiveEntry entry : entries.values()) {
+            resolve(entry, directory);
+        }
+        List<Future<Path>> extractions = new ArrayList<>();
+        try {
+            for (ArchiveEntry entry : entries.values()) {
+                extractions.add(executor.submit(() -> extract(entry, directory)));
+            }
+            for (Future<Path> extraction : extractions) {
+                extraction.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a file to be extracted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)e.getCause();
+            } else if (e.getCause() instanceof IOException) {
+                throw (IOException)e.getCause();
+            }
+            throw new IOException("A file failed to extract", e.getCause());
+        } finally {
+            extractions.forEach(future -> future.cancel(true));
+        }
+    }
+
+    /**
+     * @return  Where the entry is extracted to beneath 'directory'
+     * @throws IOException  If the entry's name would place it outside 'directory', or is the directory itself
+     */
+    static Path resolve(ArchiveEntry entry, Path directory) throws IOException {
+        Path root = directory.toAbsolutePath().normalize();
+        Path target = root.resolve(entry.getName()).normalize();
+        if (!target.startsWith(root) || target.equals(root)) {
+            throw new IOException("Entry would be extracted outside of the directory: " + entry.getName());
+        }
+        return target;
+    }
+
+    private ByteBuffer readAt(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("The file ended before the expected data");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
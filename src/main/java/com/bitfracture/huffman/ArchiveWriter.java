@@ -0,0 +1,358 @@
+package com.bitfracture.huffman;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+/**
+ * Writes many files into a single archive, compressing them on several threads at once. Each file is read and
+ * compressed on the executor with its own code, and compressed files are written in order as soon as each is ready. At
+ * most maxInFlight compressed files are held in memory at once. A file which coding would not shrink is stored as it
+ * is. ArchiveReader extracts any one file without reading the others.
+ *
+ * Files larger than LARGE_FILE_SIZE are never held in memory: they are read twice, once to count their bytes and once
+ * to encode them into a temporary file, which is copied into the archive and deleted. So memory use is bounded by
+ * maxInFlight times LARGE_FILE_SIZE, and files of any size can be archived.
+ *
+ * The format is laid out as:
+ *  - The 4-byte header 'HUF\9'.
+ *  - The files, one after another. Each is either stored as it is, or is a complete 'HUF\2' encoding of the file
+ *    which HuffmanTranslator.decode() can read on its own.
+ *  - The central directory: one entry per file (name length: unsigned short, name in UTF-8, method: byte, position:
+ *    long, compressed size: long, size: long, CRC-32: int).
+ *  - A 16-byte footer (directory position: long, entry count: int, the header 'HUF\9' again).
+ * All integers are little endian.
+ */
+public class ArchiveWriter {
+    static final int METHOD_STORED = 0;
+    static final int METHOD_HUFFMAN = 1;
+    static final int DIRECTORY_ENTRY_SIZE = 2 + 1 + 8 + 8 + 8 + 4;
+    static final int FOOTER_SIZE = 16;
+    static final int MAX_NAME_LENGTH = 0xFFFF;
+    /**
+     * The largest file which is read and compressed in memory.
+     */
+    public static final int LARGE_FILE_SIZE = 64 * 1024 * 1024;
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final ExecutorService executor;
+    private final int maxInFlight;
+    private final long largeFileSize;
+
+    /**
+     * @param executor  The executor files are read and compressed on
+     * @param maxInFlight  The most files that may be compressed but not yet written at once
+     */
+    public ArchiveWriter(ExecutorService executor, int maxInFlight) {
+        this(executor, maxInFlight, LARGE_FILE_SIZE);
+    }
+
+    /**
+     * @param largeFileSize  The largest file to compress in memory
+     */
+    ArchiveWriter(ExecutorService executor, int maxInFlight, long largeFileSize) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("Files in flight must be positive");
+        }
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+        this.largeFileSize = largeFileSize;
+    }
+
+    /**
+     * Archives the given files and directories. A file is named by its file name, and every regular file beneath a
+     * directory is named by its path from the directory's parent, so archiving 'logs' gives entries such as
+     * 'logs/2024/app.log'.
+     *
+     * @return  The entries written, in the order they appear in the archive
+     * @throws IllegalArgumentException  If two files would have the same name
+     * @throws IOException  If reading, writing, or any file's compression fails
+     */
+    public List<ArchiveEntry> write(List<Path> sources, OutputStream archive) throws IOException {
+        Map<String, Path> files = collect(sources);
+        archive.write(HuffmanTranslator.ARCHIVE_HEADER);
+        long position = HuffmanTranslator.ARCHIVE_HEADER.length;
+
+        List<ArchiveEntry> entries = new ArrayList<>(files.size());
+        Deque<Future<PendingEntry>> inFlight = new ArrayDeque<>();
+        try {
+            for (Map.Entry<String, Path> file : files.entrySet()) {
+                if (inFlight.size() >= maxInFlight) {
+                    position = writeEntry(inFlight.removeFirst().get(), position, archive, entries);
+                }
+                inFlight.addLast(executor.submit(() -> compressEntry(file.getKey(), file.getValue())));
+            }
+            while (!inFlight.isEmpty()) {
+                position = writeEntry(inFlight.removeFirst().get(), position, archive, entries);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a file to be compressed", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)e.getCause();
+            }
+            throw new IOException("A file failed to compress", e.getCause());
+        } finally {
+            for (Future<PendingEntry> future : inFlight) {
+                future.cancel(true);
+                discard(future);
+            }
+        }
+
+        writeDirectory(entries, position, archive);
+        return entries;
+    }
+
+    /**
+     * @return  The name of every file to archive, mapped to its path, in the order they were given (with each
+     *     directory's files sorted by path)
+     */
+    static Map<String, Path> collect(List<Path> sources) throws IOException {
+        Map<String, Path> files = new LinkedHashMap<>();
+        for (Path source : sources) {
+            if (Files.isDirectory(source)) {
+                Path base = source.toAbsolutePath().normalize().getParent();
+                List<Path> children;
+                try (Stream<Path> walk = Files.walk(source)) {
+                    children = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+                }
+                for (Path child : children) {
+                    addFile(files, base.relativize(child.toAbsolutePath().normalize()), child);
+                }
+            } else {
+                addFile(files, source.getFileName(), source);
+            }
+        }
+        return files;
+    }
+
+    private static void addFile(Map<String, Path> files, Path relative, Path file) {
+        List<String> parts = new ArrayList<>();
+        relative.forEach(part -> parts.add(part.toString()));
+        String name = String.join("/", parts);
+        if (name.getBytes(StandardCharsets.UTF_8).length > MAX_NAME_LENGTH) {
+            throw new IllegalArgumentException("File name is too long to archive: " + name);
+        }
+        if (files.putIfAbsent(name, file) != null) {
+            throw new IllegalArgumentException("More than one file would be archived as " + name);
+        }
+    }
+
+    /**
+     * Reads and compresses a whole file.
+     */
+    private PendingEntry compressEntry(String name, Path file) throws IOException {
+        if (Files.size(file) > largeFileSize) {
+            return compressLargeEntry(name, file);
+        }
+        byte[] rawData = Files.readAllBytes(file);
+        CRC32 crc = new CRC32();
+        crc.update(rawData, 0, rawData.length);
+
+        if (rawData.length > 0) {
+            ByteBuffer encoded = ByteBuffer.allocate(HuffmanTranslator.maxCompressedLength(rawData.length));
+            int encodedLength = HuffmanTranslator.compress(ByteBuffer.wrap(rawData), encoded);
+            if (encodedLength < rawData.length) {
+                return new PendingEntry(name, METHOD_HUFFMAN, encoded.array(), encodedLength, rawData.length,
+                        (int)crc.getValue());
+            }
+        }
+        return new PendingEntry(name, METHOD_STORED, rawData, rawData.length, rawData.length, (int)crc.getValue());
+    }
+
+    /**
+     * Compresses a file too large to hold in memory into a temporary file. The CRC-32 is taken from the pass which is
+     * encoded, so it always describes the bytes the archive holds.
+     */
+    private static PendingEntry compressLargeEntry(String name, Path file) throws IOException {
+        Histogram histogram;
+        try (InputStream in = Files.newInputStream(file)) {
+            histogram = Histogram.fromStream(new BufferedInputStream(in, COPY_BUFFER_SIZE));
+        }
+        HuffmanTree tree = HuffmanTree.fromHistogram(histogram, HuffmanTranslator.MAX_CODE_LENGTH);
+
+        Path encoded = Files.createTempFile("huffman-archive", ".tmp");
+        try {
+            CRC32 crc = new CRC32();
+            long size;
+            try (CountingInputStream in = new CountingInputStream(new CheckedInputStream(
+                    new BufferedInputStream(Files.newInputStream(file), COPY_BUFFER_SIZE), crc));
+                 OutputStream out = new BufferedOutputStream(Files.newOutputStream(encoded), COPY_BUFFER_SIZE)) {
+                HuffmanTranslator.encode(tree, in, out);
+                size = in.count;
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Interrupted while compressing " + name);
+            }
+            long encodedSize = Files.size(encoded);
+            if (encodedSize < size) {
+                return new PendingEntry(name, METHOD_HUFFMAN, encoded, true, encodedSize, size, (int)crc.getValue());
+            }
+            Files.delete(encoded);
+            return new PendingEntry(name, METHOD_STORED, file, false, size, size, (int)crc.getValue());
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(encoded);
+            throw e;
+        }
+    }
+
+    /**
+     * Deletes the temporary file of an entry which was compressed but will not be written.
+     */
+    private static void discard(Future<PendingEntry> future) {
+        if (!future.isDone() || future.isCancelled()) {
+            //A compression still running is interrupted, and deletes its own temporary file
+            return;
+        }
+        try {
+            PendingEntry pending = future.get();
+            if (pending.temporary) {
+                Files.deleteIfExists(pending.payloadFile);
+            }
+        } catch (InterruptedException | ExecutionException | IOException e) {
+            //Nothing was written, or the file cannot be deleted anyway
+        }
+    }
+
+    /**
+     * @return  The position just past the entry
+     */
+    private static long writeEntry(PendingEntry pending, long position, OutputStream archive,
+                                   List<ArchiveEntry> entries) throws IOException {
+        if (pending.payloadFile == null) {
+            archive.write(pending.payload, 0, (int)pending.getCompressedSize());
+        } else {
+            try {
+                copyPayload(pending, archive);
+            } finally {
+                if (pending.temporary) {
+                    Files.deleteIfExists(pending.payloadFile);
+                }
+            }
+        }
+        entries.add(new ArchiveEntry(pending.getName(), pending.getMethod(), position, pending.getCompressedSize(),
+                pending.getSize(), pending.getCrc()));
+        return position + pending.getCompressedSize();
+    }
+
+    /**
+     * Copies a payload held in a file into the archive, checking that the file still has the length (and, for a
+     * stored file, the CRC-32) it had when it was compressed.
+     */
+    private static void copyPayload(PendingEntry pending, OutputStream archive) throws IOException {
+        CRC32 crc = new CRC32();
+        long copied = 0;
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(pending.payloadFile)) {
+            for (int read; (read = in.read(buffer)) >= 0;) {
+                if (copied + read > pending.getCompressedSize()) {
+                    break;
+                }
+                crc.update(buffer, 0, read);
+                archive.write(buffer, 0, read);
+                copied += read;
+            }
+        }
+        if (copied != pending.getCompressedSize()
+                || (!pending.temporary && (int)crc.getValue() != pending.getCrc())) {
+            throw new IOException("File changed while it was being archived: " + pending.getName());
+        }
+    }
+
+    private static void writeDirectory(List<ArchiveEntry> entries, long position, OutputStream archive)
+            throws IOException {
+        ByteArrayOutputStream directory = new ByteArrayOutputStream();
+        for (ArchiveEntry entry : entries) {
+            byte[] name = entry.getName().getBytes(StandardCharsets.UTF_8);
+            directory.write(ByteBuffer.allocate(DIRECTORY_ENTRY_SIZE + name.length).order(ByteOrder.LITTLE_ENDIAN)
+                    .putShort((short)name.length)
+                    .put(name)
+                    .put((byte)entry.getMethod())
+                    .putLong(entry.getPosition())
+                    .putLong(entry.getCompressedSize())
+                    .putLong(entry.getSize())
+                    .putInt(entry.getCrc())
+                    .array());
+        }
+        directory.writeTo(archive);
+        archive.write(ByteBuffer.allocate(FOOTER_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+                .putLong(position)
+                .putInt(entries.size())
+                .put(HuffmanTranslator.ARCHIVE_HEADER)
+                .array());
+    }
+
+    /**
+     * An entry which has been compressed but not yet written, and so has no position. Its payload is either held in
+     * memory or in a file, which is temporary unless it is the original file being stored.
+     */
+    private static class PendingEntry extends ArchiveEntry {
+        private final byte[] payload;
+        private final Path payloadFile;
+        private final boolean temporary;
+
+        PendingEntry(String name, int method, byte[] payload, int payloadLength, long size, int crc) {
+            super(name, method, -1, payloadLength, size, crc);
+            this.payload = payload;
+            this.payloadFile = null;
+            this.temporary = false;
+        }
+
+        PendingEntry(String name, int method, Path payloadFile, boolean temporary, long payloadLength, long size,
+                     int crc) {
+            super(name, method, -1, payloadLength, size, crc);
+            this.payload = null;
+            this.payloadFile = payloadFile;
+            this.temporary = temporary;
+        }
+    }
+
+    /**
+     * Counts the bytes read through it.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private long count = 0;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int byt = super.read();
+            count += byt < 0 ? 0 : 1;
+            return byt;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            count += Math.max(read, 0);
+            return read;
+        }
+    }
+}
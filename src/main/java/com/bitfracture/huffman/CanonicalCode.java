@@ -0,0 +1,188 @@
+package com.bitfracture.huffman;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+
+/**
+ * A canonical Huffman code is fully described by the code length of each byte value. Codes are handed out in order of
+ * length and then byte value, each one being the previous code plus one (shifted left whenever the length grows). Since
+ * the encoder and decoder derive identical codes from the lengths alone, only the lengths need to be stored, packed
+ * into a small fixed-size header.
+ *
+ * Codes are stored most significant bit first, so the first bit written to the stream is the highest bit of the code.
+ * A length of zero means the byte value does not occur.
+ *
+ * The alphabet is normally the 256 byte values, but may be extended with further symbols numbered from 256 up, such as
+ * the byte pairs of a PairModel. An extended code is serialized the same way, with one length per symbol.
+ */
+class CanonicalCode {
+    static final int SYMBOL_COUNT = 256;
+    static final int MAX_SYMBOL_COUNT = 1 << 16;
+    static final int MAX_CODE_LENGTH = 31;
+    private static final int BYTE_WIDTH = 8;
+    static final int MAX_SERIAL_SIZE =
+            1 + SYMBOL_COUNT * (Integer.SIZE - Integer.numberOfLeadingZeros(MAX_CODE_LENGTH)) / BYTE_WIDTH;
+
+    private int[] lengths;
+    private int[] codes;
+    private int maxLength;
+
+    private CanonicalCode() {}
+
+    /**
+     * @return  The code length of 'symbol', or 0 if it has no code
+     */
+    int getLength(int symbol) {
+        return lengths[symbol];
+    }
+
+    /**
+     * @return  The code for 'symbol', right-aligned, with the first bit to be written as the highest bit
+     */
+    int getCode(int symbol) {
+        return codes[symbol];
+    }
+
+    /**
+     * @return  The size of the alphabet, which is SYMBOL_COUNT unless the code has been extended
+     */
+    int getSymbolCount() {
+        return lengths.length;
+    }
+
+    /**
+     * @return  The length of the longest code
+     */
+    int getMaxLength() {
+        return maxLength;
+    }
+
+    /**
+     * @return  The number of bits needed to encode the counted data with this code, or -1 if some counted byte value
+     *     has no code
+     */
+    long encodedBits(Histogram histogram) {
+        long bits = 0;
+        for (int symbol = 0; symbol < SYMBOL_COUNT; symbol++) {
+            long count = histogram.getCount(symbol);
+            if (count > 0) {
+                if (lengths[symbol] == 0) {
+                    return -1;
+                }
+                bits += count * lengths[symbol];
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Assigns canonical codes for the given lengths.
+     *
+     * @param lengths  The code length for each of the 256 byte values, and for any extended symbols after them (0 for
+     *     absent values)
+     * @throws IllegalArgumentException  If the lengths are out of range or describe more codes than can exist
+     */
+    static CanonicalCode fromLengths(int[] lengths) {
+        if (lengths.length < SYMBOL_COUNT || lengths.length > MAX_SYMBOL_COUNT) {
+            throw new IllegalArgumentException(String.format("A canonical code requires from %d to %d lengths",
+                    SYMBOL_COUNT, MAX_SYMBOL_COUNT));
+        }
+        CanonicalCode code = new CanonicalCode();
+        code.lengths = lengths.clone();
+        code.codes = new int[lengths.length];
+
+        //Count the codes of each length
+        int[] lengthCounts = new int[MAX_CODE_LENGTH + 1];
+        for (int length : lengths) {
+            if (length < 0 || length > MAX_CODE_LENGTH) {
+                throw new IllegalArgumentException("Code length is out of range: " + length);
+            }
+            if (length > 0) {
+                lengthCounts[length]++;
+                code.maxLength = Math.max(code.maxLength, length);
+            }
+        }
+
+        //Determine the first code of each length, verifying the codes still fit as they grow
+        long[] nextCode = new long[MAX_CODE_LENGTH + 1];
+        long next = 0;
+        for (int length = 1; length <= MAX_CODE_LENGTH; length++) {
+            next = (next + lengthCounts[length - 1]) << 1;
+            nextCode[length] = next;
+            if (next + lengthCounts[length] > (1L << length)) {
+                throw new IllegalArgumentException("Code lengths describe more codes than can exist");
+            }
+        }
+        for (int symbol = 0; symbol < lengths.length; symbol++) {
+            if (lengths[symbol] > 0) {
+                code.codes[symbol] = (int)nextCode[lengths[symbol]]++;
+            }
+        }
+        return code;
+    }
+
+    /**
+     * Packs the lengths into a header: one byte holding the bit width of each length, then the 256 lengths (or as many
+     * as the alphabet has) at that width, least significant bit first.
+     */
+    byte[] toSerial() {
+        int width = Math.max(1, Integer.SIZE - Integer.numberOfLeadingZeros(maxLength));
+        byte[] serial = new byte[1 + packedSize(lengths.length, width)];
+        serial[0] = (byte)width;
+        long bitIndex = 0;
+        for (int length : lengths) {
+            for (int bit = 0; bit < width; bit++, bitIndex++) {
+                if ((length & (1 << bit)) != 0) {
+                    serial[1 + (int)(bitIndex / BYTE_WIDTH)] |= (byte)(1 << (bitIndex % BYTE_WIDTH));
+                }
+            }
+        }
+        return serial;
+    }
+
+    /**
+     * Reads a header written by toSerial().
+     *
+     * @param serial  The stream positioned at the start of the header
+     * @throws IOException  If the stream fails, ends early, or holds an invalid header
+     */
+    static CanonicalCode fromSerialStream(DataInputStream serial) throws IOException {
+        return fromSerialStream(serial, SYMBOL_COUNT);
+    }
+
+    /**
+     * Reads a header written by toSerial() for a code with the given size of alphabet.
+     *
+     * @throws IOException  If the stream fails, ends early, or holds an invalid header
+     */
+    static CanonicalCode fromSerialStream(DataInputStream serial, int symbolCount) throws IOException {
+        int width = serial.readUnsignedByte();
+        if (width < 1 || width > Integer.SIZE - Integer.numberOfLeadingZeros(MAX_CODE_LENGTH)) {
+            throw new IOException("Code length width is out of range: " + width);
+        }
+        byte[] packed = new byte[packedSize(symbolCount, width)];
+        serial.readFully(packed);
+
+        int[] lengths = new int[symbolCount];
+        long bitIndex = 0;
+        for (int symbol = 0; symbol < symbolCount; symbol++) {
+            for (int bit = 0; bit < width; bit++, bitIndex++) {
+                if ((packed[(int)(bitIndex / BYTE_WIDTH)] & (1 << (bitIndex % BYTE_WIDTH))) != 0) {
+                    lengths[symbol] |= 1 << bit;
+                }
+            }
+        }
+        try {
+            return fromLengths(lengths);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid code length header", e);
+        }
+    }
+
+    /**
+     * @return  The bytes needed to pack 'symbolCount' lengths at 'width' bits each
+     */
+    private static int packedSize(int symbolCount, int width) {
+        return (symbolCount * width + BYTE_WIDTH - 1) / BYTE_WIDTH;
+    }
+}
@@ -0,0 +1,111 @@
+package com.bitfracture.huffman;
+
+import com.bitfracture.serial.BitBlock;
+
+/**
+ * Decides how a chunk of a stream should be written, by working out the exact number of bytes each option would take:
+ * reusing the code already sent, sending a fresh code built for the chunk (including the cost of its header), or
+ * storing the chunk's bytes as they are. The smallest option wins, so a chunk never takes more than a few bytes of
+ * framing beyond its raw size, no matter how incompressible it is.
+ *
+ * Building a fresh code for every chunk costs a tree build per chunk. A stream trained on a sample can instead use
+ * planSampled(), which keeps the code it has for as long as the chunk costs stay close to what a fresh code would
+ * achieve, and only plans in full once they drift away.
+ */
+class ChunkPlanner {
+    private ChunkPlanner() {}
+
+    /**
+     * The chosen way to write a chunk.
+     */
+    static class Plan {
+        private final int chunkType;
+        private final CanonicalCode code;
+        private final long size;
+
+        private Plan(int chunkType, CanonicalCode code, long size) {
+            this.chunkType = chunkType;
+            this.code = code;
+            this.size = size;
+        }
+
+        /**
+         * @return  One of the HuffmanOutputStream chunk types
+         */
+        int getChunkType() {
+            return chunkType;
+        }
+
+        /**
+         * @return  The code to encode the chunk with, or null for a stored chunk
+         */
+        CanonicalCode getCode() {
+            return code;
+        }
+
+        /**
+         * @return  The number of bytes the chunk's header and payload will take
+         */
+        long getSize() {
+            return size;
+        }
+    }
+
+    /**
+     * @param histogram  The byte counts of the chunk
+     * @param previous  The code most recently sent, or null if none has been
+     */
+    static Plan plan(Histogram histogram, CanonicalCode previous) {
+        Plan best = new Plan(HuffmanOutputStream.CHUNK_STORED, null, histogram.getTotal());
+
+        if (previous != null) {
+            long bits = previous.encodedBits(histogram);
+            if (bits >= 0 && BitBlock.serialSize(bits) <= best.size) {
+                best = new Plan(HuffmanOutputStream.CHUNK_REUSE_CODE, previous, BitBlock.serialSize(bits));
+            }
+        }
+
+        CanonicalCode fresh = HuffmanTree.fromHistogram(histogram, CanonicalCode.MAX_CODE_LENGTH)
+                .getCanonicalCode()
+                .get();
+        long freshSize = fresh.toSerial().length + BitBlock.serialSize(fresh.encodedBits(histogram));
+        if (freshSize < best.size) {
+            best = new Plan(HuffmanOutputStream.CHUNK_NEW_CODE, fresh, freshSize);
+        }
+        return best;
+    }
+
+    /**
+     * Plans a chunk against a code trained on an earlier sample of the stream, without building a fresh code unless
+     * the trained code has drifted: when it cannot encode a byte of the chunk at all, or when it takes more than
+     * 'driftThreshold' (as a fraction) over the estimated cost of a code built for the chunk. A drifted chunk is
+     * planned in full, as plan() does.
+     *
+     * @param histogram  The byte counts of the chunk
+     * @param previous  The code most recently sent, or null if none has been
+     * @param trained  The code to send first when no code has been sent yet, or null to plan the chunk in full
+     * @param driftThreshold  The fraction by which the chunk's cost may exceed its estimate before a fresh code is
+     *     built
+     */
+    static Plan planSampled(Histogram histogram, CanonicalCode previous, CanonicalCode trained,
+            double driftThreshold) {
+        CanonicalCode code = previous != null ? previous : trained;
+        if (code == null) {
+            return plan(histogram, previous);
+        }
+        long bits = code.encodedBits(histogram);
+        if (bits < 0 || bits > histogram.estimateBits() * (1 + driftThreshold)) {
+            return plan(histogram, previous);
+        }
+
+        long size = BitBlock.serialSize(bits);
+        if (previous == null) {
+            size += code.toSerial().length;
+        }
+        if (size > histogram.getTotal()) {
+            return new Plan(HuffmanOutputStream.CHUNK_STORED, null, histogram.getTotal());
+        }
+        return new Plan(previous == null ? HuffmanOutputStream.CHUNK_NEW_CODE : HuffmanOutputStream.CHUNK_REUSE_CODE,
+                code, size);
+    }
+}
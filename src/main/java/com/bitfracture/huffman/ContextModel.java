@@ -0,0 +1,358 @@
+package com.bitfracture.huffman;
+
+import com.bitfracture.metrics.Metrics;
+import com.bitfracture.metrics.Phase;
+import com.bitfracture.serial.BitBlock;
+import com.bitfracture.serial.BitReader;
+import com.bitfracture.serial.BitWriter;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * An order-1 model, in which the code used for each byte depends on the byte before it. Giving every one of the 256
+ * previous-byte contexts its own code would cost far more in headers than it saves, so the contexts are grouped into a
+ * small number of clusters with similar statistics, and each cluster gets one canonical code. The first byte of the
+ * data is coded as though it followed a zero byte.
+ *
+ * Clusters are found by repeatedly assigning each context to the cluster whose code would encode it in the fewest
+ * bits, and recounting each cluster from the contexts assigned to it. This is done for 1, 2, 4, 8 and 16 clusters, and
+ * whichever gives the smallest output, headers included, is kept. A model with one cluster is the same as an order-0
+ * code.
+ *
+ * The serialized model is one byte holding the cluster count, the cluster of each of the 256 contexts packed at the
+ * fewest bits that can hold any cluster index (least significant bit first, and omitted for a single cluster), then
+ * the packed code lengths of each cluster's code.
+ */
+public class ContextModel {
+    static final int CONTEXT_COUNT = 256;
+    static final int MAX_CLUSTERS = 16;
+    private static final int[] CLUSTER_CHOICES = {1, 2, 4, 8, 16};
+    private static final int ITERATIONS = 8;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private int[] clusterOf = new int[CONTEXT_COUNT];
+    private CanonicalCode[] codes;
+
+    private ContextModel() {}
+
+    /**
+     * @return  The number of clusters, each of which has its own code
+     */
+    public int getClusterCount() {
+        return codes.length;
+    }
+
+    /**
+     * @return  The cluster whose code encodes a byte following 'previous' (an unsigned byte value)
+     */
+    int getCluster(int previous) {
+        return clusterOf[previous];
+    }
+
+    CanonicalCode getCode(int cluster) {
+        return codes[cluster];
+    }
+
+    /**
+     * Builds a model from every byte remaining in a stream.
+     *
+     * @param data  The data to be encoded, read until its end
+     * @throws IOException  If the stream fails
+     */
+    public static ContextModel fromStream(InputStream data) throws IOException {
+        long[] counts = new long[CONTEXT_COUNT * CanonicalCode.SYMBOL_COUNT];
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int previous = 0;
+        for (int read; (read = data.read(buffer)) >= 0;) {
+            for (int i = 0; i < read; i++) {
+                int symbol = buffer[i] & 0xFF;
+                counts[(previous << 8) | symbol]++;
+                previous = symbol;
+            }
+        }
+        return fromCounts(counts);
+    }
+
+    /**
+     * @param counts  The number of times each byte value follows each other, indexed by previous * 256 + symbol
+     */
+    static ContextModel fromCounts(long[] counts) {
+        long[] totals = new long[CONTEXT_COUNT];
+        for (int context = 0; context < CONTEXT_COUNT; context++) {
+            for (int symbol = 0; symbol < CanonicalCode.SYMBOL_COUNT; symbol++) {
+                totals[context] += counts[(context << 8) | symbol];
+            }
+        }
+
+        ContextModel best = null;
+        long bestSize = Long.MAX_VALUE;
+        for (int clusters : CLUSTER_CHOICES) {
+            ContextModel model = fromClusters(counts, cluster(counts, totals, clusters));
+            long size = model.encodedSize(counts);
+            if (size < bestSize) {
+                best = model;
+                bestSize = size;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Groups the contexts into at most 'clusters' clusters.
+     *
+     * @return  The cluster of each context, numbered from zero without gaps
+     */
+    private static int[] cluster(long[] counts, long[] totals, int clusters) {
+        int[] assignment = new int[CONTEXT_COUNT];
+        int[] seeds = IntStream.range(0, CONTEXT_COUNT)
+                .boxed()
+                .filter(context -> totals[context] > 0)
+                .sorted(Comparator.comparingLong((Integer context) -> totals[context]).reversed())
+                .limit(clusters)
+                .mapToInt(Integer::intValue)
+                .toArray();
+        if (seeds.length <= 1) {
+            return assignment;
+        }
+
+        //Start from the busiest contexts' own statistics, then alternate between assigning and recounting
+        long[][] clusterCounts = new long[seeds.length][];
+        for (int cluster = 0; cluster < seeds.length; cluster++) {
+            clusterCounts[cluster] = Arrays.copyOfRange(counts, seeds[cluster] << 8, (seeds[cluster] + 1) << 8);
+        }
+        for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+            double[][] costs = new double[seeds.length][];
+            for (int cluster = 0; cluster < seeds.length; cluster++) {
+                costs[cluster] = symbolCosts(clusterCounts[cluster]);
+            }
+            boolean changed = false;
+            for (int context = 0; context < CONTEXT_COUNT; context++) {
+                if (totals[context] == 0) {
+                    continue;
+                }
+                int nearest = 0;
+                double nearestCost = Double.MAX_VALUE;
+                for (int cluster = 0; cluster < seeds.length; cluster++) {
+                    double cost = 0;
+                    for (int symbol = 0; symbol < CanonicalCode.SYMBOL_COUNT; symbol++) {
+                        cost += counts[(context << 8) | symbol] * costs[cluster][symbol];
+                    }
+                    if (cost < nearestCost) {
+                        nearest = cluster;
+                        nearestCost = cost;
+                    }
+                }
+                changed |= assignment[context] != nearest || iteration == 0;
+                assignment[context] = nearest;
+            }
+            if (!changed) {
+                break;
+            }
+            for (long[] clusterCount : clusterCounts) {
+                Arrays.fill(clusterCount, 0);
+            }
+            for (int context = 0; context < CONTEXT_COUNT; context++) {
+                for (int symbol = 0; symbol < CanonicalCode.SYMBOL_COUNT; symbol++) {
+                    clusterCounts[assignment[context]][symbol] += counts[(context << 8) | symbol];
+                }
+            }
+        }
+
+        //Renumber the clusters which ended up with contexts, so there are no empty ones
+        int[] renumbered = new int[seeds.length];
+        Arrays.fill(renumbered, -1);
+        int used = 0;
+        for (int context = 0; context < CONTEXT_COUNT; context++) {
+            if (renumbered[assignment[context]] < 0) {
+                renumbered[assignment[context]] = used++;
+            }
+            assignment[context] = renumbered[assignment[context]];
+        }
+        return assignment;
+    }
+
+    /**
+     * @return  An estimate of the bits each symbol would take under a code built from 'counts', smoothed so that
+     *     symbols the cluster has not seen are expensive rather than impossible
+     */
+    private static double[] symbolCosts(long[] counts) {
+        double total = Arrays.stream(counts).sum() + 0.5 * CanonicalCode.SYMBOL_COUNT;
+        double[] costs = new double[CanonicalCode.SYMBOL_COUNT];
+        for (int symbol = 0; symbol < CanonicalCode.SYMBOL_COUNT; symbol++) {
+            costs[symbol] = -Math.log((counts[symbol] + 0.5) / total) / Math.log(2);
+        }
+        return costs;
+    }
+
+    private static ContextModel fromClusters(long[] counts, int[] assignment) {
+        ContextModel model = new ContextModel();
+        model.clusterOf = assignment;
+        int clusters = Arrays.stream(assignment).max().orElse(0) + 1;
+        Histogram[] histograms = new Histogram[clusters];
+        for (int cluster = 0; cluster < clusters; cluster++) {
+            histograms[cluster] = new Histogram();
+        }
+        for (int context = 0; context < CONTEXT_COUNT; context++) {
+            for (int symbol = 0; symbol < CanonicalCode.SYMBOL_COUNT; symbol++) {
+                histograms[assignment[context]].add(symbol, counts[(context << 8) | symbol]);
+            }
+        }
+        model.codes = new CanonicalCode[clusters];
+        for (int cluster = 0; cluster < clusters; cluster++) {
+            model.codes[cluster] = HuffmanTree.fromHistogram(histograms[cluster], CanonicalCode.MAX_CODE_LENGTH)
+                    .getCanonicalCode()
+                    .get();
+        }
+        return model;
+    }
+
+    /**
+     * @return  The number of bytes the model and the counted data would take once encoded
+     */
+    private long encodedSize(long[] counts) {
+        long bits = 0;
+        for (int context = 0; context < CONTEXT_COUNT; context++) {
+            CanonicalCode code = codes[clusterOf[context]];
+            for (int symbol = 0; symbol < CanonicalCode.SYMBOL_COUNT; symbol++) {
+                bits += counts[(context << 8) | symbol] * code.getLength(symbol);
+            }
+        }
+        return toSerial().length + BitBlock.serialSize(bits);
+    }
+
+    /**
+     * Encodes every byte remaining in rawData, each with the code of its predecessor's cluster. The writer is not
+     * finished, so that more bits may follow.
+     *
+     * @throws IOException  If rawData cannot be read or the writer fails
+     * @throws IllegalArgumentException  If a byte follows a context whose code has no code for it
+     */
+    void encode(InputStream rawData, BitWriter writer) throws IOException {
+        HuffmanEncodeTable[] tables = new HuffmanEncodeTable[CONTEXT_COUNT];
+        for (int context = 0; context < CONTEXT_COUNT; context++) {
+            tables[context] = context > 0 && clusterOf[context] == clusterOf[context - 1]
+                    ? tables[context - 1]
+                    : HuffmanEncodeTable.fromCanonical(codes[clusterOf[context]]);
+        }
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int previous = 0;
+        for (int read; (read = rawData.read(buffer)) >= 0;) {
+            long start = Metrics.start();
+            for (int i = 0; i < read; i++) {
+                int symbol = buffer[i] & 0xFF;
+                HuffmanEncodeTable table = tables[previous];
+                int codeLength = table.getLength(symbol);
+                if (codeLength == 0) {
+                    throw new IllegalArgumentException("Byte value " + symbol + " has no code after " + previous);
+                }
+                writer.write(table.getPath(symbol) & 0xFFFFFFFFL, codeLength);
+                previous = symbol;
+            }
+            Metrics.phaseCompleted(Phase.ENCODE, start, read);
+        }
+    }
+
+    /**
+     * Decodes every bit available from the reader, choosing each code's table by the byte decoded before it.
+     *
+     * @throws IOException  If rawData cannot be written
+     */
+    void decode(BitReader reader, OutputStream rawData) throws IOException {
+        HuffmanDecodeTable[] clusterTables = new HuffmanDecodeTable[codes.length];
+        for (int cluster = 0; cluster < codes.length; cluster++) {
+            clusterTables[cluster] = HuffmanDecodeTable.fromCanonical(codes[cluster]);
+        }
+        HuffmanDecodeTable[] tables = new HuffmanDecodeTable[CONTEXT_COUNT];
+        for (int context = 0; context < CONTEXT_COUNT; context++) {
+            tables[context] = clusterTables[clusterOf[context]];
+        }
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int count = 0;
+        long start = Metrics.start();
+        for (int symbol, previous = 0; (symbol = tables[previous].decodeSymbol(reader)) >= 0; previous = symbol) {
+            if (count == buffer.length) {
+                Metrics.phaseCompleted(Phase.DECODE, start, count);
+                rawData.write(buffer, 0, count);
+                count = 0;
+                start = Metrics.start();
+            }
+            buffer[count++] = (byte)symbol;
+        }
+        Metrics.phaseCompleted(Phase.DECODE, start, count);
+        rawData.write(buffer, 0, count);
+    }
+
+    byte[] toSerial() {
+        int width = mapWidth(codes.length);
+        byte[][] serialCodes = new byte[codes.length][];
+        int length = 1 + CONTEXT_COUNT * width / Byte.SIZE;
+        for (int cluster = 0; cluster < codes.length; cluster++) {
+            serialCodes[cluster] = codes[cluster].toSerial();
+            length += serialCodes[cluster].length;
+        }
+
+        byte[] serial = new byte[length];
+        serial[0] = (byte)codes.length;
+        int bitIndex = 0;
+        for (int context = 0; context < CONTEXT_COUNT; context++) {
+            for (int bit = 0; bit < width; bit++, bitIndex++) {
+                if ((clusterOf[context] & (1 << bit)) != 0) {
+                    serial[1 + bitIndex / Byte.SIZE] |= (byte)(1 << (bitIndex % Byte.SIZE));
+                }
+            }
+        }
+        int offset = 1 + CONTEXT_COUNT * width / Byte.SIZE;
+        for (byte[] serialCode : serialCodes) {
+            System.arraycopy(serialCode, 0, serial, offset, serialCode.length);
+            offset += serialCode.length;
+        }
+        return serial;
+    }
+
+    /**
+     * Reads a model written by toSerial().
+     *
+     * @throws IOException  If the stream fails, ends early, or holds an invalid model
+     */
+    static ContextModel fromSerialStream(DataInputStream serial) throws IOException {
+        int clusters = serial.readUnsignedByte();
+        if (clusters < 1 || clusters > MAX_CLUSTERS) {
+            throw new IOException("Context cluster count is out of range: " + clusters);
+        }
+        int width = mapWidth(clusters);
+        byte[] packed = new byte[CONTEXT_COUNT * width / Byte.SIZE];
+        serial.readFully(packed);
+
+        ContextModel model = new ContextModel();
+        int bitIndex = 0;
+        for (int context = 0; context < CONTEXT_COUNT; context++) {
+            for (int bit = 0; bit < width; bit++, bitIndex++) {
+                if ((packed[bitIndex / Byte.SIZE] & (1 << (bitIndex % Byte.SIZE))) != 0) {
+                    model.clusterOf[context] |= 1 << bit;
+                }
+            }
+            if (model.clusterOf[context] >= clusters) {
+                throw new IOException("Context is mapped to a cluster which does not exist");
+            }
+        }
+        model.codes = new CanonicalCode[clusters];
+        for (int cluster = 0; cluster < clusters; cluster++) {
+            model.codes[cluster] = CanonicalCode.fromSerialStream(serial);
+        }
+        return model;
+    }
+
+    /**
+     * @return  The bits needed to store any cluster index, which is zero for a single cluster
+     */
+    private static int mapWidth(int clusters) {
+        return Integer.SIZE - Integer.numberOfLeadingZeros(clusters - 1);
+    }
+}
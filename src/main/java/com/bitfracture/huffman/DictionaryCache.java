@@ -0,0 +1,79 @@
+package com.bitfracture.huffman;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.IntFunction;
+
+/**
+ * A bounded, least recently used cache of dictionaries, keyed by ID, which decoders use to find the dictionary a
+ * payload names. When a lookup misses, the loader (if one was given) is asked for the dictionary, for example from
+ * wherever dictionaries are persisted, and the result is kept. Once the cache is full, the dictionary used least
+ * recently is dropped. The cache is safe to share between threads.
+ */
+public class DictionaryCache {
+    private final IntFunction<HuffmanDictionary> loader;
+    private final Map<Integer, HuffmanDictionary> dictionaries;
+
+    /**
+     * Creates a cache which only holds the dictionaries added to it.
+     *
+     * @param capacity  The most dictionaries held at once
+     */
+    public DictionaryCache(int capacity) {
+        this(capacity, id -> null);
+    }
+
+    /**
+     * @param capacity  The most dictionaries held at once
+     * @param loader  Provides the dictionary for an ID which is not held, or null if there is no such dictionary
+     */
+    public DictionaryCache(int capacity, IntFunction<HuffmanDictionary> loader) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.loader = loader;
+        this.dictionaries = new LinkedHashMap<Integer, HuffmanDictionary>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, HuffmanDictionary> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Adds a dictionary to the cache, making it the most recently used.
+     */
+    public synchronized void put(HuffmanDictionary dictionary) {
+        dictionaries.put(dictionary.getId(), dictionary);
+    }
+
+    /**
+     * @return  The dictionary with the given ID, from the cache or else the loader, or empty if neither has it
+     */
+    public Optional<HuffmanDictionary> get(int id) {
+        synchronized (this) {
+            HuffmanDictionary dictionary = dictionaries.get(id);
+            if (dictionary != null) {
+                return Optional.of(dictionary);
+            }
+        }
+
+        //Load outside the lock, so a slow load does not hold up lookups of other dictionaries
+        HuffmanDictionary loaded = loader.apply(id);
+        if (loaded == null) {
+            return Optional.empty();
+        } else if (loaded.getId() != id) {
+            throw new IllegalStateException("Loader returned a dictionary with the wrong ID for " + id);
+        }
+        put(loaded);
+        return Optional.of(loaded);
+    }
+
+    /**
+     * @return  The number of dictionaries held
+     */
+    public synchronized int size() {
+        return dictionaries.size();
+    }
+}
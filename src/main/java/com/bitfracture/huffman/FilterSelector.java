@@ -0,0 +1,169 @@
+package com.bitfracture.huffman;
+
+import com.bitfracture.filter.DeltaFilter;
+import com.bitfracture.filter.FilterChain;
+import com.bitfracture.filter.MoveToFrontFilter;
+import com.bitfracture.filter.RunLengthFilter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Chooses the filter chain to apply before Huffman coding, in the same pass over the data that counts its bytes. The
+ * first SAMPLE_SIZE bytes are run through every candidate chain and the output of each is counted. The candidates are
+ * compared by an estimate of the Huffman coded size of their output over that sample, which is its entropy except that
+ * no byte can take less than one bit. A chain is only chosen over leaving the data unfiltered if it is expected to
+ * save at least MIN_SAVING of the output, since every filter slows both encoding and decoding.
+ *
+ * Once the sample is complete, the rest of the data only passes through the chosen chain. The histogram of that chain
+ * is therefore exact for the whole of the data, which the code must be built from, while choosing costs no more than
+ * running every candidate over the sample.
+ *
+ * The candidates are no filter, delta or move-to-front, and each of those followed by run-length coding.
+ */
+public class FilterSelector {
+    static final double MIN_SAVING = 0.02;
+    /**
+     * The bytes at the start of the data which every candidate chain is run over.
+     */
+    public static final int SAMPLE_SIZE = 1024 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FilterChain[] candidates = {
+            FilterChain.NONE,
+            new FilterChain(new RunLengthFilter()),
+            new FilterChain(new DeltaFilter()),
+            new FilterChain(new DeltaFilter(), new RunLengthFilter()),
+            new FilterChain(new MoveToFrontFilter()),
+            new FilterChain(new MoveToFrontFilter(), new RunLengthFilter())};
+    private final Histogram[] histograms = new Histogram[candidates.length];
+    private final OutputStream[] streams = new OutputStream[candidates.length];
+    private long sampled = 0;
+    private boolean chosenYet = false;
+    private boolean finished = false;
+    private int chosen;
+
+    public FilterSelector() {
+        for (int i = 0; i < candidates.length; i++) {
+            histograms[i] = new Histogram();
+            streams[i] = candidates[i].encoder(new HistogramOutputStream(histograms[i]));
+        }
+    }
+
+    /**
+     * Reads the whole of 'data' and chooses a chain for it.
+     */
+    public static FilterSelector fromStream(InputStream data) throws IOException {
+        FilterSelector selector = new FilterSelector();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        for (int read; (read = data.read(buffer)) >= 0;) {
+            selector.add(buffer, 0, read);
+        }
+        return selector;
+    }
+
+    /**
+     * Runs the given range through every candidate chain while the sample is being taken, and through the chosen chain
+     * after that.
+     *
+     * @throws IllegalStateException  If a chain has already been chosen
+     */
+    public void add(byte[] data, int offset, int length) {
+        if (finished) {
+            throw new IllegalStateException("A chain has already been chosen");
+        }
+        try {
+            if (!chosenYet) {
+                int sample = (int)Math.min(length, SAMPLE_SIZE - sampled);
+                for (OutputStream stream : streams) {
+                    stream.write(data, offset, sample);
+                }
+                sampled += sample;
+                offset += sample;
+                length -= sample;
+                if (sampled < SAMPLE_SIZE) {
+                    return;
+                }
+                choose();
+            }
+            streams[chosen].write(data, offset, length);
+        } catch (IOException e) {
+            //The streams only count, so this cannot happen
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return  The chain expected to give the smallest output. No more data may be added once it is called.
+     */
+    public FilterChain getFilters() {
+        finish();
+        return candidates[chosen];
+    }
+
+    /**
+     * @return  The byte counts of the data after it has passed through the chosen chain
+     */
+    public Histogram getHistogram() {
+        finish();
+        return histograms[chosen];
+    }
+
+    private void finish() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        try {
+            if (!chosenYet) {
+                choose();
+            }
+            streams[chosen].close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Chooses a chain from the counts of the sample. Each stream is flushed first, so that the output its filters have
+     * staged is counted; only a run still being measured is left out. The other chains are not used after this.
+     */
+    private void choose() throws IOException {
+        chosenYet = true;
+        for (OutputStream stream : streams) {
+            stream.flush();
+        }
+        double unfiltered = histograms[0].estimateBits();
+        double best = unfiltered * (1 - MIN_SAVING);
+        chosen = 0;
+        for (int i = 1; i < candidates.length; i++) {
+            double bits = histograms[i].estimateBits();
+            if (bits < best) {
+                best = bits;
+                chosen = i;
+            }
+        }
+    }
+
+    private static class HistogramOutputStream extends OutputStream {
+        private final Histogram histogram;
+        private final byte[] single = new byte[1];
+
+        HistogramOutputStream(Histogram histogram) {
+            this.histogram = histogram;
+        }
+
+        @Override
+        public void write(int byt) {
+            single[0] = (byte)byt;
+            histogram.add(single, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] data, int offset, int length) {
+            histogram.add(data, offset, length);
+        }
+    }
+}
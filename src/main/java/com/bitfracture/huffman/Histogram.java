@@ -0,0 +1,279 @@
+package com.bitfracture.huffman;
+
+import com.bitfracture.metrics.Metrics;
+import com.bitfracture.metrics.Phase;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Counts how often each byte value occurs. Data is read in bulk buffers and counted into four interleaved lanes of
+ * primitive counters, so that runs of the same byte increment different memory locations instead of repeatedly
+ * stalling on the counter that was just written. The lanes are folded into the totals once per buffer.
+ *
+ * Large files and arrays may be split across a ForkJoinPool, with each task producing a partial histogram that is
+ * merged into the final result.
+ */
+public class Histogram {
+    private static final int LANES = 4;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int PARALLEL_THRESHOLD = 4 * 1024 * 1024;
+
+    private final long[] counts = new long[CanonicalCode.SYMBOL_COUNT];
+    private final int[] lanes = new int[LANES * CanonicalCode.SYMBOL_COUNT];
+
+    public Histogram() {}
+
+    /**
+     * @return  The number of times 'symbol' (an unsigned byte value) was counted
+     */
+    public long getCount(int symbol) {
+        return counts[symbol];
+    }
+
+    /**
+     * @return  The total number of bytes counted
+     */
+    public long getTotal() {
+        return Arrays.stream(counts).sum();
+    }
+
+    /**
+     * Counts every byte in the given range.
+     */
+    public void add(byte[] data, int offset, int length) {
+        long start = Metrics.start();
+        addRange(data, offset, length);
+        Metrics.phaseCompleted(Phase.HISTOGRAM, start, length);
+    }
+
+    /**
+     * Counts every byte remaining in a buffer, reading straight out of it (including direct and memory-mapped buffers)
+     * without copying. The buffer's position is not changed.
+     */
+    public void add(ByteBuffer data) {
+        long start = Metrics.start();
+        for (int segment = data.position(), end = data.limit(); segment < end; segment += BUFFER_SIZE) {
+            addSegment(data, segment, Math.min(BUFFER_SIZE, end - segment));
+        }
+        Metrics.phaseCompleted(Phase.HISTOGRAM, start, data.remaining());
+    }
+
+    /**
+     * Counts 'symbol' (an unsigned byte value) a further 'count' times.
+     */
+    void add(int symbol, long count) {
+        counts[symbol] += count;
+    }
+
+    /**
+     * Adds the counts of another histogram to this one.
+     */
+    public void merge(Histogram other) {
+        for (int symbol = 0; symbol < CanonicalCode.SYMBOL_COUNT; symbol++) {
+            counts[symbol] += other.counts[symbol];
+        }
+    }
+
+    /**
+     * @return  About how many bits a code built from this histogram would take to encode the data it counted
+     */
+    double estimateBits() {
+        double total = getTotal();
+        double bits = 0;
+        for (int symbol = 0; symbol < CanonicalCode.SYMBOL_COUNT; symbol++) {
+            if (counts[symbol] > 0) {
+                bits += counts[symbol] * Math.max(1, Math.log(total / counts[symbol]) / Math.log(2));
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Counts every byte remaining in a stream, reading it in bulk buffers.
+     *
+     * @param data  The stream to read until its end
+     * @throws IOException  If the stream fails
+     */
+    public static Histogram fromStream(InputStream data) throws IOException {
+        long start = Metrics.start();
+        Histogram histogram = new Histogram();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        for (int read; (read = data.read(buffer)) >= 0;) {
+            histogram.addSegment(buffer, 0, read);
+        }
+        Metrics.phaseCompleted(Phase.HISTOGRAM, start, histogram.getTotal());
+        return histogram;
+    }
+
+    /**
+     * Counts every byte in an array, splitting large arrays across the given pool.
+     */
+    public static Histogram fromBytes(byte[] data, ForkJoinPool pool) {
+        long start = Metrics.start();
+        Histogram histogram = pool.invoke(new ArrayTask(data, 0, data.length));
+        Metrics.phaseCompleted(Phase.HISTOGRAM, start, data.length);
+        return histogram;
+    }
+
+    /**
+     * Counts every byte in a file, splitting large files across the given pool. Each task reads its own range of the
+     * file with positional reads, so no task waits on another.
+     *
+     * @throws IOException  If the file cannot be read
+     */
+    public static Histogram fromFile(Path file, ForkJoinPool pool) throws IOException {
+        long start = Metrics.start();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Histogram histogram = pool.invoke(new FileTask(channel, 0, channel.size()));
+            Metrics.phaseCompleted(Phase.HISTOGRAM, start, channel.size());
+            return histogram;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Counts every byte in the given range, without reporting metrics, for tasks which are part of a larger count.
+     */
+    private void addRange(byte[] data, int offset, int length) {
+        for (int start = offset, end = offset + length; start < end; start += BUFFER_SIZE) {
+            addSegment(data, start, Math.min(BUFFER_SIZE, end - start));
+        }
+    }
+
+    /**
+     * Counts a segment of at most BUFFER_SIZE bytes, which keeps every lane counter well within range of an int.
+     */
+    private void addSegment(byte[] data, int offset, int length) {
+        int i = offset;
+        int end = offset + length;
+        for (int unrolledEnd = end - (LANES - 1); i < unrolledEnd; i += LANES) {
+            lanes[data[i] & 0xFF]++;
+            lanes[CanonicalCode.SYMBOL_COUNT + (data[i + 1] & 0xFF)]++;
+            lanes[2 * CanonicalCode.SYMBOL_COUNT + (data[i + 2] & 0xFF)]++;
+            lanes[3 * CanonicalCode.SYMBOL_COUNT + (data[i + 3] & 0xFF)]++;
+        }
+        for (; i < end; i++) {
+            lanes[data[i] & 0xFF]++;
+        }
+
+        foldLanes();
+    }
+
+    /**
+     * The same as addSegment() for arrays, using absolute reads from the buffer.
+     */
+    private void addSegment(ByteBuffer data, int offset, int length) {
+        int i = offset;
+        int end = offset + length;
+        for (int unrolledEnd = end - (LANES - 1); i < unrolledEnd; i += LANES) {
+            lanes[data.get(i) & 0xFF]++;
+            lanes[CanonicalCode.SYMBOL_COUNT + (data.get(i + 1) & 0xFF)]++;
+            lanes[2 * CanonicalCode.SYMBOL_COUNT + (data.get(i + 2) & 0xFF)]++;
+            lanes[3 * CanonicalCode.SYMBOL_COUNT + (data.get(i + 3) & 0xFF)]++;
+        }
+        for (; i < end; i++) {
+            lanes[data.get(i) & 0xFF]++;
+        }
+        foldLanes();
+    }
+
+    private void foldLanes() {
+        for (int symbol = 0; symbol < CanonicalCode.SYMBOL_COUNT; symbol++) {
+            counts[symbol] += lanes[symbol] + lanes[CanonicalCode.SYMBOL_COUNT + symbol]
+                    + lanes[2 * CanonicalCode.SYMBOL_COUNT + symbol] + lanes[3 * CanonicalCode.SYMBOL_COUNT + symbol];
+        }
+        Arrays.fill(lanes, 0);
+    }
+
+    /**
+     * Counts a range of an array, splitting it in half until the ranges are small enough to count directly.
+     */
+    private static class ArrayTask extends RecursiveTask<Histogram> {
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] data;
+        private final int offset;
+        private final int length;
+
+        ArrayTask(byte[] data, int offset, int length) {
+            this.data = data;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        protected Histogram compute() {
+            if (length <= PARALLEL_THRESHOLD) {
+                Histogram histogram = new Histogram();
+                histogram.addRange(data, offset, length);
+                return histogram;
+            }
+            int half = length / 2;
+            ArrayTask right = new ArrayTask(data, offset + half, length - half);
+            right.fork();
+            Histogram histogram = new ArrayTask(data, offset, half).compute();
+            histogram.merge(right.join());
+            return histogram;
+        }
+    }
+
+    /**
+     * Counts a range of a file, splitting it in half until the ranges are small enough to count directly.
+     */
+    private static class FileTask extends RecursiveTask<Histogram> {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long position;
+        private final long length;
+
+        FileTask(FileChannel channel, long position, long length) {
+            this.channel = channel;
+            this.position = position;
+            this.length = length;
+        }
+
+        @Override
+        protected Histogram compute() {
+            if (length <= PARALLEL_THRESHOLD) {
+                return countRange();
+            }
+            long half = length / 2;
+            FileTask right = new FileTask(channel, position + half, length - half);
+            right.fork();
+            Histogram histogram = new FileTask(channel, position, half).compute();
+            histogram.merge(right.join());
+            return histogram;
+        }
+
+        private Histogram countRange() {
+            Histogram histogram = new Histogram();
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            try {
+                for (long read = 0; read < length;) {
+                    buffer.clear();
+                    buffer.limit((int)Math.min(BUFFER_SIZE, length - read));
+                    int count = channel.read(buffer, position + read);
+                    if (count < 0) {
+                        break;
+                    }
+                    histogram.addSegment(buffer.array(), 0, count);
+                    read += count;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return histogram;
+        }
+    }
+}
@@ -0,0 +1,491 @@
+package com.bitfracture.huffman;
+
+import com.bitfracture.metrics.Metrics;
+import com.bitfracture.metrics.Phase;
+import com.bitfracture.serial.ArrayOutputStream;
+import com.bitfracture.serial.BitBlock;
+import com.bitfracture.serial.BitReader;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * A flattened form of a HuffmanTree used for decoding. The root table is indexed by the next ROOT_BITS bits of the
+ * stream and directly yields the symbol (or pair of symbols) those bits begin with. Codes longer than ROOT_BITS link
+ * to a second-level table indexed by the bits that follow, and so on for as many levels as the tree is deep.
+ *
+ * Each entry is packed into an int:
+ *  - Symbol entries: bits 0-4 hold the length of the first code, bits 5-9 the combined length of both codes, bits
+ *    10-11 the symbol count (1 or 2), bits 12-19 the first symbol and bits 20-27 the second symbol.
+ *  - Pair entries, in tables built for a PairModel's extended alphabet: a single code standing for two bytes, laid out
+ *    like a two-symbol entry whose lengths are both the length of that one code. The existing decode loop then emits
+ *    both bytes with one lookup.
+ *  - Link entries: bits 0-4 hold the index width of the next table, bits 10-11 are zero and bits 12-31 hold the offset
+ *    of the next table.
+ * An entry of zero is never produced for a reachable code, so it marks a corrupt stream.
+ */
+class HuffmanDecodeTable {
+    static final int ROOT_BITS = 11;
+    static final int INTERLEAVED_PADDING = Long.BYTES;
+    private static final int OUTPUT_BUFFER_SIZE = 8192;
+    private static final int FIELD_MASK = 0b11111;
+    private static final int SYMBOL_KEY_BITS = 16;
+
+    private int[] entries = new int[1 << ROOT_BITS];
+    private int size = 0;
+    private int rootBits;
+    private int[] pairs = new int[0];
+
+    private HuffmanDecodeTable() {}
+
+    /**
+     * Flattens the given tree into decode tables.
+     *
+     * @param tree  The tree the data was encoded with
+     */
+    static HuffmanDecodeTable fromTree(HuffmanTree tree) {
+        long start = Metrics.start();
+        HuffmanDecodeTable table = new HuffmanDecodeTable();
+        HuffmanNode head = tree.getHead();
+        table.rootBits = Math.min(ROOT_BITS, height(head));
+        table.buildTable(head, table.rootBits);
+        table.pairRootEntries();
+        Metrics.phaseCompleted(Phase.TABLE_BUILD, start, 0);
+        return table;
+    }
+
+    /**
+     * Builds decode tables straight from canonical code lengths, without creating any HuffmanNode objects.
+     *
+     * @param code  The canonical code the data was encoded with
+     */
+    static HuffmanDecodeTable fromCanonical(CanonicalCode code) {
+        return fromCanonical(code, new int[0]);
+    }
+
+    /**
+     * Builds decode tables for a code whose alphabet is extended with byte pairs. Since a pair decodes to two bytes,
+     * decoding into an array always leaves room for them, and stops one byte short of the end of a range when the
+     * next code may be a pair.
+     *
+     * @param code  The canonical code the data was encoded with
+     * @param pairs  The two bytes each symbol from 256 up stands for, the first in bits 8-15 and the second in bits 0-7
+     * @throws IllegalArgumentException  If the code's alphabet is not 256 symbols plus one for each pair
+     */
+    static HuffmanDecodeTable fromCanonical(CanonicalCode code, int[] pairs) {
+        if (code.getSymbolCount() != CanonicalCode.SYMBOL_COUNT + pairs.length) {
+            throw new IllegalArgumentException("The code does not have one symbol for each byte and each pair");
+        }
+        long start = Metrics.start();
+        HuffmanDecodeTable table = new HuffmanDecodeTable();
+        table.pairs = pairs;
+        int[] symbols = new int[code.getSymbolCount()];
+        int[] lengths = new int[code.getSymbolCount()];
+        int[] paths = new int[code.getSymbolCount()];
+        int count = 0;
+        for (int symbol = 0; symbol < code.getSymbolCount(); symbol++) {
+            int length = code.getLength(symbol);
+            if (length > 0) {
+                symbols[count++] = symbol;
+                lengths[symbol] = length;
+                //The stream holds the first bit of a code in its lowest position, so reverse the code
+                paths[symbol] = Integer.reverse(code.getCode(symbol)) >>> (Integer.SIZE - length);
+            }
+        }
+        table.rootBits = Math.min(ROOT_BITS, code.getMaxLength());
+        table.buildTable(Arrays.copyOf(symbols, count), lengths, paths, 0, table.rootBits);
+        table.pairRootEntries();
+        Metrics.phaseCompleted(Phase.TABLE_BUILD, start, 0);
+        return table;
+    }
+
+    /**
+     * Decodes every bit available from the reader, writing the symbols to rawData in bulk.
+     *
+     * @param reader  The source of encoded bits
+     * @param rawData  The destination for decoded bytes
+     * @throws IOException  If rawData cannot be written
+     */
+    void decode(BitReader reader, OutputStream rawData) throws IOException {
+        byte[] buffer = new byte[OUTPUT_BUFFER_SIZE];
+        for (int count; (count = decode(reader, buffer, 0, buffer.length)) > 0;) {
+            rawData.write(buffer, 0, count);
+        }
+    }
+
+    /**
+     * Decodes bits from the reader straight into a range of an array, until either the bits or the range run out.
+     * When the range fills first, the reader is left at the next code, so decoding can continue into another range.
+     *
+     * @param reader  The source of encoded bits
+     * @param rawData  The destination for decoded bytes
+     * @return  The number of bytes decoded
+     */
+    int decode(BitReader reader, byte[] rawData, int offset, int length) {
+        long start = Metrics.start();
+        int count = offset;
+        int end = pairs.length > 0 ? offset + length - 1 : offset + length;
+        int rootMask = (1 << rootBits) - 1;
+        if (rootBits == 0 && reader.fill() > 0) {
+            throw new RuntimeException("Table decode failed because a single-value tree cannot consume any bits");
+        }
+        for (int available; count < end && (available = reader.fill()) > 0;) {
+            int entry = entries[(int)reader.peek() & rootMask];
+            if (symbolCount(entry) == 0) {
+                entry = seekLinked(reader, entry);
+                available = reader.available();
+            }
+            int firstLength = entry & FIELD_MASK;
+            if (symbolCount(entry) == 0 || firstLength > available) {
+                throw new RuntimeException("Table decode failed because the bit stream ended unexpectedly");
+            }
+            rawData[count++] = (byte)(entry >>> 12);
+            int pairLength = (entry >>> 5) & FIELD_MASK;
+            if (symbolCount(entry) == 2 && pairLength <= available && count < offset + length) {
+                rawData[count++] = (byte)(entry >>> 20);
+                reader.skip(pairLength);
+            } else {
+                reader.skip(firstLength);
+            }
+        }
+        Metrics.phaseCompleted(Phase.DECODE, start, count - offset);
+        return count - offset;
+    }
+
+    /**
+     * Decodes a single symbol, for callers which choose the table for each symbol separately.
+     *
+     * @param reader  The source of encoded bits
+     * @return  The symbol (an unsigned byte value), or -1 if the reader has no more bits
+     */
+    int decodeSymbol(BitReader reader) {
+        int available = reader.fill();
+        if (available == 0) {
+            return -1;
+        } else if (rootBits == 0) {
+            throw new RuntimeException("Table decode failed because a single-value tree cannot consume any bits");
+        }
+        int entry = entries[(int)reader.peek() & ((1 << rootBits) - 1)];
+        if (symbolCount(entry) == 0) {
+            entry = seekLinked(reader, entry);
+            available = reader.available();
+        }
+        int length = entry & FIELD_MASK;
+        if (symbolCount(entry) == 0 || length > available) {
+            throw new RuntimeException("Table decode failed because the bit stream ended unexpectedly");
+        }
+        reader.skip(length);
+        return (entry >>> 12) & 0xFF;
+    }
+
+    /**
+     * Decodes one frame of the interleaved format, in which symbol i of the frame was written to bit stream i % 4.
+     * The four streams are advanced together in one loop, so that the CPU can work on four independent lookups at
+     * once instead of waiting for each code's length before it can find the next.
+     *
+     * @param payload  The four streams one after another, followed by at least INTERLEAVED_PADDING spare bytes so that
+     *     a whole word can always be read at any position within the streams
+     * @param streamLengths  The length in bytes of each of the four streams
+     * @param rawData  The destination for the decoded frame
+     * @param rawLength  The number of symbols in the frame
+     * @throws IOException  If the streams do not decode to exactly rawLength symbols
+     */
+    void decodeInterleaved(byte[] payload, int[] streamLengths, byte[] rawData, int rawLength) throws IOException {
+        long start = Metrics.start();
+        ByteBuffer words = ByteBuffer.wrap(payload).order(ByteOrder.LITTLE_ENDIAN);
+        int rootMask = (1 << rootBits) - 1;
+        long[] starts = new long[InterleavedEncoder.STREAMS + 1];
+        for (int stream = 0; stream < InterleavedEncoder.STREAMS; stream++) {
+            starts[stream + 1] = starts[stream] + streamLengths[stream] * (long)Byte.SIZE;
+        }
+        long position0 = starts[0];
+        long position1 = starts[1];
+        long position2 = starts[2];
+        long position3 = starts[3];
+        int i = 0;
+        try {
+            for (int end = rawLength - (InterleavedEncoder.STREAMS - 1); i < end; i += InterleavedEncoder.STREAMS) {
+                long bits0 = words.getLong((int)(position0 >>> 3)) >>> (position0 & 7);
+                long bits1 = words.getLong((int)(position1 >>> 3)) >>> (position1 & 7);
+                long bits2 = words.getLong((int)(position2 >>> 3)) >>> (position2 & 7);
+                long bits3 = words.getLong((int)(position3 >>> 3)) >>> (position3 & 7);
+                int entry0 = entries[(int)bits0 & rootMask];
+                int entry1 = entries[(int)bits1 & rootMask];
+                int entry2 = entries[(int)bits2 & rootMask];
+                int entry3 = entries[(int)bits3 & rootMask];
+                if (symbolCount(entry0) == 0) {
+                    entry0 = resolveLinked(bits0, entry0);
+                }
+                if (symbolCount(entry1) == 0) {
+                    entry1 = resolveLinked(bits1, entry1);
+                }
+                if (symbolCount(entry2) == 0) {
+                    entry2 = resolveLinked(bits2, entry2);
+                }
+                if (symbolCount(entry3) == 0) {
+                    entry3 = resolveLinked(bits3, entry3);
+                }
+                rawData[i] = (byte)(entry0 >>> 12);
+                rawData[i + 1] = (byte)(entry1 >>> 12);
+                rawData[i + 2] = (byte)(entry2 >>> 12);
+                rawData[i + 3] = (byte)(entry3 >>> 12);
+                position0 += entry0 & FIELD_MASK;
+                position1 += entry1 & FIELD_MASK;
+                position2 += entry2 & FIELD_MASK;
+                position3 += entry3 & FIELD_MASK;
+            }
+
+            //The last few symbols only reach the first few streams
+            long[] positions = {position0, position1, position2, position3};
+            for (int stream = 0; i < rawLength; i++, stream++) {
+                long bits = words.getLong((int)(positions[stream] >>> 3)) >>> (positions[stream] & 7);
+                int entry = entries[(int)bits & rootMask];
+                if (symbolCount(entry) == 0) {
+                    entry = resolveLinked(bits, entry);
+                }
+                rawData[i] = (byte)(entry >>> 12);
+                positions[stream] += entry & FIELD_MASK;
+            }
+
+            //Every stream must have been used up, to its final (padded) byte
+            for (int stream = 0; stream < InterleavedEncoder.STREAMS; stream++) {
+                long used = (positions[stream] - starts[stream] + Byte.SIZE - 1) / Byte.SIZE;
+                if (used != streamLengths[stream]) {
+                    throw new IOException("Interleaved stream " + stream + " did not decode to its expected length");
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Interleaved streams ran past the end of their frame", e);
+        }
+        Metrics.phaseCompleted(Phase.DECODE, start, rawLength);
+    }
+
+    /**
+     * Follows link entries through the deeper tables for a code longer than the root table's width.
+     *
+     * @param bits  The bits starting at the code, first bit in the least significant position
+     * @param entry  The link entry the root table gave for those bits
+     * @return  A symbol entry whose length is the full length of the code
+     */
+    private int resolveLinked(long bits, int entry) {
+        int consumed = rootBits;
+        while (true) {
+            int width = entry & FIELD_MASK;
+            if (width == 0) {
+                throw new RuntimeException("Table decode failed because the bit stream is corrupt");
+            }
+            entry = entries[(entry >>> 12) + ((int)(bits >>> consumed) & ((1 << width) - 1))];
+            if (symbolCount(entry) != 0) {
+                int codeLength = consumed + (entry & FIELD_MASK);
+                return (entry & ~0x3FF) | (codeLength << 5) | codeLength;
+            }
+            consumed += width;
+        }
+    }
+
+    /**
+     * Decodes a self-contained run of serialized BitBlocks held in memory.
+     *
+     * @param payload  The serialized blocks
+     * @param expectedLength  The number of bytes the blocks are known to decode to
+     * @throws IOException  If the payload does not decode to exactly expectedLength bytes
+     */
+    byte[] decodePayload(byte[] payload, int expectedLength) throws IOException {
+        byte[] decoded = new byte[expectedLength];
+        decodePayload(payload, payload.length, decoded, expectedLength);
+        return decoded;
+    }
+
+    /**
+     * Decodes a self-contained run of serialized BitBlocks held in memory into the start of an array, so that callers
+     * decoding many payloads can reuse their arrays.
+     *
+     * @param payload  An array starting with the serialized blocks
+     * @param payloadLength  The length of the serialized blocks
+     * @param decoded  The array to decode into, which must hold at least expectedLength bytes
+     * @param expectedLength  The number of bytes the blocks are known to decode to
+     * @throws IOException  If the payload does not decode to exactly expectedLength bytes
+     */
+    void decodePayload(byte[] payload, int payloadLength, byte[] decoded, int expectedLength) throws IOException {
+        InputStream blocks = new ByteArrayInputStream(payload, 0, payloadLength);
+        BitReader reader = new BitReader(() -> {
+            try {
+                return BitBlock.fromSerialStream(blocks);
+            } catch (IOException e) {
+                throw new RuntimeException("Data failed to read due to a IO error", e);
+            }
+        });
+        ArrayOutputStream out = new ArrayOutputStream();
+        out.reset(decoded, 0, expectedLength);
+        try {
+            decode(reader, out);
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Encoded data decoded to the wrong length", e);
+        }
+        if (out.getPosition() != expectedLength) {
+            throw new IOException("Encoded data decoded to the wrong length");
+        }
+    }
+
+    /**
+     * Follows link entries through the deeper tables, consuming the bits which select each one.
+     *
+     * @return  The symbol entry the code resolves to, relative to the bits still buffered in the reader
+     */
+    private int seekLinked(BitReader reader, int entry) {
+        int consumed = rootBits;
+        while (symbolCount(entry) == 0) {
+            int width = entry & FIELD_MASK;
+            if (width == 0 || consumed > reader.available()) {
+                throw new RuntimeException("Table decode failed because the bit stream ended unexpectedly");
+            }
+            reader.skip(consumed);
+            reader.fill();
+            entry = entries[(entry >>> 12) + ((int)reader.peek() & ((1 << width) - 1))];
+            consumed = width;
+        }
+        return entry;
+    }
+
+    /**
+     * Allocates a table of the given width for the subtree rooted at 'node', and fills it.
+     *
+     * @return  The offset of the new table within the entries array
+     */
+    private int buildTable(HuffmanNode node, int width) {
+        int offset = allocate(1 << width);
+        fill(node, 0, 0, offset, width);
+        return offset;
+    }
+
+    /**
+     * Allocates and fills a table of the given width for codes whose first 'shift' bits have already been consumed.
+     *
+     * @param symbols  The symbols whose codes begin with the consumed bits
+     * @param lengths  The code length of every symbol
+     * @param paths  The code of every symbol, first bit in the least significant bit
+     * @param shift  The number of bits consumed before reaching this table
+     * @param width  The index width of this table
+     * @return  The offset of the new table within the entries array
+     */
+    private int buildTable(int[] symbols, int[] lengths, int[] paths, int shift, int width) {
+        int offset = allocate(1 << width);
+        int longCount = 0;
+        int[] longKeys = new int[symbols.length];
+        for (int symbol : symbols) {
+            int remaining = lengths[symbol] - shift;
+            int path = paths[symbol] >>> shift;
+            if (remaining <= width) {
+                int entry = symbol < CanonicalCode.SYMBOL_COUNT
+                        ? symbolEntry((byte)symbol, remaining)
+                        : pairEntry(pairs[symbol - CanonicalCode.SYMBOL_COUNT], remaining);
+                for (int i = path; i < (1 << width); i += (1 << remaining)) {
+                    entries[offset + i] = entry;
+                }
+            } else {
+                //Group longer codes by the entry they pass through, keeping the symbol in the low bits
+                longKeys[longCount++] = ((path & ((1 << width) - 1)) << SYMBOL_KEY_BITS) | symbol;
+            }
+        }
+
+        Arrays.sort(longKeys, 0, longCount);
+        for (int start = 0, end; start < longCount; start = end) {
+            int symbolMask = (1 << SYMBOL_KEY_BITS) - 1;
+            int slot = longKeys[start] >>> SYMBOL_KEY_BITS;
+            int maxRemaining = 0;
+            for (end = start; end < longCount && (longKeys[end] >>> SYMBOL_KEY_BITS) == slot; end++) {
+                maxRemaining = Math.max(maxRemaining, lengths[longKeys[end] & symbolMask] - shift - width);
+            }
+            int[] group = new int[end - start];
+            for (int i = start; i < end; i++) {
+                group[i - start] = longKeys[i] & symbolMask;
+            }
+            int nextWidth = Math.min(ROOT_BITS, maxRemaining);
+            int nextOffset = buildTable(group, lengths, paths, shift + width, nextWidth);
+            entries[offset + slot] = (nextOffset << 12) | nextWidth;
+        }
+        return offset;
+    }
+
+    /**
+     * Traverse the subtree recursively, writing an entry for every index whose low bits spell out the path so far.
+     *
+     * @param node  The node reached by the bits in 'pattern'
+     * @param depth  The number of bits in 'pattern'
+     * @param pattern  The path taken from the table's root, first step in the least significant bit
+     * @param offset  The offset of the table being filled
+     * @param width  The index width of the table being filled
+     */
+    private void fill(HuffmanNode node, int depth, int pattern, int offset, int width) {
+        if (null != node.getLeafValue()) {
+            int entry = symbolEntry(node.getLeafValue(), depth);
+            for (int i = pattern; i < (1 << width); i += (1 << depth)) {
+                entries[offset + i] = entry;
+            }
+        } else if (depth == width) {
+            int nextWidth = Math.min(ROOT_BITS, height(node));
+            int nextOffset = buildTable(node, nextWidth);
+            entries[offset + pattern] = (nextOffset << 12) | nextWidth;
+        } else {
+            fill(node.getLeft(), depth + 1, pattern, offset, width);
+            fill(node.getRight(), depth + 1, pattern | (1 << depth), offset, width);
+        }
+    }
+
+    /**
+     * Where the code at the start of a root index is short enough that the following code is also fully determined by
+     * the same index, record both symbols so they can be emitted by a single lookup.
+     */
+    private void pairRootEntries() {
+        int rootSize = 1 << rootBits;
+        int[] single = Arrays.copyOf(entries, rootSize);
+        for (int i = 0; i < rootSize; i++) {
+            int firstLength = single[i] & FIELD_MASK;
+            if (symbolCount(single[i]) != 1 || firstLength >= rootBits) {
+                continue;
+            }
+            int second = single[i >>> firstLength];
+            int secondLength = second & FIELD_MASK;
+            if (symbolCount(second) == 1 && firstLength + secondLength <= rootBits) {
+                entries[i] = (single[i] & 0xFF000) | ((second & 0xFF000) << 8) | (2 << 10)
+                        | ((firstLength + secondLength) << 5) | firstLength;
+            }
+        }
+    }
+
+    private int allocate(int count) {
+        if (size + count > entries.length) {
+            entries = Arrays.copyOf(entries, Math.max(entries.length * 2, size + count));
+        }
+        int offset = size;
+        size += count;
+        return offset;
+    }
+
+    private static int symbolEntry(byte symbol, int length) {
+        return ((symbol & 0xFF) << 12) | (1 << 10) | (length << 5) | length;
+    }
+
+    /**
+     * @param pair  The two bytes the code stands for, the first in bits 8-15 and the second in bits 0-7
+     */
+    private static int pairEntry(int pair, int length) {
+        return ((pair >>> 8 & 0xFF) << 12) | ((pair & 0xFF) << 20) | (2 << 10) | (length << 5) | length;
+    }
+
+    private static int symbolCount(int entry) {
+        return (entry >>> 10) & 0b11;
+    }
+
+    private static int height(HuffmanNode node) {
+        if (null != node.getLeafValue()) {
+            return 0;
+        }
+        return 1 + Math.max(height(node.getLeft()), height(node.getRight()));
+    }
+}
@@ -0,0 +1,192 @@
+package com.bitfracture.huffman;
+
+import com.bitfracture.serial.BitReader;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A reusable context for decompressing many small messages, as written by HuffmanEncoder or HuffmanTranslator.encode().
+ * The decode table of the most recent code (or dictionary) is kept, so a run of messages sharing one code builds its
+ * table only once, and each message is decoded straight into a range of a caller-provided array or ByteBuffer. Once
+ * the table is built, decompressing a message allocates nothing.
+ *
+ * Messages in the canonical 'HUF\2' and dictionary 'HUF\5' formats are supported. A decoder is not safe to use from
+ * several threads at once; use one per thread.
+ */
+public class HuffmanDecoder {
+    private static final int HEADER_SIZE = 4;
+    private static final int OUTPUT_SCRATCH_SIZE = 8192;
+
+    private final DictionaryCache dictionaries;
+    private final BitReader reader = new BitReader();
+    private final byte[] headerScratch = new byte[HEADER_SIZE + CanonicalCode.MAX_SERIAL_SIZE];
+    private final byte[] outputScratch = new byte[OUTPUT_SCRATCH_SIZE];
+
+    private byte[] codeHeader = new byte[0];
+    private HuffmanDecodeTable codeTable;
+    private HuffmanDictionary dictionary;
+    private HuffmanDecodeTable table;
+
+    /**
+     * Creates a decoder for messages carrying their own code.
+     */
+    public HuffmanDecoder() {
+        this(null);
+    }
+
+    /**
+     * @param dictionaries  The dictionaries messages may have been encoded with, or null if none
+     */
+    public HuffmanDecoder(DictionaryCache dictionaries) {
+        this.dictionaries = dictionaries;
+    }
+
+    /**
+     * Decompresses a message held in a range of 'encodedData' into a range of 'rawData'.
+     *
+     * @return  The number of bytes written to rawData
+     * @throws IOException  If the message is invalid, or names a dictionary which cannot be found
+     * @throws IndexOutOfBoundsException  If the destination range is too small for the decompressed message
+     */
+    public int decompress(byte[] encodedData, int encodedOffset, int encodedLength,
+                          byte[] rawData, int rawOffset, int rawLength) throws IOException {
+        if (encodedOffset < 0 || encodedLength < 0 || encodedOffset + encodedLength > encodedData.length
+                || encodedOffset + encodedLength < 0) {
+            throw new IndexOutOfBoundsException("The range does not fit in the array");
+        }
+        int headerLength = readHeader(encodedData, encodedOffset, encodedOffset + encodedLength);
+        reader.reset(encodedData, encodedOffset + headerLength, encodedLength - headerLength);
+        int count = table.decode(reader, rawData, rawOffset, rawLength);
+        if (reader.fill() > 0) {
+            throw new IndexOutOfBoundsException("The destination is too small for the decompressed message");
+        }
+        return count;
+    }
+
+    /**
+     * Decompresses the message held in the remaining bytes of 'encodedData' into the remaining space of 'rawData'.
+     * Direct buffers are read in place; output to a direct buffer is staged through a small reusable array. On
+     * success, encodedData's position is advanced to its limit and rawData's position past the decompressed message.
+     * On failure, neither position is changed.
+     *
+     * @return  The number of bytes written to rawData
+     * @throws IOException  If the message is invalid, or names a dictionary which cannot be found
+     * @throws BufferOverflowException  If rawData has too little space for the decompressed message
+     */
+    public int decompress(ByteBuffer encodedData, ByteBuffer rawData) throws IOException {
+        int headerLength;
+        if (encodedData.hasArray()) {
+            int offset = encodedData.arrayOffset() + encodedData.position();
+            headerLength = readHeader(encodedData.array(), offset, offset + encodedData.remaining());
+            reader.reset(encodedData.array(), offset + headerLength, encodedData.remaining() - headerLength);
+        } else {
+            //Only the header is copied out, so that it can be parsed the same way as an array's
+            int scratchLength = Math.min(headerScratch.length, encodedData.remaining());
+            for (int i = 0; i < scratchLength; i++) {
+                headerScratch[i] = encodedData.get(encodedData.position() + i);
+            }
+            headerLength = readHeader(headerScratch, 0, scratchLength);
+            reader.reset(encodedData, encodedData.position() + headerLength, encodedData.remaining() - headerLength);
+        }
+
+        int start = rawData.position();
+        try {
+            if (rawData.hasArray()) {
+                int count = table.decode(reader, rawData.array(), rawData.arrayOffset() + start, rawData.remaining());
+                rawData.position(start + count);
+            } else {
+                for (int staged; (staged = table.decode(reader, outputScratch, 0,
+                        Math.min(outputScratch.length, rawData.remaining()))) > 0;) {
+                    rawData.put(outputScratch, 0, staged);
+                }
+            }
+            if (reader.fill() > 0) {
+                throw new BufferOverflowException();
+            }
+        } catch (RuntimeException e) {
+            rawData.position(start);
+            throw e;
+        }
+        encodedData.position(encodedData.limit());
+        return rawData.position() - start;
+    }
+
+    /**
+     * Parses the header of the message held in data[offset, end), making 'table' the table to decode it with.
+     *
+     * @return  The length of the header
+     */
+    private int readHeader(byte[] data, int offset, int end) throws IOException {
+        if (end - offset < HEADER_SIZE) {
+            throw new IOException("The message is too short to hold a header");
+        }
+        int position = offset + HEADER_SIZE;
+        if (startsWith(data, offset, HuffmanTranslator.CANONICAL_HEADER)) {
+            position = readCode(data, position, end);
+            table = codeTable;
+        } else if (startsWith(data, offset, HuffmanTranslator.DICTIONARY_HEADER)) {
+            if (end - position < HuffmanDictionary.ID_SIZE_BYTES) {
+                throw new IOException("The message ended part way through its dictionary ID");
+            }
+            int id = (data[position] & 0xFF) | (data[position + 1] & 0xFF) << 8
+                    | (data[position + 2] & 0xFF) << 16 | (data[position + 3] & 0xFF) << 24;
+            position += HuffmanDictionary.ID_SIZE_BYTES;
+            if (dictionary == null || dictionary.getId() != id) {
+                dictionary = (dictionaries == null ? null : dictionaries.get(id).orElse(null));
+                if (dictionary == null) {
+                    throw new IOException(String.format(
+                            "Data was encoded with dictionary %08x, which is not available", id));
+                }
+            }
+            table = dictionary.getDecodeTable();
+        } else {
+            throw new IOException("Invalid or unsupported message header");
+        }
+        return position - offset;
+    }
+
+    /**
+     * Makes codeTable the table for the packed code lengths starting at 'position', rebuilding it only if they differ
+     * from those of the previous message.
+     *
+     * @return  The position just past the code lengths
+     */
+    private int readCode(byte[] encodedData, int position, int end) throws IOException {
+        if (position == end) {
+            throw new IOException("The message ended before its code lengths");
+        }
+        int width = encodedData[position] & 0xFF;
+        int length = 1 + CanonicalCode.SYMBOL_COUNT * width / Byte.SIZE;
+        if (end - position < length) {
+            throw new IOException("The message ended part way through its code lengths");
+        }
+        if (codeTable == null || !rangeEquals(encodedData, position, codeHeader, length)) {
+            CanonicalCode code = CanonicalCode.fromSerialStream(
+                    new DataInputStream(new ByteArrayInputStream(encodedData, position, length)));
+            codeTable = HuffmanDecodeTable.fromCanonical(code);
+            codeHeader = Arrays.copyOfRange(encodedData, position, position + length);
+        }
+        return position + length;
+    }
+
+    private static boolean startsWith(byte[] data, int offset, byte[] header) {
+        return rangeEquals(data, offset, header, header.length);
+    }
+
+    private static boolean rangeEquals(byte[] data, int offset, byte[] expected, int length) {
+        if (expected.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (data[offset + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
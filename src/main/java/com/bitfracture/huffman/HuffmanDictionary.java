@@ -0,0 +1,153 @@
+package com.bitfracture.huffman;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * A tree trained once from a sample of typical data, so that many small payloads can be encoded with it without each
+ * one paying for a histogram, a tree build and a serialized code header. Payloads encoded with a dictionary carry only
+ * its 4-byte ID, and the decoder finds the dictionary by that ID in a DictionaryCache.
+ *
+ * Every byte value is given a code during training, even those absent from the sample, so that any payload can be
+ * encoded. The ID is a CRC-32 of the packed code lengths, so the same trained code always has the same ID, wherever
+ * and whenever it is loaded. The encode and decode tables are built once, when the dictionary is created, and are
+ * shared by every thread using it.
+ *
+ * The persisted form is the 4-byte header 'HUFD', the ID (int, little endian), then the packed code lengths.
+ */
+public class HuffmanDictionary {
+    static final byte[] HEADER = new byte[] {0x48, 0x55, 0x46, 0x44};
+    static final int ID_SIZE_BYTES = 4;
+
+    private final int id;
+    private final HuffmanTree tree;
+    private final HuffmanEncodeTable encodeTable;
+    private final HuffmanDecodeTable decodeTable;
+
+    private HuffmanDictionary(CanonicalCode code) {
+        this.id = idOf(code);
+        this.tree = HuffmanTree.fromCanonicalCode(code);
+        this.encodeTable = HuffmanEncodeTable.fromCanonical(code);
+        this.decodeTable = HuffmanDecodeTable.fromCanonical(code);
+    }
+
+    /**
+     * @return  The stable ID payloads encoded with this dictionary carry
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return  The trained tree
+     */
+    public HuffmanTree getTree() {
+        return tree;
+    }
+
+    HuffmanEncodeTable getEncodeTable() {
+        return encodeTable;
+    }
+
+    HuffmanDecodeTable getDecodeTable() {
+        return decodeTable;
+    }
+
+    /**
+     * Trains a dictionary from every byte remaining in a sample stream.
+     *
+     * @param sample  Data representative of the payloads to be encoded
+     * @throws IOException  If the sample cannot be read
+     */
+    public static HuffmanDictionary train(InputStream sample) throws IOException {
+        return train(Histogram.fromStream(sample), HuffmanTranslator.MAX_CODE_LENGTH);
+    }
+
+    /**
+     * Trains a dictionary from byte counts which have already been gathered from a sample.
+     *
+     * @param sample  The byte counts of data representative of the payloads to be encoded
+     * @param maxCodeLength  The longest code permitted, from 8 to MAX_CODE_LENGTH
+     * @throws IllegalArgumentException  If maxCodeLength is out of range or too short for all 256 byte values
+     */
+    public static HuffmanDictionary train(Histogram sample, int maxCodeLength) {
+        //Count every byte value once more, so that values missing from the sample still get a (long) code
+        Histogram smoothed = new Histogram();
+        smoothed.merge(sample);
+        byte[] everyValue = new byte[CanonicalCode.SYMBOL_COUNT];
+        for (int symbol = 0; symbol < everyValue.length; symbol++) {
+            everyValue[symbol] = (byte)symbol;
+        }
+        smoothed.add(everyValue, 0, everyValue.length);
+
+        CanonicalCode code = HuffmanTree.fromHistogram(smoothed, maxCodeLength).getCanonicalCode().get();
+        return new HuffmanDictionary(code);
+    }
+
+    /**
+     * @return  The persisted form of this dictionary, which fromSerialStream() reads back
+     */
+    public byte[] toSerial() {
+        byte[] code = tree.getCanonicalCode().get().toSerial();
+        return ByteBuffer.allocate(HEADER.length + ID_SIZE_BYTES + code.length).order(ByteOrder.LITTLE_ENDIAN)
+                .put(HEADER)
+                .putInt(id)
+                .put(code)
+                .array();
+    }
+
+    /**
+     * Reads a dictionary written by toSerial().
+     *
+     * @param serial  The stream positioned at the start of the dictionary
+     * @throws IOException  If the stream fails, ends early, or holds an invalid or corrupt dictionary
+     */
+    public static HuffmanDictionary fromSerialStream(InputStream serial) throws IOException {
+        DataInputStream input = new DataInputStream(serial);
+        byte[] header = new byte[HEADER.length];
+        input.readFully(header);
+        if (!Arrays.equals(HEADER, header)) {
+            throw new IOException("Invalid dictionary header");
+        }
+        byte[] idBytes = new byte[ID_SIZE_BYTES];
+        input.readFully(idBytes);
+        int id = ByteBuffer.wrap(idBytes).order(ByteOrder.LITTLE_ENDIAN).getInt();
+
+        HuffmanDictionary dictionary;
+        try {
+            dictionary = new HuffmanDictionary(CanonicalCode.fromSerialStream(input));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Dictionary code lengths do not form a complete code", e);
+        }
+        if (dictionary.id != id) {
+            throw new IOException("Dictionary ID does not match its code lengths");
+        }
+        for (int symbol = 0; symbol < CanonicalCode.SYMBOL_COUNT; symbol++) {
+            if (dictionary.tree.getCanonicalCode().get().getLength(symbol) == 0) {
+                throw new IOException("Dictionary has no code for byte value " + symbol);
+            }
+        }
+        return dictionary;
+    }
+
+    /**
+     * Reads a dictionary written by toSerial().
+     *
+     * @throws IOException  If the bytes hold an invalid or corrupt dictionary
+     */
+    public static HuffmanDictionary fromSerial(byte[] serial) throws IOException {
+        return fromSerialStream(new ByteArrayInputStream(serial));
+    }
+
+    private static int idOf(CanonicalCode code) {
+        CRC32 crc = new CRC32();
+        crc.update(code.toSerial());
+        return (int)crc.getValue();
+    }
+}
@@ -0,0 +1,173 @@
+package com.bitfracture.huffman;
+
+import com.bitfracture.metrics.Metrics;
+import com.bitfracture.metrics.Phase;
+import com.bitfracture.serial.BitWriter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A flat code table used for encoding: for each byte value, the bits of its code (first bit in the least significant
+ * position, ready to be appended to a BitWriter) and the code length. A table built from an extended code also has
+ * entries for the symbols beyond the byte values, which callers write themselves with getPath() and getLength().
+ */
+class HuffmanEncodeTable {
+    static final int MAX_TABLE_CODE_LENGTH = 32;
+    private static final int INPUT_BUFFER_SIZE = 64 * 1024;
+
+    private final int[] paths;
+    private final int[] lengths;
+
+    private HuffmanEncodeTable(int symbolCount) {
+        paths = new int[symbolCount];
+        lengths = new int[symbolCount];
+    }
+
+    /**
+     * @return  The code of 'symbol', first bit in the least significant position
+     */
+    int getPath(int symbol) {
+        return paths[symbol];
+    }
+
+    /**
+     * @return  The code length of 'symbol', or 0 if it has no code
+     */
+    int getLength(int symbol) {
+        return lengths[symbol];
+    }
+
+    /**
+     * Builds the table straight from canonical code lengths.
+     */
+    static HuffmanEncodeTable fromCanonical(CanonicalCode code) {
+        long start = Metrics.start();
+        HuffmanEncodeTable table = new HuffmanEncodeTable(code.getSymbolCount());
+        for (int symbol = 0; symbol < code.getSymbolCount(); symbol++) {
+            int length = code.getLength(symbol);
+            if (length > 0) {
+                table.lengths[symbol] = length;
+                table.paths[symbol] = Integer.reverse(code.getCode(symbol)) >>> (Integer.SIZE - length);
+            }
+        }
+        Metrics.phaseCompleted(Phase.TABLE_BUILD, start, 0);
+        return table;
+    }
+
+    /**
+     * Builds the table from the paths of any tree, canonical or not.
+     *
+     * @throws IllegalArgumentException  If the tree has a code longer than MAX_TABLE_CODE_LENGTH bits
+     */
+    static HuffmanEncodeTable fromTree(HuffmanTree tree) {
+        if (tree.getCanonicalCode().isPresent()) {
+            return fromCanonical(tree.getCanonicalCode().get());
+        }
+        long start = Metrics.start();
+        HuffmanEncodeTable table = new HuffmanEncodeTable(CanonicalCode.SYMBOL_COUNT);
+        for (Map.Entry<Byte, List<Boolean>> entry : tree.toMap().entrySet()) {
+            List<Boolean> bits = entry.getValue();
+            if (bits.size() > MAX_TABLE_CODE_LENGTH) {
+                throw new IllegalArgumentException("The tree has a code too long to encode: " + bits.size());
+            }
+            int symbol = entry.getKey() & 0xFF;
+            table.lengths[symbol] = bits.size();
+            for (int i = 0; i < bits.size(); i++) {
+                table.paths[symbol] |= (bits.get(i) ? 1 : 0) << i;
+            }
+        }
+        Metrics.phaseCompleted(Phase.TABLE_BUILD, start, 0);
+        return table;
+    }
+
+    /**
+     * Encodes every byte remaining in rawData, reading it in bulk buffers. The writer is not finished, so that more
+     * bits may follow.
+     *
+     * @param rawData  The data to encode
+     * @param writer  The destination for encoded bits
+     * @throws IOException  If rawData cannot be read or the writer fails
+     * @throws IllegalArgumentException  If rawData holds a byte value that has no code
+     */
+    void encode(InputStream rawData, BitWriter writer) throws IOException {
+        byte[] buffer = new byte[INPUT_BUFFER_SIZE];
+        for (int read; (read = rawData.read(buffer)) >= 0;) {
+            encode(buffer, 0, read, writer);
+        }
+    }
+
+    /**
+     * Encodes every byte remaining in a buffer, reading straight out of it (including direct and memory-mapped
+     * buffers) without copying. The buffer's position is not changed.
+     */
+    void encode(ByteBuffer data, BitWriter writer) throws IOException {
+        long start = Metrics.start();
+        for (int i = data.position(), end = data.limit(); i < end; i++) {
+            int symbol = data.get(i) & 0xFF;
+            int codeLength = lengths[symbol];
+            if (codeLength == 0) {
+                throw new IllegalArgumentException("Byte value " + symbol + " has no code in the encoding tree");
+            }
+            writer.write(paths[symbol] & 0xFFFFFFFFL, codeLength);
+        }
+        Metrics.phaseCompleted(Phase.ENCODE, start, data.remaining());
+    }
+
+    /**
+     * Encodes every byte in the given range.
+     */
+    void encode(byte[] data, int offset, int length, BitWriter writer) throws IOException {
+        long start = Metrics.start();
+        for (int i = offset, end = offset + length; i < end; i++) {
+            int symbol = data[i] & 0xFF;
+            int codeLength = lengths[symbol];
+            if (codeLength == 0) {
+                throw new IllegalArgumentException("Byte value " + symbol + " has no code in the encoding tree");
+            }
+            writer.write(paths[symbol] & 0xFFFFFFFFL, codeLength);
+        }
+        Metrics.phaseCompleted(Phase.ENCODE, start, length);
+    }
+
+    /**
+     * Encodes every byte in the given range into 'streams' separate bit streams, sending byte i of the range to stream
+     * i % streams. Each stream is written as plain bytes, first bit in the least significant position, with its final
+     * byte padded with zeros.
+     *
+     * @param streams  The arrays to write each stream into, each large enough for its share of the range
+     * @param streamLengths  Receives the number of bytes written to each stream
+     * @throws IllegalArgumentException  If the range holds a byte value that has no code
+     */
+    void encodeInterleaved(byte[] data, int offset, int length, byte[][] streams, int[] streamLengths) {
+        long start = Metrics.start();
+        for (int stream = 0; stream < streams.length; stream++) {
+            byte[] output = streams[stream];
+            int outputIndex = 0;
+            long accumulator = 0;
+            int accumulatorBits = 0;
+            for (int i = offset + stream, end = offset + length; i < end; i += streams.length) {
+                int symbol = data[i] & 0xFF;
+                int codeLength = lengths[symbol];
+                if (codeLength == 0) {
+                    throw new IllegalArgumentException("Byte value " + symbol + " has no code in the encoding tree");
+                }
+                accumulator |= (paths[symbol] & 0xFFFFFFFFL) << accumulatorBits;
+                accumulatorBits += codeLength;
+                while (accumulatorBits >= Byte.SIZE) {
+                    output[outputIndex++] = (byte)accumulator;
+                    accumulator >>>= Byte.SIZE;
+                    accumulatorBits -= Byte.SIZE;
+                }
+            }
+            if (accumulatorBits > 0) {
+                output[outputIndex++] = (byte)accumulator;
+            }
+            streamLengths[stream] = outputIndex;
+        }
+        Metrics.phaseCompleted(Phase.ENCODE, start, length);
+    }
+}
@@ -0,0 +1,146 @@
+package com.bitfracture.huffman;
+
+import com.bitfracture.serial.ArrayOutputStream;
+import com.bitfracture.serial.BitBlock;
+import com.bitfracture.serial.BitWriter;
+import com.bitfracture.serial.ByteBufferOutputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * A reusable context for compressing many small messages with one fixed tree or dictionary. The header, code table and
+ * bit writer are built once, when the encoder is created, and each message is written straight into a range of a
+ * caller-provided array or ByteBuffer, so compressing a message allocates nothing. Direct buffers are read and written
+ * in place, without being copied to the heap first.
+ *
+ * The output is exactly what HuffmanTranslator.encode() writes for the same tree or dictionary, so it can be read by
+ * HuffmanDecoder or by HuffmanTranslator.decode(). An encoder is not safe to use from several threads at once; use one
+ * per thread.
+ */
+public class HuffmanEncoder {
+    private final byte[] header;
+    private final HuffmanEncodeTable table;
+    private final int maxCodeLength;
+    private final ArrayOutputStream sink = new ArrayOutputStream();
+    private final BitWriter writer = new BitWriter(sink);
+    private final ByteBufferOutputStream bufferSink = new ByteBufferOutputStream();
+    private final BitWriter bufferWriter = new BitWriter(bufferSink);
+
+    /**
+     * @param encodingTree  The tree to encode every message with
+     */
+    public HuffmanEncoder(HuffmanTree encodingTree) {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        try {
+            HuffmanTranslator.writeHeader(encodingTree, header);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.header = header.toByteArray();
+        this.table = HuffmanEncodeTable.fromTree(encodingTree);
+        this.maxCodeLength = maxCodeLength(encodingTree);
+    }
+
+    /**
+     * @param dictionary  The dictionary to encode every message with
+     */
+    public HuffmanEncoder(HuffmanDictionary dictionary) {
+        this.header = ByteBuffer.allocate(HuffmanTranslator.DICTIONARY_HEADER.length + HuffmanDictionary.ID_SIZE_BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .put(HuffmanTranslator.DICTIONARY_HEADER)
+                .putInt(dictionary.getId())
+                .array();
+        this.table = dictionary.getEncodeTable();
+        this.maxCodeLength = maxCodeLength(dictionary.getTree());
+    }
+
+    /**
+     * @return  The most bytes a message of 'length' bytes can compress to, which is the size a destination range
+     *     must be to be sure of holding it
+     * @throws IllegalArgumentException  If the bound does not fit in an int
+     */
+    public int maxCompressedLength(int length) {
+        long bound = header.length + BitBlock.serialSize((long)length * maxCodeLength);
+        if (length < 0 || bound > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("No bound can be given for a message of " + length + " bytes");
+        }
+        return (int)bound;
+    }
+
+    /**
+     * Compresses a range of 'rawData' into a range of 'encodedData'.
+     *
+     * @return  The number of bytes written to encodedData
+     * @throws IndexOutOfBoundsException  If the destination range is too small for the compressed message
+     * @throws IllegalArgumentException  If rawData holds a byte value that has no code
+     */
+    public int compress(byte[] rawData, int rawOffset, int rawLength,
+                        byte[] encodedData, int encodedOffset, int encodedLength) {
+        if (rawOffset < 0 || rawLength < 0 || rawOffset + rawLength > rawData.length || rawOffset + rawLength < 0) {
+            throw new IndexOutOfBoundsException("The range does not fit in the array");
+        }
+        sink.reset(encodedData, encodedOffset, encodedLength);
+        try {
+            sink.write(header, 0, header.length);
+            table.encode(rawData, rawOffset, rawLength, writer);
+            writer.finish();
+        } catch (IOException e) {
+            //The sink writes to memory, so this cannot happen
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            //Leave the writer empty for the next message
+            writer.discard();
+            throw e;
+        }
+        return sink.getPosition() - encodedOffset;
+    }
+
+    /**
+     * Compresses the remaining bytes of 'rawData' into the remaining space of 'encodedData'. On success, rawData's
+     * position is advanced to its limit and encodedData's position past the compressed message. On failure, neither
+     * position is changed.
+     *
+     * @return  The number of bytes written to encodedData
+     * @throws BufferOverflowException  If encodedData has too little space for the compressed message
+     * @throws IllegalArgumentException  If rawData holds a byte value that has no code
+     */
+    public int compress(ByteBuffer rawData, ByteBuffer encodedData) {
+        int start = encodedData.position();
+        bufferSink.reset(encodedData);
+        try {
+            bufferSink.write(header, 0, header.length);
+            if (rawData.hasArray()) {
+                table.encode(rawData.array(), rawData.arrayOffset() + rawData.position(), rawData.remaining(),
+                        bufferWriter);
+            } else {
+                table.encode(rawData, bufferWriter);
+            }
+            bufferWriter.finish();
+        } catch (IOException e) {
+            //The sink writes to memory, so this cannot happen
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            bufferWriter.discard();
+            encodedData.position(start);
+            throw e;
+        }
+        rawData.position(rawData.limit());
+        return encodedData.position() - start;
+    }
+
+    /**
+     * @return  The length of the tree's longest code, read from its canonical code so that the nodes of the tree are
+     *     only built for legacy trees, which have none
+     */
+    private static int maxCodeLength(HuffmanTree tree) {
+        return tree.getCanonicalCode()
+                .map(CanonicalCode::getMaxLength)
+                .orElseGet(() -> Arrays.stream(tree.toCodeLengths()).max().orElse(0));
+    }
+}
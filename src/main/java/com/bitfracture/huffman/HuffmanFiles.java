@@ -0,0 +1,105 @@
+package com.bitfracture.huffman;
+
+import com.bitfracture.serial.BitWriter;
+import com.bitfracture.serial.ByteBufferInputStream;
+import com.bitfracture.serial.ChannelOutputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Enumeration;
+
+/**
+ * File-oriented entry points which memory-map the source instead of reading it through streams. The source is mapped
+ * in segments of at most SEGMENT_SIZE bytes (so files over 2 GB are supported), the histogram and the encoding both
+ * read straight out of the mapped segments, and output goes to a FileChannel through a large direct buffer. The file
+ * is opened once for both passes.
+ *
+ * The output is the same format HuffmanTranslator.encode() writes.
+ */
+public class HuffmanFiles {
+    static final int SEGMENT_SIZE = 1 << 30;
+
+    private HuffmanFiles() {}
+
+    /**
+     * Compresses 'source' into 'target', replacing 'target' if it exists.
+     *
+     * @throws IOException  If either file cannot be read or written
+     */
+    public static void compress(Path source, Path target) throws IOException {
+        compress(source, target, HuffmanTranslator.MAX_CODE_LENGTH);
+    }
+
+    /**
+     * Compresses 'source' into 'target', replacing 'target' if it exists, with no code longer than maxCodeLength.
+     *
+     * @throws IOException  If either file cannot be read or written
+     */
+    public static void compress(Path source, Path target, int maxCodeLength) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             OutputStream out = new ChannelOutputStream(FileChannel.open(target, StandardOpenOption.WRITE,
+                     StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING))) {
+            long size = in.size();
+            Histogram histogram = new Histogram();
+            for (long position = 0; position < size; position += SEGMENT_SIZE) {
+                histogram.add(mapSegment(in, position, size));
+            }
+            HuffmanTree tree = HuffmanTree.fromHistogram(histogram, maxCodeLength);
+            HuffmanEncodeTable table = HuffmanEncodeTable.fromTree(tree);
+
+            HuffmanTranslator.writeHeader(tree, out);
+            BitWriter writer = new BitWriter(out);
+            for (long position = 0; position < size; position += SEGMENT_SIZE) {
+                table.encode(mapSegment(in, position, size), writer);
+            }
+            writer.finish();
+        }
+    }
+
+    /**
+     * Decompresses 'source' into 'target', replacing 'target' if it exists.
+     *
+     * @throws IOException  If either file cannot be read or written
+     */
+    public static void decompress(Path source, Path target) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             OutputStream out = new ChannelOutputStream(FileChannel.open(target, StandardOpenOption.WRITE,
+                     StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING))) {
+            long size = in.size();
+            //Map each segment only once the previous one has been consumed
+            Enumeration<InputStream> segments = new Enumeration<InputStream>() {
+                private long position = 0;
+
+                @Override
+                public boolean hasMoreElements() {
+                    return position < size;
+                }
+
+                @Override
+                public InputStream nextElement() {
+                    try {
+                        InputStream segment = new ByteBufferInputStream(mapSegment(in, position, size));
+                        position += SEGMENT_SIZE;
+                        return segment;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            };
+            HuffmanTranslator.decode(new SequenceInputStream(segments), out);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static MappedByteBuffer mapSegment(FileChannel channel, long position, long size) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(SEGMENT_SIZE, size - position));
+    }
+}
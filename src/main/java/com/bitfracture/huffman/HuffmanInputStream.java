@@ -0,0 +1,173 @@
+package com.bitfracture.huffman;
+
+import com.bitfracture.serial.BitBlock;
+import com.bitfracture.serial.VarInt;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Decompresses data written by HuffmanOutputStream incrementally, one chunk at a time, as it is read. Memory use is
+ * bounded by the chunk size the writer used, as the buffers for a chunk are reused for the chunks after it. Chunks
+ * claiming to be larger than HuffmanOutputStream.MAX_CHUNK_SIZE are rejected before anything is allocated for them.
+ */
+public class HuffmanInputStream extends FilterInputStream {
+    private DataInputStream input;
+    private boolean headerRead;
+    private boolean ended = false;
+
+    private HuffmanDecodeTable table;
+    private byte[] payload = new byte[0];
+    private byte[] decoded = new byte[0];
+    private int decodedLength = 0;
+    private int decodedIndex = 0;
+
+    /**
+     * @param in  The compressed stream, starting with the 'HUF\4' header
+     */
+    public HuffmanInputStream(InputStream in) {
+        this(in, false);
+    }
+
+    /**
+     * @param in  The compressed stream
+     * @param headerRead  Whether the 'HUF\4' header has already been consumed from 'in'
+     */
+    HuffmanInputStream(InputStream in, boolean headerRead) {
+        super(in);
+        this.input = new DataInputStream(in);
+        this.headerRead = headerRead;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return decoded[decodedIndex++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] data, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int count = Math.min(length, decodedLength - decodedIndex);
+        System.arraycopy(decoded, decodedIndex, data, offset, count);
+        decodedIndex += count;
+        return count;
+    }
+
+    @Override
+    public long skip(long count) throws IOException {
+        long skipped = 0;
+        while (skipped < count && fill()) {
+            int step = (int)Math.min(count - skipped, decodedLength - decodedIndex);
+            decodedIndex += step;
+            skipped += step;
+        }
+        return skipped;
+    }
+
+    /**
+     * @return  The number of decoded bytes which can be read without decoding another chunk
+     */
+    @Override
+    public int available() {
+        return decodedLength - decodedIndex;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readLimit) {}
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset is not supported");
+    }
+
+    /**
+     * Decodes chunks until decoded bytes are available or the stream ends.
+     *
+     * @return  False once the end of the stream is reached
+     */
+    private boolean fill() throws IOException {
+        while (decodedIndex == decodedLength) {
+            if (ended) {
+                return false;
+            }
+            readChunk();
+        }
+        return true;
+    }
+
+    private void readChunk() throws IOException {
+        if (!headerRead) {
+            byte[] header = new byte[HuffmanTranslator.STREAM_HEADER.length];
+            input.readFully(header);
+            if (!Arrays.equals(HuffmanTranslator.STREAM_HEADER, header)) {
+                throw new IOException("Invalid stream header");
+            }
+            headerRead = true;
+        }
+
+        int type = input.read();
+        if (type < 0) {
+            throw new EOFException("The stream ended before its end marker");
+        } else if (type == HuffmanOutputStream.CHUNK_END) {
+            ended = true;
+            return;
+        } else if (type == HuffmanOutputStream.CHUNK_STORED) {
+            int rawLength = readRawLength();
+            input.readFully(decoded, 0, rawLength);
+            decodedLength = rawLength;
+            decodedIndex = 0;
+            return;
+        } else if (type == HuffmanOutputStream.CHUNK_NEW_CODE) {
+            table = HuffmanDecodeTable.fromCanonical(CanonicalCode.fromSerialStream(input));
+        } else if (type != HuffmanOutputStream.CHUNK_REUSE_CODE || table == null) {
+            throw new IOException("Invalid chunk type: " + type);
+        }
+
+        int rawLength = readRawLength();
+        //No code is longer than MAX_CODE_LENGTH bits, which bounds the encoded length by the uncompressed length
+        int payloadLength = VarInt.readInt(input);
+        if (payloadLength > BitBlock.serialSize((long)rawLength * CanonicalCode.MAX_CODE_LENGTH)) {
+            throw new IOException("Invalid encoded chunk length: " + payloadLength);
+        }
+        if (payload.length < payloadLength) {
+            payload = new byte[payloadLength];
+        }
+        input.readFully(payload, 0, payloadLength);
+        table.decodePayload(payload, payloadLength, decoded, rawLength);
+        decodedLength = rawLength;
+        decodedIndex = 0;
+    }
+
+    /**
+     * Reads a chunk's uncompressed length, and makes sure the decoded buffer can hold it.
+     *
+     * @throws IOException  If the length is larger than any chunk the writer can produce
+     */
+    private int readRawLength() throws IOException {
+        int rawLength = VarInt.readInt(input);
+        if (rawLength > HuffmanOutputStream.MAX_CHUNK_SIZE) {
+            throw new IOException("Invalid chunk length: " + rawLength);
+        }
+        if (decoded.length < rawLength) {
+            decoded = new byte[rawLength];
+        }
+        return rawLength;
+    }
+}
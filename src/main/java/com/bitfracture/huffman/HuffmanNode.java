@@ -1,14 +1,12 @@
 package com.bitfracture.huffman;
 
 import java.util.Iterator;
-import java.util.Objects;
 import java.util.Optional;
 
-class HuffmanNode implements Comparable<HuffmanNode> {
+class HuffmanNode {
     private HuffmanNode left;
     private HuffmanNode right;
     private Byte leafValue;
-    private int baseWeight = 0;
 
     private HuffmanNode() {}
 
@@ -24,39 +22,12 @@ class HuffmanNode implements Comparable<HuffmanNode> {
         return right;
     }
 
-    int getBaseWeight() {
-        return baseWeight;
-    }
-
-    void incrementBaseWeight() {
-        if (Objects.isNull(leafValue)) {
-            throw new IllegalStateException("The base weight cannot be incremented on a non-leaf node");
-        }
-        baseWeight++;
-    }
-
-    public int getWeight() {
-        int leftWeight = Optional.ofNullable(left)
-                .map(HuffmanNode::getWeight)
-                .orElse(0);
-        int rightWeight = Optional.ofNullable(right)
-                .map(HuffmanNode::getWeight)
-                .orElse(0);
-        return baseWeight + leftWeight + rightWeight;
-    }
-
-    @Override
-    public int compareTo(HuffmanNode other) {
-        return this.getWeight() - other.getWeight();
-    }
-
     @Override
     public String toString() {
-        return String.format("HuffmanNode(value=%s, weight=%d)",
+        return String.format("HuffmanNode(value=%s)",
                 Optional.ofNullable(leafValue)
                         .map(Object::toString)
-                        .orElse("N/A"),
-                getWeight());
+                        .orElse("N/A"));
     }
 
     static HuffmanNode fromValue(Byte value) {
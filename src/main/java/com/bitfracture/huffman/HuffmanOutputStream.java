@@ -0,0 +1,251 @@
+package com.bitfracture.huffman;
+
+import com.bitfracture.serial.BitWriter;
+import com.bitfracture.serial.VarInt;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Compresses data incrementally as it is written, so the codec can sit directly in a pipe or socket pipeline without
+ * the whole input being known up front. Written bytes are buffered into chunks, and each full chunk (or the partial
+ * chunk at a flush) is counted on its own. ChunkPlanner then picks whichever is smallest: reusing the code sent for an
+ * earlier chunk, sending a fresh code, or storing the chunk raw. Memory use is bounded by the chunk size, and the
+ * output is never more than a few bytes per chunk larger than the input.
+ *
+ * A stream may instead be trained on a sample: the first 'sampleSize' bytes written are buffered, a code is built from
+ * all of them at once, and that code is reused for the sample and for every chunk after it, with only a cheap count and
+ * cost estimate per chunk. A fresh code is built only for chunks whose cost drifts past the threshold, which makes
+ * the stream nearly as small as encoding with a code built from the whole input, while reading it exactly once.
+ *
+ * The stream format is the 4-byte header 'HUF\4' followed by chunks, each starting with a type byte:
+ *  - CHUNK_NEW_CODE: packed canonical code lengths, then the chunk's data as described below.
+ *  - CHUNK_REUSE_CODE: the chunk's data, encoded with the most recently sent code.
+ *  - CHUNK_STORED: the chunk's uncompressed length (a VarInt) followed by the bytes themselves. The most recently sent
+ *    code remains available for reuse afterwards.
+ *  - CHUNK_END: the end of the stream.
+ * A chunk's data is its uncompressed length and its encoded length (both VarInts), followed by the serialized
+ * BitBlocks of the encoded data. It is read by HuffmanInputStream, or by HuffmanTranslator.decode().
+ *
+ * No chunk holds more than MAX_CHUNK_SIZE bytes of uncompressed data, so that a reader can reject the lengths of a
+ * corrupt stream before allocating anything for them.
+ */
+public class HuffmanOutputStream extends FilterOutputStream {
+    public static final int DEFAULT_CHUNK_SIZE = 128 * 1024;
+    public static final int MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+    public static final int DEFAULT_SAMPLE_SIZE = 1024 * 1024;
+    public static final double DEFAULT_DRIFT_THRESHOLD = 0.05;
+    static final int CHUNK_END = 0;
+    static final int CHUNK_NEW_CODE = 1;
+    static final int CHUNK_REUSE_CODE = 2;
+    static final int CHUNK_STORED = 3;
+
+    private byte[] chunk;
+    private int chunkLength = 0;
+    private byte[] sample;
+    private int sampleLength = 0;
+    private final boolean sampled;
+    private final double driftThreshold;
+    private CanonicalCode trained;
+    private boolean headerWritten = false;
+    private boolean closed = false;
+
+    private CanonicalCode code;
+    private HuffmanEncodeTable table;
+    private ByteArrayOutputStream payload = new ByteArrayOutputStream();
+
+    public HuffmanOutputStream(OutputStream out) {
+        this(out, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param out  The stream to write compressed data to
+     * @param chunkSize  The number of bytes buffered before they are encoded as a chunk, at most MAX_CHUNK_SIZE
+     */
+    public HuffmanOutputStream(OutputStream out, int chunkSize) {
+        super(out);
+        checkChunkSize(chunkSize);
+        this.chunk = new byte[chunkSize];
+        this.sampled = false;
+        this.driftThreshold = 0;
+    }
+
+    /**
+     * Creates a stream which trains its code on a sample from the start of the data.
+     *
+     * @param out  The stream to write compressed data to
+     * @param chunkSize  The number of bytes buffered before they are encoded as a chunk, at most MAX_CHUNK_SIZE
+     * @param sampleSize  The number of bytes buffered before the first code is built
+     * @param driftThreshold  How far (as a fraction, such as 0.05 for 5%) a chunk's encoded size may exceed the
+     *     estimated size with a code of its own before a fresh code is built for it
+     */
+    public HuffmanOutputStream(OutputStream out, int chunkSize, int sampleSize, double driftThreshold) {
+        super(out);
+        checkChunkSize(chunkSize);
+        if (sampleSize < 1) {
+            throw new IllegalArgumentException("Sample size must be positive");
+        }
+        if (!(driftThreshold >= 0)) {
+            throw new IllegalArgumentException("Drift threshold must not be negative");
+        }
+        this.chunk = new byte[chunkSize];
+        this.sample = new byte[sampleSize];
+        this.sampled = true;
+        this.driftThreshold = driftThreshold;
+    }
+
+    @Override
+    public void write(int byt) throws IOException {
+        ensureOpen();
+        if (sample != null) {
+            sample[sampleLength++] = (byte)byt;
+            if (sampleLength == sample.length) {
+                train();
+            }
+            return;
+        }
+        chunk[chunkLength++] = (byte)byt;
+        if (chunkLength == chunk.length) {
+            encodeChunk();
+        }
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        ensureOpen();
+        if (sample != null) {
+            int count = Math.min(length, sample.length - sampleLength);
+            System.arraycopy(data, offset, sample, sampleLength, count);
+            sampleLength += count;
+            offset += count;
+            length -= count;
+            if (sampleLength == sample.length) {
+                train();
+            }
+        }
+        while (length > 0) {
+            int count = Math.min(length, chunk.length - chunkLength);
+            System.arraycopy(data, offset, chunk, chunkLength, count);
+            chunkLength += count;
+            offset += count;
+            length -= count;
+            if (chunkLength == chunk.length) {
+                encodeChunk();
+            }
+        }
+    }
+
+    /**
+     * Encodes any buffered bytes as a (possibly short) chunk, and flushes the underlying stream, so that everything
+     * written so far can be decoded by the reader.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        if (sample != null) {
+            train();
+        }
+        if (chunkLength > 0) {
+            encodeChunk();
+        }
+        out.flush();
+    }
+
+    /**
+     * Encodes any buffered bytes, marks the end of the stream, and closes the underlying stream.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            writeHeader();
+            if (sample != null) {
+                train();
+            }
+            if (chunkLength > 0) {
+                encodeChunk();
+            }
+            out.write(CHUNK_END);
+            out.flush();
+        } finally {
+            closed = true;
+            out.close();
+        }
+    }
+
+    /**
+     * Builds the trained code from the buffered sample, which may be short if the stream is flushed or closed before
+     * the sample is full, and encodes the sample as chunks with it.
+     */
+    private void train() throws IOException {
+        byte[] data = sample;
+        int length = sampleLength;
+        sample = null;
+        if (length == 0) {
+            return;
+        }
+
+        Histogram histogram = new Histogram();
+        histogram.add(data, 0, length);
+        trained = HuffmanTree.fromHistogram(histogram, CanonicalCode.MAX_CODE_LENGTH).getCanonicalCode().get();
+        for (int offset = 0; offset < length; offset += chunk.length) {
+            encodeChunk(data, offset, Math.min(chunk.length, length - offset));
+        }
+    }
+
+    private void encodeChunk() throws IOException {
+        encodeChunk(chunk, 0, chunkLength);
+        chunkLength = 0;
+    }
+
+    private void encodeChunk(byte[] data, int offset, int length) throws IOException {
+        writeHeader();
+        Histogram histogram = new Histogram();
+        histogram.add(data, offset, length);
+
+        ChunkPlanner.Plan plan = sampled
+                ? ChunkPlanner.planSampled(histogram, code, trained, driftThreshold)
+                : ChunkPlanner.plan(histogram, code);
+        out.write(plan.getChunkType());
+        if (plan.getChunkType() == CHUNK_STORED) {
+            VarInt.write(out, length);
+            out.write(data, offset, length);
+            return;
+        } else if (plan.getChunkType() == CHUNK_NEW_CODE) {
+            code = plan.getCode();
+            table = HuffmanEncodeTable.fromCanonical(code);
+            out.write(code.toSerial());
+        }
+
+        payload.reset();
+        BitWriter writer = new BitWriter(payload);
+        table.encode(data, offset, length, writer);
+        writer.finish();
+        VarInt.write(out, length);
+        VarInt.write(out, payload.size());
+        payload.writeTo(out);
+    }
+
+    private void writeHeader() throws IOException {
+        if (!headerWritten) {
+            out.write(HuffmanTranslator.STREAM_HEADER);
+            headerWritten = true;
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("The stream is closed");
+        }
+    }
+
+    private static void checkChunkSize(int chunkSize) {
+        if (chunkSize < 1 || chunkSize > MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Chunk size must be between 1 and " + MAX_CHUNK_SIZE);
+        }
+    }
+}
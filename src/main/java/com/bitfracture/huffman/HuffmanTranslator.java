@@ -1,21 +1,40 @@
 package com.bitfracture.huffman;
 
-import com.bitfracture.iterator.InputStreamIterator;
-import com.bitfracture.iterator.IteratorIterator;
+import com.bitfracture.filter.FilterChain;
 import com.bitfracture.serial.BitBlock;
+import com.bitfracture.serial.BitReader;
+import com.bitfracture.serial.BitWriter;
+import com.bitfracture.serial.VarInt;
 
+import java.io.DataInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Map;
+import java.util.Arrays;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class HuffmanTranslator {
     private static final byte[] HEADER = new byte[] {0x48, 0x55, 0x46, 0x46};
+    static final byte[] CANONICAL_HEADER = new byte[] {0x48, 0x55, 0x46, 0x02};
+    static final byte[] INDEXED_HEADER = new byte[] {0x48, 0x55, 0x46, 0x03};
+    static final byte[] STREAM_HEADER = new byte[] {0x48, 0x55, 0x46, 0x04};
+    static final byte[] DICTIONARY_HEADER = new byte[] {0x48, 0x55, 0x46, 0x05};
+    static final byte[] INTERLEAVED_HEADER = new byte[] {0x48, 0x55, 0x46, 0x06};
+    static final byte[] CONTEXT_HEADER = new byte[] {0x48, 0x55, 0x46, 0x07};
+    static final byte[] FILTERED_HEADER = new byte[] {0x48, 0x55, 0x46, 0x08};
+    static final byte[] ARCHIVE_HEADER = new byte[] {0x48, 0x55, 0x46, 0x09};
+    static final byte[] PAIR_HEADER = new byte[] {0x48, 0x55, 0x46, 0x0A};
+    static final byte[] FRAMED_HEADER = new byte[] {0x48, 0x55, 0x46, 0x0B};
+
+    /**
+     * The longest code length a generated tree may have.
+     */
+    public static final int MAX_CODE_LENGTH = CanonicalCode.MAX_CODE_LENGTH;
 
     /**
      * Uses Huffman Tree encoding to build a binary tree using 'treeSourceData'.
@@ -26,10 +45,58 @@ public class HuffmanTranslator {
         return HuffmanTree.fromDataStream(treeSourceData);
     }
 
+    /**
+     * Uses Huffman Tree encoding to build a binary tree using 'treeSourceData', where no code may be longer than
+     * 'maxCodeLength' bits. Bounding the code length bounds the size of the decode tables, at the cost of a slightly
+     * larger output when the bound is tighter than the optimal tree.
+     *
+     * @param treeSourceData  The data used to construct the Huffman Tree
+     * @param maxCodeLength  The longest code permitted, from 1 to MAX_CODE_LENGTH (at least 8 for arbitrary data)
+     * @throws IllegalArgumentException  If maxCodeLength is out of range or too short for the byte values present
+     */
+    public static HuffmanTree generateTree(InputStream treeSourceData, int maxCodeLength) {
+        return HuffmanTree.fromDataStream(treeSourceData, maxCodeLength);
+    }
+
+    /**
+     * Builds a binary tree from byte counts which have already been gathered, such as by Histogram.fromFile().
+     *
+     * @param histogram  The byte counts of the data to be encoded
+     * @param maxCodeLength  The longest code permitted, from 1 to MAX_CODE_LENGTH (at least 8 for arbitrary data)
+     * @throws IllegalArgumentException  If maxCodeLength is out of range or too short for the byte values present
+     */
+    public static HuffmanTree generateTree(Histogram histogram, int maxCodeLength) {
+        return HuffmanTree.fromHistogram(histogram, maxCodeLength);
+    }
+
+    /**
+     * Builds an order-1 model using 'treeSourceData', in which each byte is coded according to the byte before it.
+     *
+     * @param treeSourceData  The data used to construct the model
+     * @throws IOException  If the data cannot be read
+     * @see ContextModel
+     */
+    public static ContextModel generateContextModel(InputStream treeSourceData) throws IOException {
+        return ContextModel.fromStream(treeSourceData);
+    }
+
+    /**
+     * Builds a model over 16-bit symbols using 'treeSourceData', in which the most frequent aligned byte pairs get
+     * codes of their own.
+     *
+     * @param treeSourceData  The data used to construct the model
+     * @throws IOException  If the data cannot be read
+     * @see PairModel
+     */
+    public static PairModel generatePairModel(InputStream treeSourceData) throws IOException {
+        return PairModel.fromStream(treeSourceData);
+    }
+
     /**
      * Encodes the data in 'encodeData' using the given 'encodingTree'.
-     * A 4-byte header 'HUFF' and the serialized Huffman Tree are prepended to the data send to encodedData, as they
-     * are used in the decode process.
+     * When the tree is canonical (as generated trees are), a 4-byte header 'HUF\2' and the packed code lengths are
+     * prepended to the data sent to encodedData. Otherwise, the legacy 4-byte header 'HUFF' and the serialized Huffman
+     * Tree are prepended. Either is used in the decode process.
      *
      * @param rawData  The data to encode using the Huffman Tree (same as treeSourceData for smallest compression)
      * @param encodedData  The data stream after being encoded
@@ -37,65 +104,463 @@ public class HuffmanTranslator {
      */
     public static void encode(HuffmanTree encodingTree, InputStream rawData, OutputStream encodedData)
             throws IOException {
-        byte[] tree = encodingTree.toSerial();
-        byte[] treeLen = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(tree.length).array();
-        encodedData.write(HEADER);
-        encodedData.write(treeLen);
-        encodedData.write(tree);
+        writeHeader(encodingTree, encodedData);
 
         //Encode the actual data
-        Map<Byte, List<Boolean>> encoder = encodingTree.toMap();
-        BitBlock bitBlock = new BitBlock();
-        Iterator<Boolean> iter;
-        for (int raw; (raw = rawData.read()) >= 0;) {
-            iter = encoder.get((byte)raw).iterator();
-            while (iter.hasNext()) {
-                if (!bitBlock.pushAll(iter)) {
-                    //Flush this full BitBlock to disk
-                    encodedData.write(bitBlock.toSerial());
-                    bitBlock = new BitBlock();
-                }
+        BitWriter writer = new BitWriter(encodedData);
+        HuffmanEncodeTable.fromTree(encodingTree).encode(rawData, writer);
+        writer.finish();
+    }
+
+    /**
+     * Encodes the data in 'rawData' using the given 'encodingTree', framing the bits in variable-length frames of
+     * 'frameSize' bytes instead of 1 KiB BitBlocks. Large frames spend less on headers and need far fewer writes. The
+     * 4-byte header 'HUF\11', the frame size (a VarInt) and the packed code lengths are prepended to the frames.
+     *
+     * @param frameSize  The bytes of bits in every frame but the last
+     * @throws IllegalArgumentException  If the tree is not canonical (generated trees always are), or the frame size is
+     *     not valid for BitBlock.checkFrameSize()
+     */
+    public static void encode(HuffmanTree encodingTree, InputStream rawData, OutputStream encodedData, int frameSize)
+            throws IOException {
+        BitWriter writer = new BitWriter(encodedData, frameSize);
+        writeFramedHeader(encodingTree, frameSize, encodedData);
+        HuffmanEncodeTable.fromTree(encodingTree).encode(rawData, writer);
+        writer.finish();
+    }
+
+    /**
+     * Encodes the data in 'rawData' using an order-1 model. The 4-byte header 'HUF\7' and the serialized model are
+     * prepended, and the data follows as serialized BitBlocks, so decode() reads it like any other format.
+     *
+     * @param model  The model to encode with, built from the same data (or data with the same byte pairs)
+     * @param rawData  The data to encode
+     * @param encodedData  The data stream after being encoded
+     * @throws IOException
+     */
+    public static void encode(ContextModel model, InputStream rawData, OutputStream encodedData) throws IOException {
+        encodedData.write(CONTEXT_HEADER);
+        encodedData.write(model.toSerial());
+
+        BitWriter writer = new BitWriter(encodedData);
+        model.encode(rawData, writer);
+        writer.finish();
+    }
+
+    /**
+     * Encodes the data in 'rawData' using a model over 16-bit symbols. The 4-byte header 'HUF\10' and the serialized
+     * model are prepended, and the data follows as serialized BitBlocks, so decode() reads it like any other format.
+     *
+     * @param model  The model to encode with, built from the same data (or data with the same byte values)
+     * @param rawData  The data to encode
+     * @param encodedData  The data stream after being encoded
+     * @throws IOException
+     */
+    public static void encode(PairModel model, InputStream rawData, OutputStream encodedData) throws IOException {
+        encodedData.write(PAIR_HEADER);
+        encodedData.write(model.toSerial());
+
+        BitWriter writer = new BitWriter(encodedData);
+        model.encode(rawData, writer);
+        writer.finish();
+    }
+
+    /**
+     * Encodes the data in 'rawData' after passing it through a filter chain chosen for it, such as run-length coding
+     * for data with long runs or delta coding for slowly varying samples. The chain and its code are chosen from a
+     * single pass over 'treeSourceData', which must be the same data as 'rawData'.
+     *
+     * @param treeSourceData  The data used to choose the filters and construct the Huffman Tree
+     * @param rawData  The data to encode, read a second time
+     * @param encodedData  The data stream after being encoded
+     * @throws IOException
+     * @see FilterSelector
+     */
+    public static void encodeFiltered(InputStream treeSourceData, InputStream rawData, OutputStream encodedData)
+            throws IOException {
+        FilterSelector selector = FilterSelector.fromStream(treeSourceData);
+        HuffmanTree tree = HuffmanTree.fromHistogram(selector.getHistogram(), MAX_CODE_LENGTH);
+        encode(selector.getFilters(), tree, rawData, encodedData);
+    }
+
+    /**
+     * Encodes the data in 'rawData' after passing it through the given filters. The 4-byte header 'HUF\8' and the
+     * serialized chain are prepended, followed by the filtered data as encode() would write it with 'encodingTree'.
+     *
+     * @param filters  The filters to apply before encoding
+     * @param encodingTree  The tree to encode the filtered data with, which must have a code for every byte value the
+     *     filters produce
+     * @throws IOException
+     */
+    public static void encode(FilterChain filters, HuffmanTree encodingTree, InputStream rawData,
+                              OutputStream encodedData) throws IOException {
+        encodedData.write(FILTERED_HEADER);
+        encodedData.write(filters.toSerial());
+        writeHeader(encodingTree, encodedData);
+
+        HuffmanEncodeTable table = HuffmanEncodeTable.fromTree(encodingTree);
+        BitWriter writer = new BitWriter(encodedData);
+        OutputStream filtered = filters.encoder(new OutputStream() {
+            @Override
+            public void write(int byt) throws IOException {
+                write(new byte[] {(byte)byt}, 0, 1);
             }
+
+            @Override
+            public void write(byte[] data, int offset, int length) throws IOException {
+                table.encode(data, offset, length, writer);
+            }
+        });
+        byte[] buffer = new byte[64 * 1024];
+        for (int read; (read = rawData.read(buffer)) >= 0;) {
+            filtered.write(buffer, 0, read);
         }
-        //Flush the last BitBlock to disk
-        if (!bitBlock.isEmpty()) {
-            encodedData.write(bitBlock.toSerial());
+        filtered.close();
+        writer.finish();
+    }
+
+    /**
+     * Encodes the data in 'rawData' using a trained dictionary. Only the 4-byte header 'HUF\5' and the dictionary's ID
+     * are prepended, so the decoder must be given a DictionaryCache which can find the dictionary.
+     *
+     * @param dictionary  The dictionary to encode with, which has a code for every byte value
+     * @param rawData  The data to encode
+     * @param encodedData  The data stream after being encoded
+     * @throws IOException
+     */
+    public static void encode(HuffmanDictionary dictionary, InputStream rawData, OutputStream encodedData)
+            throws IOException {
+        encodedData.write(DICTIONARY_HEADER);
+        encodedData.write(ByteBuffer.allocate(HuffmanDictionary.ID_SIZE_BYTES).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(dictionary.getId()).array());
+
+        BitWriter writer = new BitWriter(encodedData);
+        dictionary.getEncodeTable().encode(rawData, writer);
+        writer.finish();
+    }
+
+    /**
+     * Encodes the data in 'rawData' using the given 'encodingTree', splitting it into chunks which are encoded on
+     * 'threads' threads at once. The output can be decoded by decode(), just like the output of encode().
+     *
+     * @param threads  The number of threads to encode with
+     * @see ParallelEncoder
+     */
+    public static void encodeParallel(HuffmanTree encodingTree, InputStream rawData, OutputStream encodedData,
+                                      int threads) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            new ParallelEncoder(executor, ParallelEncoder.DEFAULT_CHUNK_SIZE, threads * 2)
+                    .encode(encodingTree, rawData, encodedData);
+        } finally {
+            executor.shutdownNow();
         }
     }
 
+    /**
+     * Encodes the data in 'rawData' using the given 'encodingTree', in the interleaved format, which decode() reads
+     * around twice as fast as the output of encode() on a single thread.
+     *
+     * @throws IllegalArgumentException  If the tree is not canonical (generated trees always are)
+     * @see InterleavedEncoder
+     */
+    public static void encodeInterleaved(HuffmanTree encodingTree, InputStream rawData, OutputStream encodedData)
+            throws IOException {
+        new InterleavedEncoder(InterleavedEncoder.DEFAULT_FRAME_SIZE).encode(encodingTree, rawData, encodedData);
+    }
+
+    /**
+     * Encodes the data in 'rawData' in a single pass, without a tree generated up front. The data is split into chunks
+     * which each get whichever is smallest: the previous chunk's code, a fresh code, or no encoding at all, so mixed
+     * content compresses well and incompressible content never grows by more than a few bytes per chunk. The output
+     * is the HuffmanOutputStream format, which decode() reads.
+     *
+     * @param chunkSize  The number of bytes in each chunk
+     * @see HuffmanOutputStream
+     */
+    public static void encodeAdaptive(InputStream rawData, OutputStream encodedData, int chunkSize)
+            throws IOException {
+        HuffmanOutputStream output = new HuffmanOutputStream(new NonClosingOutputStream(encodedData), chunkSize);
+        byte[] buffer = new byte[64 * 1024];
+        for (int read; (read = rawData.read(buffer)) >= 0;) {
+            output.write(buffer, 0, read);
+        }
+        output.close();
+    }
+
+    /**
+     * Encodes the data in 'rawData' in a single pass, with a code built from a sample of its first 'sampleSize' bytes
+     * rather than from a histogram of the whole input. The code is reused for every chunk whose cost stays within
+     * HuffmanOutputStream.DEFAULT_DRIFT_THRESHOLD of a code of its own, and replaced for chunks that drift further, so
+     * streams which cannot be read twice still get close to the ratio of a two-pass encoding. The output is the
+     * HuffmanOutputStream format, which decode() reads.
+     *
+     * @param chunkSize  The number of bytes in each chunk
+     * @param sampleSize  The number of bytes at the start of rawData to build the first code from
+     * @see HuffmanOutputStream
+     */
+    public static void encodeSampled(InputStream rawData, OutputStream encodedData, int chunkSize, int sampleSize)
+            throws IOException {
+        HuffmanOutputStream output = new HuffmanOutputStream(new NonClosingOutputStream(encodedData), chunkSize,
+                sampleSize, HuffmanOutputStream.DEFAULT_DRIFT_THRESHOLD);
+        byte[] buffer = new byte[64 * 1024];
+        for (int read; (read = rawData.read(buffer)) >= 0;) {
+            output.write(buffer, 0, read);
+        }
+        output.close();
+    }
+
+    /**
+     * Compresses the remaining bytes of 'rawData' into the remaining space of 'encodedData', with a tree generated from
+     * the data itself. Both heap and direct buffers are read and written in place. The output is the same as encode()
+     * would write, so decode() and decompress() both read it.
+     *
+     * @return  The number of bytes written to encodedData
+     * @throws java.nio.BufferOverflowException  If encodedData has less space than maxCompressedLength() of the input
+     *     and the compressed data does not fit, in which case neither buffer's position is changed
+     * @see HuffmanEncoder
+     */
+    public static int compress(ByteBuffer rawData, ByteBuffer encodedData) {
+        Histogram histogram = new Histogram();
+        histogram.add(rawData);
+        return new HuffmanEncoder(HuffmanTree.fromHistogram(histogram, MAX_CODE_LENGTH))
+                .compress(rawData, encodedData);
+    }
+
+    /**
+     * Decompresses the data in the remaining bytes of 'encodedData', as written by compress() or encode(), into the
+     * remaining space of 'rawData'.
+     *
+     * @return  The number of bytes written to rawData
+     * @throws IOException  If the data is invalid, or is not in the 'HUF\2' format
+     * @throws java.nio.BufferOverflowException  If rawData has too little space for the decompressed data, in which
+     *     case neither buffer's position is changed
+     * @see HuffmanDecoder
+     */
+    public static int decompress(ByteBuffer encodedData, ByteBuffer rawData) throws IOException {
+        return new HuffmanDecoder().decompress(encodedData, rawData);
+    }
+
+    /**
+     * @return  The most bytes compress() can write for 'length' bytes of input. A generated code never spends more
+     *     bits on the data than one byte per byte, so this is the largest header plus the BitBlock framing of 8 bits
+     *     per input byte.
+     * @throws IllegalArgumentException  If the bound does not fit in an int
+     */
+    public static int maxCompressedLength(int length) {
+        long bound = CANONICAL_HEADER.length + CanonicalCode.MAX_SERIAL_SIZE + BitBlock.serialSize(8L * length);
+        if (length < 0 || bound > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("No bound can be given for an input of " + length + " bytes");
+        }
+        return (int)bound;
+    }
+
+    /**
+     * Writes the file header and the description of the tree's codes.
+     */
+    static void writeHeader(HuffmanTree encodingTree, OutputStream encodedData) throws IOException {
+        Optional<CanonicalCode> canonicalCode = encodingTree.getCanonicalCode();
+        if (canonicalCode.isPresent()) {
+            encodedData.write(CANONICAL_HEADER);
+            encodedData.write(canonicalCode.get().toSerial());
+        } else {
+            byte[] tree = encodingTree.toSerial();
+            byte[] treeLen = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(tree.length).array();
+            encodedData.write(HEADER);
+            encodedData.write(treeLen);
+            encodedData.write(tree);
+        }
+    }
+
+    /**
+     * Writes the header of the framed format: the frame size and the description of the tree's canonical code.
+     *
+     * @throws IllegalArgumentException  If the tree is not canonical
+     */
+    static void writeFramedHeader(HuffmanTree encodingTree, int frameSize, OutputStream encodedData)
+            throws IOException {
+        CanonicalCode code = encodingTree.getCanonicalCode()
+                .orElseThrow(() -> new IllegalArgumentException("The framed format needs a canonical tree"));
+        encodedData.write(FRAMED_HEADER);
+        VarInt.write(encodedData, frameSize);
+        encodedData.write(code.toSerial());
+    }
+
+    /**
+     * Decodes data produced by encode(), reading the header and code description and then translating the bit stream
+     * back into bytes with a HuffmanDecodeTable.
+     *
+     * @param encodeData  The encoded data, starting with the 'HUF\2', indexed 'HUF\3', streamed 'HUF\4', interleaved
+     *     'HUF\6', order-1 'HUF\7', filtered 'HUF\8', pair 'HUF\10', framed 'HUF\11', or legacy 'HUFF' header
+     * @param rawData  The data stream after being decoded
+     * @throws IOException
+     */
     public static void decode(InputStream encodeData, OutputStream rawData) throws IOException {
-        Iterator<Byte> inputIterator = new InputStreamIterator(encodeData);
+        decode(encodeData, rawData, null);
+    }
+
+    /**
+     * Decodes data produced by encode(), including data encoded with a dictionary ('HUF\5' header), which is looked up
+     * in 'dictionaries' by the ID the data carries.
+     *
+     * @param encodeData  The encoded data
+     * @param rawData  The data stream after being decoded
+     * @param dictionaries  The dictionaries the data may have been encoded with, or null if none
+     * @throws IOException  If the data is invalid, or names a dictionary which cannot be found
+     */
+    public static void decode(InputStream encodeData, OutputStream rawData, DictionaryCache dictionaries)
+            throws IOException {
+        DataInputStream input = new DataInputStream(encodeData);
 
-        //Require that this file starts with the header 'HUFF'
-        for (int i = 0; i < 4; i++) {
-            if (HEADER[i] != inputIterator.next()) {
-                throw new RuntimeException("Invalid file header");
+        //Require that this file starts with a known header
+        byte[] header = new byte[HEADER.length];
+        input.readFully(header);
+        HuffmanDecodeTable decodeTable;
+        if (Arrays.equals(INDEXED_HEADER, header)) {
+            decodeIndexed(input, rawData);
+            return;
+        } else if (Arrays.equals(INTERLEAVED_HEADER, header)) {
+            decodeInterleaved(input, rawData);
+            return;
+        } else if (Arrays.equals(CONTEXT_HEADER, header)) {
+            ContextModel model = ContextModel.fromSerialStream(input);
+            model.decode(blockReader(encodeData), rawData);
+            return;
+        } else if (Arrays.equals(PAIR_HEADER, header)) {
+            PairModel model = PairModel.fromSerialStream(input);
+            model.decode(blockReader(encodeData), rawData);
+            return;
+        } else if (Arrays.equals(FRAMED_HEADER, header)) {
+            int frameSize = VarInt.readInt(input);
+            try {
+                BitBlock.checkFrameSize(frameSize);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid frame size in header: " + frameSize, e);
             }
+            decodeTable = HuffmanDecodeTable.fromCanonical(CanonicalCode.fromSerialStream(input));
+            decodeTable.decode(new BitReader(input, frameSize), rawData);
+            return;
+        } else if (Arrays.equals(FILTERED_HEADER, header)) {
+            //The rest is an ordinary encoding of the filtered data, which is restored on its way to rawData
+            OutputStream restored = FilterChain.fromSerialStream(input).decoder(new NonClosingOutputStream(rawData));
+            decode(input, restored, dictionaries);
+            restored.close();
+            return;
+        } else if (Arrays.equals(STREAM_HEADER, header)) {
+            decodeStream(new HuffmanInputStream(input, true), rawData);
+            return;
+        } else if (Arrays.equals(DICTIONARY_HEADER, header)) {
+            byte[] idBytes = new byte[HuffmanDictionary.ID_SIZE_BYTES];
+            input.readFully(idBytes);
+            int id = ByteBuffer.wrap(idBytes).order(ByteOrder.LITTLE_ENDIAN).getInt();
+            Optional<HuffmanDictionary> dictionary = dictionaries == null ? Optional.empty() : dictionaries.get(id);
+            decodeTable = dictionary.orElseThrow(() -> new IOException(String.format(
+                    "Data was encoded with dictionary %08x, which is not available", id))).getDecodeTable();
+        } else if (Arrays.equals(CANONICAL_HEADER, header)) {
+            //Build the tables straight from the code lengths
+            decodeTable = HuffmanDecodeTable.fromCanonical(CanonicalCode.fromSerialStream(input));
+        } else if (Arrays.equals(HEADER, header)) {
+            //Determine how many serial bytes comprise the tree structure
+            byte[] treeLenBytes = new byte[4];
+            input.readFully(treeLenBytes);
+            int treeLen = ByteBuffer.wrap(treeLenBytes).order(ByteOrder.LITTLE_ENDIAN).getInt();
+
+            //Retrieve the serialized tree
+            byte[] treeBytes = new byte[treeLen];
+            input.readFully(treeBytes);
+            decodeTable = HuffmanDecodeTable.fromTree(HuffmanTree.fromSerial(treeBytes));
+        } else {
+            throw new RuntimeException("Invalid file header");
         }
 
-        //Determine how many serial bytes comprise the tree structure
-        byte[] treeLenBytes = new byte[4];
-        for (int i = 0; i < 4; treeLenBytes[i++] = inputIterator.next());
-        int treeLen = ByteBuffer.wrap(treeLenBytes).order(ByteOrder.LITTLE_ENDIAN).getInt();
-
-        //Retrieve the serialized tree
-        byte[] treeBytes = new byte[treeLen];
-        for (int i = 0; i < treeLen; treeBytes[i++] = inputIterator.next());
-        HuffmanTree tree = HuffmanTree.fromSerial(treeBytes);
-
-        Iterator<Boolean> iteratorWrapper = new IteratorIterator<>(() -> {
-            if (inputIterator.hasNext()) {
-                return Optional.of(BitBlock.fromSerial(inputIterator).iterator());
-            } else {
-                return Optional.empty();
+        decodeTable.decode(blockReader(encodeData), rawData);
+    }
+
+    /**
+     * @return  A reader of the serialized BitBlocks which make up the rest of the stream
+     */
+    private static BitReader blockReader(InputStream encodeData) {
+        return new BitReader(() -> {
+            try {
+                return BitBlock.fromSerialStream(encodeData);
+            } catch (IOException e) {
+                throw new RuntimeException("Data failed to read due to a IO error", e);
             }
         });
-        while (iteratorWrapper.hasNext()) {
-            rawData.write(unsignedByteAsInt(tree.decode(iteratorWrapper)));
+    }
+
+    /**
+     * Decodes the frames of the indexed format in order, ignoring the index that follows them.
+     */
+    private static void decodeIndexed(DataInputStream input, OutputStream rawData) throws IOException {
+        HuffmanDecodeTable decodeTable = HuffmanDecodeTable.fromCanonical(CanonicalCode.fromSerialStream(input));
+        byte[] frameHeaderBytes = new byte[IndexedEncoder.FRAME_HEADER_SIZE];
+        ByteBuffer frameHeader = ByteBuffer.wrap(frameHeaderBytes).order(ByteOrder.LITTLE_ENDIAN);
+        while (true) {
+            input.readFully(frameHeaderBytes, 0, 4);
+            int encodedLength = frameHeader.getInt(0);
+            if (encodedLength == 0) {
+                return;
+            }
+            input.readFully(frameHeaderBytes, 4, IndexedEncoder.FRAME_HEADER_SIZE - 4);
+            byte[] payload = new byte[encodedLength];
+            input.readFully(payload);
+            rawData.write(decodeTable.decodePayload(payload, frameHeader.getInt(12)));
+        }
+    }
+
+    /**
+     * Decodes the frames of the interleaved format, reusing one payload buffer and one output buffer for every frame.
+     */
+    private static void decodeInterleaved(DataInputStream input, OutputStream rawData) throws IOException {
+        HuffmanDecodeTable decodeTable = HuffmanDecodeTable.fromCanonical(CanonicalCode.fromSerialStream(input));
+        int[] streamLengths = new int[InterleavedEncoder.STREAMS];
+        byte[] payload = new byte[0];
+        byte[] decoded = new byte[0];
+        for (int rawLength; (rawLength = VarInt.readInt(input)) > 0;) {
+            long payloadLength = 0;
+            for (int stream = 0; stream < InterleavedEncoder.STREAMS; stream++) {
+                streamLengths[stream] = VarInt.readInt(input);
+                payloadLength += streamLengths[stream];
+            }
+            if (payloadLength > Integer.MAX_VALUE - HuffmanDecodeTable.INTERLEAVED_PADDING) {
+                throw new IOException("Interleaved frame is too large: " + payloadLength);
+            }
+            if (payload.length < payloadLength + HuffmanDecodeTable.INTERLEAVED_PADDING) {
+                payload = new byte[(int)payloadLength + HuffmanDecodeTable.INTERLEAVED_PADDING];
+            }
+            if (decoded.length < rawLength) {
+                decoded = new byte[rawLength];
+            }
+            input.readFully(payload, 0, (int)payloadLength);
+            decodeTable.decodeInterleaved(payload, streamLengths, decoded, rawLength);
+            rawData.write(decoded, 0, rawLength);
         }
     }
 
-    private static int unsignedByteAsInt(byte byt) {
-        return byt & 0xFF;
+    private static void decodeStream(HuffmanInputStream input, OutputStream rawData) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        for (int read; (read = input.read(buffer)) >= 0;) {
+            rawData.write(buffer, 0, read);
+        }
+    }
+
+    /**
+     * Lets a stream be wrapped and the wrapper closed, while leaving the wrapped stream open for its owner.
+     */
+    private static class NonClosingOutputStream extends FilterOutputStream {
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] data, int offset, int length) throws IOException {
+            out.write(data, offset, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
     }
 }
@@ -1,27 +1,49 @@
 package com.bitfracture.huffman;
 
+import com.bitfracture.metrics.Metrics;
+import com.bitfracture.metrics.Phase;
+
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.PriorityQueue;
+import java.util.Optional;
 
 /**
  * A HuffmanTree is a binary tree where leaf nodes represent a byte, and each branch leading to that leaf represents a
  * bit in the encoded form for that byte. Traversing from the root node to a value, adding a 0 for each left, and 1
  * for each right, will result in the encoded form. Nodes closest to the root represent values that are most common in
  * the data set being encoded, such that they have the shortest encoded form.
+ *
+ * Trees built from data are computed as code lengths with TwoQueueMerge, over primitive arrays, and kept as their
+ * canonical code. The HuffmanNode graph of such a tree is only built if something walks the tree itself, since the
+ * encode and decode tables are made straight from the canonical code.
  */
 public class HuffmanTree {
-    private HuffmanNode head;
+    private volatile HuffmanNode head;
+    private CanonicalCode canonicalCode;
 
     private HuffmanTree() {}
 
     HuffmanNode getHead() {
-        return this.head;
+        HuffmanNode node = head;
+        if (node == null) {
+            node = fromCanonicalHelper(canonicalCode, canonicalSymbols(canonicalCode), 0);
+            head = node;
+        }
+        return node;
+    }
+
+    /**
+     * @return  The canonical code this tree was shaped from, if it has one. Trees built from data are always canonical;
+     *     trees read from the legacy format are not.
+     */
+    Optional<CanonicalCode> getCanonicalCode() {
+        return Optional.ofNullable(canonicalCode);
     }
 
     byte[] toSerial() {
@@ -53,7 +75,7 @@ public class HuffmanTree {
 
     private List<SerialHuffmanNode> toSerialTree() {
         List<SerialHuffmanNode> serial = new ArrayList<>();
-        toSerialTreeHelper(head, serial);
+        toSerialTreeHelper(getHead(), serial);
         return serial;
     }
 
@@ -72,12 +94,10 @@ public class HuffmanTree {
         List<SerialHuffmanNode> serialNodes = new ArrayList<>();
         for (int i = 0; i < serial.length; i++) {
             int numBranches = serial[i] & 0b01111111;
-            System.out.println("Extracting: " + numBranches);
             for (int j = 0; j < numBranches; j++) {
                 serialNodes.add(SerialHuffmanNode.ofBranch());
             }
             if ((serial[i] & 0b10000000) > 0) {
-                System.out.println("Extracting value: " + serial[i + 1]);
                 serialNodes.add(SerialHuffmanNode.ofValue(serial[++i]));
             }
         }
@@ -100,42 +120,172 @@ public class HuffmanTree {
     }
 
     static HuffmanTree fromDataStream(InputStream bytes) {
-        //Build a map from byte value to HuffmanNode to accumulate totals (see incrementBaseWeight)
-        Map<Byte, HuffmanNode> initialNodes = new HashMap<>();
+        return fromDataStream(bytes, CanonicalCode.MAX_CODE_LENGTH);
+    }
 
+    static HuffmanTree fromDataStream(InputStream bytes, int maxCodeLength) {
         try {
-            for (int raw; (raw = bytes.read()) >= 0;) {
-                Byte byt = (byte)raw;
-                HuffmanNode newNode = HuffmanNode.fromValue(byt);
-                initialNodes.putIfAbsent(byt, newNode);
-                initialNodes.get(byt).incrementBaseWeight();
-            }
+            return fromHistogram(Histogram.fromStream(bytes), maxCodeLength);
         } catch (IOException e) {
             throw new RuntimeException("Data failed to read due to a IO error", e);
         }
+    }
+
+    /**
+     * Builds a canonical tree from the frequency of each byte value. If the optimal tree has codes longer than
+     * maxCodeLength, the lengths are recomputed with PackageMerge, which gives the optimal code under that bound.
+     *
+     * @param histogram  The byte counts of the data to be encoded
+     * @param maxCodeLength  The longest code permitted, from 1 to CanonicalCode.MAX_CODE_LENGTH
+     * @throws IllegalArgumentException  If maxCodeLength is out of range or too short to give every byte value a code
+     */
+    static HuffmanTree fromHistogram(Histogram histogram, int maxCodeLength) {
+        if (maxCodeLength < 1 || maxCodeLength > CanonicalCode.MAX_CODE_LENGTH) {
+            throw new IllegalArgumentException("Maximum code length is out of range: " + maxCodeLength);
+        }
 
-        //Place all HuffmanNode leaves into the initial priority queue to be ordered by weight
-        PriorityQueue<HuffmanNode> queue = new PriorityQueue<>();
-        initialNodes.forEach((byteVal, node) -> queue.add(node));
-        System.out.println(String.format("Accumulated %d initial nodes", queue.size()));
+        long start = Metrics.start();
 
-        //While the queue has more than one item, join the lowest two nodes using a parent node
-        while (queue.size() > 1) {
-            queue.add(HuffmanNode.fromNodes(queue.remove(), queue.remove()));
+        long[] weights = new long[CanonicalCode.SYMBOL_COUNT];
+        for (int symbol = 0; symbol < CanonicalCode.SYMBOL_COUNT; symbol++) {
+            weights[symbol] = histogram.getCount(symbol);
+        }
+        int[] lengths = codeLengths(weights, maxCodeLength);
+        HuffmanTree tree = fromCompleteCode(CanonicalCode.fromLengths(lengths));
+        Metrics.phaseCompleted(Phase.TREE_BUILD, start, 0);
+        if (start != Metrics.DISABLED) {
+            reportCode(histogram, lengths);
+        }
+        return tree;
+    }
+
+    /**
+     * Computes optimal code lengths for an alphabet of any size with TwoQueueMerge, falling back to PackageMerge if
+     * the optimal code has codes longer than maxCodeLength.
+     *
+     * @param weights  The weight of every symbol (0 for symbols which do not occur)
+     * @return  The code length of every symbol, indexed by symbol
+     * @throws IllegalArgumentException  If maxCodeLength is too short to give every symbol which occurs a code
+     */
+    static int[] codeLengths(long[] weights, int maxCodeLength) {
+        //Every code needs at least one bit, so pad data with fewer than two distinct values using unused values
+        int[] symbols = new int[weights.length];
+        int symbolCount = 0;
+        for (int symbol = 0; symbol < weights.length; symbol++) {
+            if (weights[symbol] > 0) {
+                symbols[symbolCount++] = symbol;
+            }
+        }
+        for (int symbol = 0; symbolCount < 2; symbol++) {
+            if (weights[symbol] == 0) {
+                symbols[symbolCount++] = symbol;
+            }
+        }
+        symbols = Arrays.copyOf(symbols, symbolCount);
+
+        //Shorten the codes if needed
+        int[] lengths = TwoQueueMerge.codeLengths(symbols, weights);
+        if (Arrays.stream(lengths).max().orElse(0) > maxCodeLength) {
+            lengths = PackageMerge.codeLengths(symbols, weights, maxCodeLength);
+        }
+        return lengths;
+    }
+
+    /**
+     * Reports how many bits the code lengths spend on the counted data, and the entropy of the data, to the metrics.
+     */
+    private static void reportCode(Histogram histogram, int[] lengths) {
+        long total = histogram.getTotal();
+        double codedBits = 0;
+        double entropyBits = 0;
+        for (int symbol = 0; symbol < CanonicalCode.SYMBOL_COUNT; symbol++) {
+            long count = histogram.getCount(symbol);
+            if (count > 0) {
+                codedBits += (double)count * lengths[symbol];
+                entropyBits += count * Math.log((double)total / count) / Math.log(2);
+            }
         }
+        Metrics.codeBuilt(total, codedBits, entropyBits);
+    }
+
+    /**
+     * Builds the tree whose paths spell out the codes of a canonical code.
+     *
+     * @param code  The canonical code to shape the tree from
+     */
+    static HuffmanTree fromCanonicalCode(CanonicalCode code) {
+        //Shape the tree now, so that an incomplete code is rejected here rather than when the tree is first walked
+        HuffmanTree newTree = new HuffmanTree();
+        newTree.head = fromCanonicalHelper(code, canonicalSymbols(code), 0);
+        newTree.canonicalCode = code;
+        return newTree;
+    }
 
+    /**
+     * Wraps a canonical code known to be complete, leaving the tree's nodes to be built only if they are needed.
+     */
+    private static HuffmanTree fromCompleteCode(CanonicalCode code) {
         HuffmanTree newTree = new HuffmanTree();
-        newTree.head = queue.peek();
+        newTree.canonicalCode = code;
         return newTree;
     }
 
+    private static List<Integer> canonicalSymbols(CanonicalCode code) {
+        List<Integer> symbols = new ArrayList<>();
+        for (int symbol = 0; symbol < CanonicalCode.SYMBOL_COUNT; symbol++) {
+            if (code.getLength(symbol) > 0) {
+                symbols.add(symbol);
+            }
+        }
+        return symbols;
+    }
+
+    /**
+     * Recursively builds the subtree for every code in 'symbols', all of which share their first 'depth' bits.
+     */
+    private static HuffmanNode fromCanonicalHelper(CanonicalCode code, List<Integer> symbols, int depth) {
+        if (symbols.isEmpty()) {
+            throw new IllegalArgumentException("Canonical code is incomplete and cannot be shaped into a tree");
+        }
+        List<Integer> left = new ArrayList<>();
+        List<Integer> right = new ArrayList<>();
+        for (int symbol : symbols) {
+            int length = code.getLength(symbol);
+            if (length == depth) {
+                return HuffmanNode.fromValue((byte)symbol);
+            }
+            boolean bit = ((code.getCode(symbol) >>> (length - depth - 1)) & 1) == 1;
+            (bit ? right : left).add(symbol);
+        }
+        return HuffmanNode.fromNodes(fromCanonicalHelper(code, right, depth + 1),
+                fromCanonicalHelper(code, left, depth + 1));
+    }
+
+    /**
+     * @return  The depth of each byte value's leaf, indexed by unsigned byte value (0 for absent values)
+     */
+    int[] toCodeLengths() {
+        int[] lengths = new int[CanonicalCode.SYMBOL_COUNT];
+        toCodeLengths(getHead(), 0, lengths);
+        return lengths;
+    }
+
+    private void toCodeLengths(HuffmanNode node, int depth, int[] lengths) {
+        if (null == node.getLeafValue()) {
+            toCodeLengths(node.getLeft(), depth + 1, lengths);
+            toCodeLengths(node.getRight(), depth + 1, lengths);
+        } else {
+            lengths[node.getLeafValue() & 0xFF] = depth;
+        }
+    }
+
     byte decode(Iterator<Boolean> iterator) {
-        return head.seek(iterator);
+        return getHead().seek(iterator);
     }
 
     Map<Byte, List<Boolean>> toMap() {
         Map<Byte, List<Boolean>> map = new HashMap<>();
-        toMap(head, map, new ArrayList<>());
+        toMap(getHead(), map, new ArrayList<>());
         return map;
     }
 
@@ -0,0 +1,185 @@
+package com.bitfracture.huffman;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Provides random access into data written by IndexedEncoder. Opening reads only the header and the index; frames are
+ * then read with positional reads, so any range of the original data can be decoded without touching the frames
+ * before it, and frames can be decoded on several threads at once.
+ */
+public class IndexedDecoder {
+    private FileChannel channel;
+    private HuffmanDecodeTable table;
+    private long framesEnd;
+    private long[] framePositions;
+    private long[] frameOffsets;
+    private int[] frameLengths;
+
+    private IndexedDecoder() {}
+
+    /**
+     * Reads the header and index of an indexed file. The channel remains owned by the caller, and only positional reads
+     * are made from it, so its position is not changed.
+     *
+     * @throws IOException  If the channel cannot be read or does not hold the indexed format
+     */
+    public static IndexedDecoder open(FileChannel channel) throws IOException {
+        IndexedDecoder decoder = new IndexedDecoder();
+        decoder.channel = channel;
+
+        //Read the code lengths that follow the header, with positional reads which leave the channel's position alone
+        RangeInputStream headerStream = new RangeInputStream(channel, 0, channel.size());
+        DataInputStream header = new DataInputStream(headerStream);
+        byte[] magic = new byte[HuffmanTranslator.INDEXED_HEADER.length];
+        header.readFully(magic);
+        if (!Arrays.equals(HuffmanTranslator.INDEXED_HEADER, magic)) {
+            throw new IOException("Invalid file header");
+        }
+        decoder.table = HuffmanDecodeTable.fromCanonical(CanonicalCode.fromSerialStream(header));
+
+        //Locate and read the index, which lies between the mark that ends the frames and the footer
+        long framesStart = headerStream.getPosition();
+        long footerPosition = channel.size() - IndexedEncoder.FOOTER_SIZE;
+        if (footerPosition < framesStart + 4) {
+            throw new IOException("The file ended before the expected data");
+        }
+        ByteBuffer footer = decoder.readAt(footerPosition, IndexedEncoder.FOOTER_SIZE);
+        long indexPosition = footer.getLong();
+        int frameCount = footer.getInt();
+        byte[] trailer = new byte[magic.length];
+        footer.get(trailer);
+        if (!Arrays.equals(HuffmanTranslator.INDEXED_HEADER, trailer)) {
+            throw new IOException("Invalid index footer, which may mean the file is truncated");
+        }
+        if (frameCount < 0 || indexPosition < framesStart + 4
+                || indexPosition + (long)frameCount * IndexedEncoder.INDEX_ENTRY_SIZE != footerPosition) {
+            throw new IOException("Invalid index footer");
+        }
+        decoder.framesEnd = indexPosition - 4;
+        ByteBuffer index = decoder.readAt(indexPosition, frameCount * IndexedEncoder.INDEX_ENTRY_SIZE);
+        decoder.framePositions = new long[frameCount];
+        decoder.frameOffsets = new long[frameCount];
+        decoder.frameLengths = new int[frameCount];
+        long offset = 0;
+        for (int i = 0; i < frameCount; i++) {
+            decoder.framePositions[i] = index.getLong();
+            decoder.frameOffsets[i] = index.getLong();
+            decoder.frameLengths[i] = index.getInt();
+            //Ranges are located by searching the offsets, so the frames must follow each other without gaps
+            if (decoder.framePositions[i] < framesStart
+                    || decoder.framePositions[i] > decoder.framesEnd - IndexedEncoder.FRAME_HEADER_SIZE
+                    || decoder.frameOffsets[i] != offset || decoder.frameLengths[i] <= 0) {
+                throw new IOException("Invalid index entry for frame " + i);
+            }
+            offset += decoder.frameLengths[i];
+        }
+        return decoder;
+    }
+
+    /**
+     * @return  The length of the original data
+     */
+    public long getUncompressedLength() {
+        int last = frameLengths.length - 1;
+        return last < 0 ? 0 : frameOffsets[last] + frameLengths[last];
+    }
+
+    /**
+     * @return  The number of independently decodable frames
+     */
+    public int getFrameCount() {
+        return frameLengths.length;
+    }
+
+    /**
+     * Decodes a range of the original data, reading only the frames which overlap it.
+     *
+     * @param offset  The position of the first byte to decode within the original data
+     * @param length  The number of bytes to decode
+     * @param rawData  The destination for the decoded bytes
+     * @throws IndexOutOfBoundsException  If the range extends outside the original data
+     * @throws IOException  If the channel or rawData fails
+     */
+    public void decodeRange(long offset, long length, OutputStream rawData) throws IOException {
+        if (offset < 0 || length < 0 || offset + length > getUncompressedLength()) {
+            throw new IndexOutOfBoundsException("The range lies outside of the original data");
+        }
+        int search = Arrays.binarySearch(frameOffsets, offset);
+        for (int frame = search >= 0 ? search : -search - 2; length > 0; frame++) {
+            byte[] decoded = decodeFrame(frame);
+            int start = (int)(offset - frameOffsets[frame]);
+            int count = (int)Math.min(length, decoded.length - start);
+            rawData.write(decoded, start, count);
+            offset += count;
+            length -= count;
+        }
+    }
+
+    /**
+     * Decodes the whole file, decoding frames on the executor and writing them in order. At most maxInFlight decoded
+     * frames are held in memory at once.
+     *
+     * @throws IOException  If the channel, rawData, or any frame's decoding fails
+     */
+    public void decodeParallel(OutputStream rawData, ExecutorService executor, int maxInFlight) throws IOException {
+        Deque<Future<byte[]>> inFlight = new ArrayDeque<>();
+        try {
+            for (int frame = 0; frame < getFrameCount(); frame++) {
+                if (inFlight.size() >= maxInFlight) {
+                    rawData.write(inFlight.removeFirst().get());
+                }
+                int next = frame;
+                inFlight.addLast(executor.submit(() -> decodeFrame(next)));
+            }
+            while (!inFlight.isEmpty()) {
+                rawData.write(inFlight.removeFirst().get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a frame to be decoded", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)e.getCause();
+            }
+            throw new IOException("A frame failed to decode", e.getCause());
+        } finally {
+            inFlight.forEach(future -> future.cancel(true));
+        }
+    }
+
+    /**
+     * Reads and decodes a single frame. Safe to call from several threads at once.
+     */
+    private byte[] decodeFrame(int frame) throws IOException {
+        long payloadPosition = framePositions[frame] + IndexedEncoder.FRAME_HEADER_SIZE;
+        int payloadLength = readAt(framePositions[frame], IndexedEncoder.FRAME_HEADER_SIZE).getInt();
+        if (payloadLength < 0 || payloadLength > framesEnd - payloadPosition) {
+            throw new IOException("Invalid length for frame " + frame);
+        }
+        byte[] payload = readAt(payloadPosition, payloadLength).array();
+        return table.decodePayload(payload, frameLengths[frame]);
+    }
+
+    private ByteBuffer readAt(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("The file ended before the expected data");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
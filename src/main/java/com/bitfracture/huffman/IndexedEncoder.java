@@ -0,0 +1,104 @@
+package com.bitfracture.huffman;
+
+import com.bitfracture.serial.BitWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encodes data into the indexed format, which can be decoded from any frame onward, or on several threads at once,
+ * using IndexedDecoder. It can also be decoded sequentially by HuffmanTranslator.decode().
+ *
+ * The format is laid out as:
+ *  - The 4-byte header 'HUF\3' followed by the packed canonical code lengths.
+ *  - A sequence of frames. Each holds a whole number of symbols, so no code crosses from one frame to the next. A
+ *    frame begins with a 16-byte header (encoded length: int, uncompressed offset: long, uncompressed length: int)
+ *    followed by its encoded length in bytes of serialized BitBlocks.
+ *  - A 4-byte zero, marking the end of the frames.
+ *  - The index: one 20-byte entry per frame (frame position: long, uncompressed offset: long, uncompressed length:
+ *    int).
+ *  - A 16-byte footer (index position: long, frame count: int, the header 'HUF\3' again).
+ * All integers are little endian.
+ */
+public class IndexedEncoder {
+    public static final int DEFAULT_FRAME_SIZE = 1024 * 1024;
+    static final int FRAME_HEADER_SIZE = 16;
+    static final int INDEX_ENTRY_SIZE = 20;
+    static final int FOOTER_SIZE = 16;
+
+    private int frameSize;
+
+    /**
+     * @param frameSize  The number of input bytes in each frame, the unit of random access
+     */
+    public IndexedEncoder(int frameSize) {
+        if (frameSize < 1) {
+            throw new IllegalArgumentException("Frame size must be positive");
+        }
+        this.frameSize = frameSize;
+    }
+
+    /**
+     * Encodes the data in 'rawData' using the given 'encodingTree'.
+     *
+     * @throws IllegalArgumentException  If the tree is not canonical
+     * @throws IOException  If reading or writing fails
+     */
+    public void encode(HuffmanTree encodingTree, InputStream rawData, OutputStream encodedData) throws IOException {
+        CanonicalCode code = encodingTree.getCanonicalCode()
+                .orElseThrow(() -> new IllegalArgumentException("The indexed format requires a canonical tree"));
+        byte[] codeSerial = code.toSerial();
+        encodedData.write(HuffmanTranslator.INDEXED_HEADER);
+        encodedData.write(codeSerial);
+        long position = HuffmanTranslator.INDEXED_HEADER.length + codeSerial.length;
+
+        HuffmanEncodeTable table = HuffmanEncodeTable.fromCanonical(code);
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        ByteBuffer frameHeader = ByteBuffer.allocate(FRAME_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        List<long[]> index = new ArrayList<>();
+        byte[] frame = new byte[frameSize];
+        long uncompressedOffset = 0;
+        for (int length; (length = readFrame(rawData, frame)) > 0;) {
+            payload.reset();
+            BitWriter writer = new BitWriter(payload);
+            table.encode(frame, 0, length, writer);
+            writer.finish();
+
+            frameHeader.clear();
+            frameHeader.putInt(payload.size()).putLong(uncompressedOffset).putInt(length);
+            encodedData.write(frameHeader.array());
+            payload.writeTo(encodedData);
+
+            index.add(new long[] {position, uncompressedOffset, length});
+            position += FRAME_HEADER_SIZE + payload.size();
+            uncompressedOffset += length;
+        }
+
+        //Mark the end of the frames, then write the index and the footer that locates it
+        ByteBuffer tail = ByteBuffer.allocate(4 + index.size() * INDEX_ENTRY_SIZE + FOOTER_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        tail.putInt(0);
+        for (long[] entry : index) {
+            tail.putLong(entry[0]).putLong(entry[1]).putInt((int)entry[2]);
+        }
+        tail.putLong(position + 4).putInt(index.size()).put(HuffmanTranslator.INDEXED_HEADER);
+        encodedData.write(tail.array());
+    }
+
+    /**
+     * @return  The number of bytes read into 'frame', which is only less than its length at the end of the input
+     */
+    static int readFrame(InputStream rawData, byte[] frame) throws IOException {
+        int length = 0;
+        for (int read; length < frame.length && (read = rawData.read(frame, length, frame.length - length)) >= 0;) {
+            length += read;
+        }
+        return length;
+    }
+}
@@ -0,0 +1,67 @@
+package com.bitfracture.huffman;
+
+import com.bitfracture.serial.VarInt;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Encodes data into the interleaved format, in which each frame's symbols are dealt round-robin into four independent
+ * bit streams. Decoding a single stream is a chain in which every code's length must be known before the next code
+ * can be found; with four streams, the decoder follows four chains at once and keeps the CPU's pipeline full. It is
+ * decoded by HuffmanTranslator.decode().
+ *
+ * The format is laid out as:
+ *  - The 4-byte header 'HUF\6' followed by the packed canonical code lengths.
+ *  - A sequence of frames. Each begins with its uncompressed length and the length in bytes of each of its four
+ *    streams (all VarInts), followed by the four streams one after another. Symbol i of the frame is in stream i % 4,
+ *    and each stream is plain bytes, first bit in the least significant position, padded with zeros to a whole byte.
+ *  - A zero uncompressed length (a single byte), marking the end of the frames.
+ */
+public class InterleavedEncoder {
+    public static final int DEFAULT_FRAME_SIZE = 256 * 1024;
+    static final int STREAMS = 4;
+
+    private int frameSize;
+
+    /**
+     * @param frameSize  The number of input bytes in each frame
+     */
+    public InterleavedEncoder(int frameSize) {
+        if (frameSize < 1) {
+            throw new IllegalArgumentException("Frame size must be positive");
+        }
+        this.frameSize = frameSize;
+    }
+
+    /**
+     * Encodes the data in 'rawData' using the given 'encodingTree'.
+     *
+     * @throws IllegalArgumentException  If the tree is not canonical
+     * @throws IOException  If reading or writing fails
+     */
+    public void encode(HuffmanTree encodingTree, InputStream rawData, OutputStream encodedData) throws IOException {
+        CanonicalCode code = encodingTree.getCanonicalCode()
+                .orElseThrow(() -> new IllegalArgumentException("The interleaved format requires a canonical tree"));
+        encodedData.write(HuffmanTranslator.INTERLEAVED_HEADER);
+        encodedData.write(code.toSerial());
+
+        HuffmanEncodeTable table = HuffmanEncodeTable.fromCanonical(code);
+        byte[] frame = new byte[frameSize];
+        int streamCapacity = (int)(((long)(frameSize / STREAMS + 1) * code.getMaxLength() + Byte.SIZE - 1) / Byte.SIZE);
+        byte[][] streams = new byte[STREAMS][streamCapacity];
+        int[] streamLengths = new int[STREAMS];
+        for (int length; (length = IndexedEncoder.readFrame(rawData, frame)) > 0;) {
+            table.encodeInterleaved(frame, 0, length, streams, streamLengths);
+            VarInt.write(encodedData, length);
+            for (int streamLength : streamLengths) {
+                VarInt.write(encodedData, streamLength);
+            }
+            for (int stream = 0; stream < STREAMS; stream++) {
+                encodedData.write(streams[stream], 0, streamLengths[stream]);
+            }
+        }
+        VarInt.write(encodedData, 0);
+    }
+}
@@ -0,0 +1,76 @@
+package com.bitfracture.huffman;
+
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * Computes optimal code lengths subject to a maximum length, using the package-merge algorithm. Conceptually, each
+ * symbol is offered once per allowed bit of length as a "coin" worth its weight. Starting from the deepest level, the
+ * cheapest coins are paired into packages which are merged with the next level's coins, and so on. Choosing the 2n - 2
+ * cheapest items at the top level then gives each symbol a code length equal to the number of its coins chosen.
+ */
+class PackageMerge {
+    private PackageMerge() {}
+
+    /**
+     * @param symbols  The symbols to assign lengths to (at least two)
+     * @param weights  The weight of every symbol, indexed by symbol
+     * @param maxLength  The longest code length permitted
+     * @return  The code length of every symbol, indexed by symbol (0 for symbols not listed)
+     * @throws IllegalArgumentException  If the symbols cannot all be given codes within maxLength bits
+     */
+    static int[] codeLengths(int[] symbols, long[] weights, int maxLength) {
+        int n = symbols.length;
+        if (n < 2 || maxLength < 1 || (maxLength < Integer.SIZE - 1 && n > (1 << maxLength))) {
+            throw new IllegalArgumentException(
+                    String.format("%d symbols cannot be given codes of at most %d bits", n, maxLength));
+        }
+
+        //Sort the leaves by weight, lightest first
+        int[] leaves = IntStream.of(symbols).boxed()
+                .sorted(Comparator.comparingLong(symbol -> weights[symbol]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+
+        //Build each level's list, deepest first. A negative entry is a package of the previous level's items 2k and
+        //2k+1, where k = -(entry + 1); any other entry is an index into 'leaves'.
+        int[][] items = new int[maxLength][];
+        long[] previousWeights = null;
+        for (int level = 0; level < maxLength; level++) {
+            int packages = level == 0 ? 0 : items[level - 1].length / 2;
+            items[level] = new int[n + packages];
+            long[] levelWeights = new long[n + packages];
+            int leaf = 0;
+            int pkg = 0;
+            for (int i = 0; i < levelWeights.length; i++) {
+                long packageWeight = pkg < packages
+                        ? previousWeights[2 * pkg] + previousWeights[2 * pkg + 1]
+                        : Long.MAX_VALUE;
+                if (leaf < n && weights[leaves[leaf]] <= packageWeight) {
+                    levelWeights[i] = weights[leaves[leaf]];
+                    items[level][i] = leaf++;
+                } else {
+                    levelWeights[i] = packageWeight;
+                    items[level][i] = -(pkg++ + 1);
+                }
+            }
+            previousWeights = levelWeights;
+        }
+
+        //Select the cheapest 2n - 2 items at the top, then walk down through the packages they contain
+        int[] lengths = new int[weights.length];
+        int selected = 2 * n - 2;
+        for (int level = maxLength - 1; level >= 0; level--) {
+            int packages = 0;
+            for (int i = 0; i < selected; i++) {
+                if (items[level][i] < 0) {
+                    packages++;
+                } else {
+                    lengths[leaves[items[level][i]]]++;
+                }
+            }
+            selected = 2 * packages;
+        }
+        return lengths;
+    }
+}
@@ -0,0 +1,257 @@
+package com.bitfracture.huffman;
+
+import com.bitfracture.metrics.Metrics;
+import com.bitfracture.metrics.Phase;
+import com.bitfracture.serial.BitBlock;
+import com.bitfracture.serial.BitReader;
+import com.bitfracture.serial.BitWriter;
+import com.bitfracture.serial.VarInt;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * A code over 16-bit symbols, for data such as UTF-16 text or 16-bit samples whose bytes are far more predictable in
+ * pairs than alone. The data is read as aligned pairs of bytes, and the most frequent pairs are added to the alphabet
+ * as symbols 256 and up, each with a code of its own. Any other pair is coded as its two bytes, and an odd final byte
+ * on its own. Decoding a pair symbol emits both of its bytes from a single table lookup.
+ *
+ * How many pairs to add is chosen by trying 0, 16, 64, 256, 1024 and 4096 of the most frequent pairs and keeping
+ * whichever gives the smallest output, headers included. The counts of every alphabet follow exactly from the counts
+ * of the aligned pairs, so each choice is costed without another pass over the data. A model with no pairs is the same
+ * as an order-0 code.
+ *
+ * The serialized model is the number of pairs (a VarInt), each pair as its two bytes in order, then the packed code
+ * lengths of all 256 + pairs symbols.
+ */
+public class PairModel {
+    static final int PAIR_VALUES = 1 << 16;
+    static final int MAX_PAIRS = 4096;
+    private static final int[] PAIR_CHOICES = {0, 16, 64, 256, 1024, MAX_PAIRS};
+    //Fewer occurrences than this cannot repay the header space a pair takes
+    private static final int MIN_PAIR_COUNT = 4;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private int[] pairs;
+    private CanonicalCode code;
+
+    private PairModel() {}
+
+    /**
+     * @return  The number of byte pairs with a symbol of their own
+     */
+    public int getPairCount() {
+        return pairs.length;
+    }
+
+    CanonicalCode getCode() {
+        return code;
+    }
+
+    /**
+     * Builds a model from every byte remaining in a stream.
+     *
+     * @param data  The data to be encoded, read until its end
+     * @throws IOException  If the stream fails
+     */
+    public static PairModel fromStream(InputStream data) throws IOException {
+        long start = Metrics.start();
+        long[] pairCounts = new long[PAIR_VALUES];
+        long[] byteCounts = new long[CanonicalCode.SYMBOL_COUNT];
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long total = 0;
+        int carried = 0;
+        for (int read; (read = data.read(buffer, carried, buffer.length - carried)) >= 0;) {
+            int end = carried + read;
+            int i = 0;
+            for (; i + 1 < end; i += 2) {
+                pairCounts[(buffer[i] & 0xFF) << 8 | (buffer[i + 1] & 0xFF)]++;
+            }
+            carried = end - i;
+            if (carried > 0) {
+                buffer[0] = buffer[i];
+            }
+            total += read;
+        }
+        if (carried > 0) {
+            byteCounts[buffer[0] & 0xFF]++;
+        }
+        Metrics.phaseCompleted(Phase.HISTOGRAM, start, total);
+        return fromCounts(pairCounts, byteCounts);
+    }
+
+    /**
+     * @param pairCounts  The number of times each aligned pair occurs, indexed by its first byte * 256 + its second
+     * @param byteCounts  The counts of any bytes which are not part of an aligned pair, indexed by byte value
+     */
+    static PairModel fromCounts(long[] pairCounts, long[] byteCounts) {
+        int[] candidates = IntStream.range(0, PAIR_VALUES)
+                .filter(pair -> pairCounts[pair] >= MIN_PAIR_COUNT)
+                .boxed()
+                .sorted(Comparator.comparingLong((Integer pair) -> pairCounts[pair]).reversed()
+                        .thenComparingInt(Integer::intValue))
+                .mapToInt(Integer::intValue)
+                .toArray();
+
+        PairModel best = null;
+        long bestSize = Long.MAX_VALUE;
+        for (int choice : PAIR_CHOICES) {
+            int count = Math.min(choice, candidates.length);
+            if (best != null && count == best.pairs.length) {
+                continue;
+            }
+            int[] pairs = Arrays.copyOf(candidates, count);
+            Arrays.sort(pairs);
+            long[] weights = symbolCounts(pairs, pairCounts, byteCounts);
+            PairModel model = new PairModel();
+            model.pairs = pairs;
+            model.code = CanonicalCode.fromLengths(HuffmanTree.codeLengths(weights, CanonicalCode.MAX_CODE_LENGTH));
+            long size = model.encodedSize(weights);
+            if (size < bestSize) {
+                best = model;
+                bestSize = size;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return  The counts of every symbol of the alphabet extended with 'pairs', when the counted data is coded with it
+     */
+    private static long[] symbolCounts(int[] pairs, long[] pairCounts, long[] byteCounts) {
+        long[] weights = Arrays.copyOf(byteCounts, CanonicalCode.SYMBOL_COUNT + pairs.length);
+        int[] symbolOf = symbolMap(pairs);
+        for (int pair = 0; pair < PAIR_VALUES; pair++) {
+            if (pairCounts[pair] == 0) {
+                continue;
+            }
+            if (symbolOf[pair] >= 0) {
+                weights[symbolOf[pair]] += pairCounts[pair];
+            } else {
+                weights[pair >>> 8] += pairCounts[pair];
+                weights[pair & 0xFF] += pairCounts[pair];
+            }
+        }
+        return weights;
+    }
+
+    /**
+     * @return  The symbol of every pair value, or -1 for pairs without one
+     */
+    private static int[] symbolMap(int[] pairs) {
+        int[] symbolOf = new int[PAIR_VALUES];
+        Arrays.fill(symbolOf, -1);
+        for (int i = 0; i < pairs.length; i++) {
+            symbolOf[pairs[i]] = CanonicalCode.SYMBOL_COUNT + i;
+        }
+        return symbolOf;
+    }
+
+    /**
+     * @return  The number of bytes the model and the counted data would take once encoded
+     */
+    private long encodedSize(long[] weights) {
+        long bits = 0;
+        for (int symbol = 0; symbol < weights.length; symbol++) {
+            bits += weights[symbol] * code.getLength(symbol);
+        }
+        return toSerial().length + BitBlock.serialSize(bits);
+    }
+
+    /**
+     * Encodes every byte remaining in rawData, a pair at a time. The writer is not finished, so that more bits may
+     * follow.
+     *
+     * @throws IOException  If rawData cannot be read or the writer fails
+     * @throws IllegalArgumentException  If rawData holds a byte value that has no code, and is not part of a pair
+     *     which has one
+     */
+    void encode(InputStream rawData, BitWriter writer) throws IOException {
+        HuffmanEncodeTable table = HuffmanEncodeTable.fromCanonical(code);
+        int[] symbolOf = symbolMap(pairs);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int carried = 0;
+        for (int read; (read = rawData.read(buffer, carried, buffer.length - carried)) >= 0;) {
+            long start = Metrics.start();
+            int end = carried + read;
+            int i = 0;
+            for (; i + 1 < end; i += 2) {
+                int first = buffer[i] & 0xFF;
+                int second = buffer[i + 1] & 0xFF;
+                int symbol = symbolOf[first << 8 | second];
+                if (symbol >= 0) {
+                    write(table, symbol, writer);
+                } else {
+                    write(table, first, writer);
+                    write(table, second, writer);
+                }
+            }
+            carried = end - i;
+            if (carried > 0) {
+                buffer[0] = buffer[i];
+            }
+            Metrics.phaseCompleted(Phase.ENCODE, start, read);
+        }
+        if (carried > 0) {
+            write(table, buffer[0] & 0xFF, writer);
+        }
+    }
+
+    private static void write(HuffmanEncodeTable table, int symbol, BitWriter writer) throws IOException {
+        int codeLength = table.getLength(symbol);
+        if (codeLength == 0) {
+            throw new IllegalArgumentException("Byte value " + symbol + " has no code in the pair model");
+        }
+        writer.write(table.getPath(symbol) & 0xFFFFFFFFL, codeLength);
+    }
+
+    /**
+     * Decodes every bit available from the reader.
+     *
+     * @throws IOException  If rawData cannot be written
+     */
+    void decode(BitReader reader, OutputStream rawData) throws IOException {
+        HuffmanDecodeTable.fromCanonical(code, pairs).decode(reader, rawData);
+    }
+
+    byte[] toSerial() {
+        ByteArrayOutputStream serial = new ByteArrayOutputStream();
+        try {
+            VarInt.write(serial, pairs.length);
+            for (int pair : pairs) {
+                serial.write(pair >>> 8);
+                serial.write(pair);
+            }
+            serial.write(code.toSerial());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return serial.toByteArray();
+    }
+
+    /**
+     * Reads a model written by toSerial().
+     *
+     * @throws IOException  If the stream fails, ends early, or holds an invalid model
+     */
+    static PairModel fromSerialStream(DataInputStream serial) throws IOException {
+        int count = VarInt.readInt(serial);
+        if (count < 0 || count > MAX_PAIRS) {
+            throw new IOException("Pair count is out of range: " + count);
+        }
+        PairModel model = new PairModel();
+        model.pairs = new int[count];
+        for (int i = 0; i < count; i++) {
+            model.pairs[i] = serial.readUnsignedShort();
+        }
+        model.code = CanonicalCode.fromSerialStream(serial, CanonicalCode.SYMBOL_COUNT + count);
+        return model;
+    }
+}
@@ -0,0 +1,118 @@
+package com.bitfracture.huffman;
+
+import com.bitfracture.serial.BitBlock;
+import com.bitfracture.serial.BitWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Encodes large inputs on several threads. The input is read sequentially in chunks, and each chunk is encoded into
+ * its own run of BitBlocks on the executor. Encoded chunks are written in input order as soon as each is ready. At
+ * most maxInFlight chunks are held in memory at once; reading waits for the oldest chunk to be written when the limit
+ * is reached.
+ *
+ * Each chunk ends with a partially filled block, which the decoder treats like any other block, so the output is
+ * decoded by HuffmanTranslator.decode() exactly like that of HuffmanTranslator.encode(). Given a frame size, it writes
+ * the framed format instead, with each chunk ending in a partially filled frame.
+ */
+public class ParallelEncoder {
+    public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    private ExecutorService executor;
+    private int chunkSize;
+    private int maxInFlight;
+    private int frameSize;
+
+    /**
+     * @param executor  The executor chunks are encoded on
+     * @param chunkSize  The number of input bytes in each chunk
+     * @param maxInFlight  The most chunks that may be read but not yet written at once
+     */
+    public ParallelEncoder(ExecutorService executor, int chunkSize, int maxInFlight) {
+        this(executor, chunkSize, maxInFlight, 0);
+    }
+
+    /**
+     * @param frameSize  The frame size of the framed format, as for HuffmanTranslator.encode(), or 0 for BitBlocks
+     * @throws IllegalArgumentException  If the frame size is neither 0 nor valid for BitBlock.checkFrameSize()
+     */
+    public ParallelEncoder(ExecutorService executor, int chunkSize, int maxInFlight, int frameSize) {
+        if (chunkSize < 1 || maxInFlight < 1) {
+            throw new IllegalArgumentException("Chunk size and chunks in flight must both be positive");
+        }
+        if (frameSize != 0) {
+            BitBlock.checkFrameSize(frameSize);
+        }
+        this.executor = executor;
+        this.chunkSize = chunkSize;
+        this.maxInFlight = maxInFlight;
+        this.frameSize = frameSize;
+    }
+
+    /**
+     * Encodes the data in 'rawData' using the given 'encodingTree', in the same format as HuffmanTranslator.encode().
+     *
+     * @throws IOException  If reading, writing, or any chunk's encoding fails
+     */
+    public void encode(HuffmanTree encodingTree, InputStream rawData, OutputStream encodedData) throws IOException {
+        if (frameSize == 0) {
+            HuffmanTranslator.writeHeader(encodingTree, encodedData);
+        } else {
+            HuffmanTranslator.writeFramedHeader(encodingTree, frameSize, encodedData);
+        }
+        HuffmanEncodeTable table = HuffmanEncodeTable.fromTree(encodingTree);
+
+        Deque<Future<byte[]>> inFlight = new ArrayDeque<>();
+        try {
+            for (byte[] chunk; (chunk = readChunk(rawData)).length > 0;) {
+                if (inFlight.size() >= maxInFlight) {
+                    encodedData.write(inFlight.removeFirst().get());
+                }
+                byte[] data = chunk;
+                inFlight.addLast(executor.submit(() -> encodeChunk(table, data, frameSize)));
+            }
+            while (!inFlight.isEmpty()) {
+                encodedData.write(inFlight.removeFirst().get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a chunk to be encoded", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)e.getCause();
+            }
+            throw new IOException("A chunk failed to encode", e.getCause());
+        } finally {
+            inFlight.forEach(future -> future.cancel(true));
+        }
+    }
+
+    private static byte[] encodeChunk(HuffmanEncodeTable table, byte[] chunk, int frameSize) throws IOException {
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream(chunk.length);
+        BitWriter writer = frameSize == 0 ? new BitWriter(encoded) : new BitWriter(encoded, frameSize);
+        table.encode(chunk, 0, chunk.length, writer);
+        writer.finish();
+        return encoded.toByteArray();
+    }
+
+    /**
+     * @return  The next chunk, which is only shorter than chunkSize at the end of the input (and empty after it)
+     */
+    private byte[] readChunk(InputStream rawData) throws IOException {
+        byte[] chunk = new byte[chunkSize];
+        int length = 0;
+        for (int read; length < chunkSize && (read = rawData.read(chunk, length, chunkSize - length)) >= 0;) {
+            length += read;
+        }
+        return length == chunkSize ? chunk : Arrays.copyOf(chunk, length);
+    }
+}
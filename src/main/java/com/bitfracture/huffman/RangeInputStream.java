@@ -0,0 +1,49 @@
+package com.bitfracture.huffman;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a range of a channel with positional reads, so that many can read the same channel at once, and the channel's
+ * own position is left alone.
+ */
+class RangeInputStream extends InputStream {
+    private final FileChannel channel;
+    private long position;
+    private final long end;
+
+    RangeInputStream(FileChannel channel, long position, long length) {
+        this.channel = channel;
+        this.position = position;
+        this.end = position + length;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (position >= end) {
+            return -1;
+        }
+        int read = channel.read(ByteBuffer.wrap(buffer, offset, (int)Math.min(length, end - position)), position);
+        if (read < 0) {
+            throw new EOFException("The file ended before the expected data");
+        }
+        position += read;
+        return read;
+    }
+
+    /**
+     * @return  The position in the channel of the next byte to be read
+     */
+    long getPosition() {
+        return position;
+    }
+}
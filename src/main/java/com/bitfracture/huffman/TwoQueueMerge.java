@@ -0,0 +1,89 @@
+package com.bitfracture.huffman;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * Computes optimal (unbounded) code lengths in linear time once the leaves are sorted, without creating any node
+ * objects. The tree lives in parallel primitive arrays: nodes 0 to n - 1 are the leaves, lightest first, and nodes n
+ * to 2n - 2 are the branches in the order they are made. Each node's weight is stored when it is made, and since
+ * every branch is at least as heavy as the one made before it, the branches form a second sorted queue. The two
+ * lightest nodes are therefore always at the front of the two queues, and each merge takes constant time.
+ */
+class TwoQueueMerge {
+    //Leaves are sorted on their weight and symbol packed into one long, while the weights leave room for the symbol
+    private static final int SYMBOL_BITS = 16;
+    private static final long MAX_PACKED_WEIGHT = Long.MAX_VALUE >>> SYMBOL_BITS;
+
+    private TwoQueueMerge() {}
+
+    /**
+     * @param symbols  The symbols to assign lengths to (at least two)
+     * @param weights  The weight of every symbol, indexed by symbol
+     * @return  The code length of every symbol, indexed by symbol (0 for symbols not listed), for as many symbols as
+     *     there are weights
+     * @throws IllegalArgumentException  If fewer than two symbols are given
+     */
+    static int[] codeLengths(int[] symbols, long[] weights) {
+        int n = symbols.length;
+        if (n < 2) {
+            throw new IllegalArgumentException(String.format("%d symbols cannot be given codes", n));
+        }
+
+        int[] leaves = sortByWeight(symbols, weights);
+        long[] nodeWeights = new long[2 * n - 1];
+        int[] parents = new int[2 * n - 1];
+        for (int i = 0; i < n; i++) {
+            nodeWeights[i] = weights[leaves[i]];
+        }
+
+        //Take the two lightest nodes from the fronts of the leaf and branch queues, preferring leaves on a tie so that
+        //the tree stays as shallow as possible
+        int nextLeaf = 0;
+        int nextBranch = n;
+        for (int branch = n; branch < 2 * n - 1; branch++) {
+            for (int child = 0; child < 2; child++) {
+                int node = nextLeaf < n && (nextBranch == branch || nodeWeights[nextLeaf] <= nodeWeights[nextBranch])
+                        ? nextLeaf++
+                        : nextBranch++;
+                nodeWeights[branch] += nodeWeights[node];
+                parents[node] = branch;
+            }
+        }
+
+        //Every parent is made after its children, so walking back from the root gives each node its depth in one pass
+        int[] depths = new int[2 * n - 1];
+        for (int node = 2 * n - 3; node >= 0; node--) {
+            depths[node] = depths[parents[node]] + 1;
+        }
+        int[] lengths = new int[weights.length];
+        for (int i = 0; i < n; i++) {
+            lengths[leaves[i]] = depths[i];
+        }
+        return lengths;
+    }
+
+    /**
+     * @return  The symbols in order of weight, lightest first, with ties in order of symbol
+     */
+    private static int[] sortByWeight(int[] symbols, long[] weights) {
+        if (IntStream.of(symbols).anyMatch(symbol -> weights[symbol] > MAX_PACKED_WEIGHT)) {
+            return IntStream.of(symbols).boxed()
+                    .sorted(Comparator.<Integer>comparingLong(symbol -> weights[symbol])
+                            .thenComparingInt(Integer::intValue))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+        }
+        long[] keys = new long[symbols.length];
+        for (int i = 0; i < symbols.length; i++) {
+            keys[i] = weights[symbols[i]] << SYMBOL_BITS | symbols[i];
+        }
+        Arrays.sort(keys);
+        int[] sorted = new int[symbols.length];
+        for (int i = 0; i < keys.length; i++) {
+            sorted[i] = (int)(keys[i] & ((1 << SYMBOL_BITS) - 1));
+        }
+        return sorted;
+    }
+}
@@ -0,0 +1,114 @@
+package com.bitfracture.huffmanrunner;
+
+import com.bitfracture.huffman.Histogram;
+import com.bitfracture.serial.RingInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The data to compress, which is a file, an array, or a stream such as stdin. Files and arrays can be read any number
+ * of times; a stream can only be read once, so it can only be compressed by the modes which read their input once.
+ */
+class Input {
+    private final Path file;
+    private final byte[] data;
+    private InputStream stream;
+    private ExecutorService readAhead;
+    private long bytesRead = 0;
+
+    private Input(Path file, byte[] data, InputStream stream) {
+        this.file = file;
+        this.data = data;
+        this.stream = stream;
+    }
+
+    static Input ofFile(Path file) {
+        return new Input(file, null, null);
+    }
+
+    static Input ofBytes(byte[] data) {
+        return new Input(null, data, null);
+    }
+
+    static Input ofStream(InputStream stream) {
+        return new Input(null, null, stream);
+    }
+
+    /**
+     * Makes open() read files and streams ahead on a thread from 'executor', or reverts to reading them on the
+     * caller's thread when it is null. Arrays are always read directly, as they are already in memory.
+     */
+    void setReadAhead(ExecutorService executor) {
+        this.readAhead = executor;
+    }
+
+    /**
+     * @return  A new stream over the whole of the data, buffered with 'bufferSize' bytes
+     * @throws IllegalStateException  If the data is a stream which has already been read
+     */
+    InputStream open(int bufferSize) throws IOException {
+        InputStream source;
+        if (data != null) {
+            source = new ByteArrayInputStream(data);
+        } else if (file != null) {
+            source = buffer(Files.newInputStream(file), bufferSize);
+        } else if (stream != null) {
+            source = buffer(stream, bufferSize);
+            stream = null;
+        } else {
+            throw new IllegalStateException("The input stream can only be read once");
+        }
+        bytesRead = 0;
+        return new FilterInputStream(source) {
+            @Override
+            public int read() throws IOException {
+                int byt = super.read();
+                bytesRead += byt < 0 ? 0 : 1;
+                return byt;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                int read = super.read(buffer, offset, length);
+                bytesRead += Math.max(read, 0);
+                return read;
+            }
+        };
+    }
+
+    private InputStream buffer(InputStream in, int bufferSize) {
+        if (readAhead != null) {
+            return new RingInputStream(in, readAhead, bufferSize, RingInputStream.DEFAULT_BUFFER_COUNT);
+        }
+        return new BufferedInputStream(in, bufferSize);
+    }
+
+    /**
+     * @return  The byte counts of the whole of the data, counted on 'pool'
+     */
+    Histogram histogram(ForkJoinPool pool, int bufferSize) throws IOException {
+        if (file != null) {
+            return Histogram.fromFile(file, pool);
+        } else if (data != null) {
+            return Histogram.fromBytes(data, pool);
+        }
+        try (InputStream in = open(bufferSize)) {
+            return Histogram.fromStream(in);
+        }
+    }
+
+    /**
+     * @return  The number of bytes read from the most recently opened stream
+     */
+    long getBytesRead() {
+        return bytesRead;
+    }
+}
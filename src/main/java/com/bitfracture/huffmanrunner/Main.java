@@ -1,37 +1,410 @@
 package com.bitfracture.huffmanrunner;
 
+import com.bitfracture.huffman.ArchiveEntry;
+import com.bitfracture.huffman.ArchiveReader;
+import com.bitfracture.huffman.ArchiveWriter;
 import com.bitfracture.huffman.HuffmanTranslator;
-import com.bitfracture.huffman.HuffmanTree;
+import com.bitfracture.serial.RingOutputStream;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileDescriptor;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.Scanner;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
 
+/**
+ * The command line. Every command is non-interactive, so the tool can be scripted and used in pipelines: '-' (or a
+ * missing operand) names stdin or stdout, and statistics are written to stderr so they never mix with piped data.
+ */
 public class Main {
-    public static void main(String[] args) throws IOException {
-        //Get an input file name to compress
-        Scanner scanner = new Scanner(System.in);
-        System.out.print("Type or drop a file to compress: ");
-        String inputFilePath = scanner.nextLine();
-        String outputFilePath = inputFilePath + ".huff";
-
-        //Create a Huffman tree from the data in the entire file (most optimal, also most time consuming)
-        InputStream rawFileIn = new FileInputStream(inputFilePath);
-        HuffmanTree encodingTree = HuffmanTranslator.generateTree(rawFileIn);
-        rawFileIn.close();
-
-        //Translate the raw file using the huffman translator
-        rawFileIn = new FileInputStream(inputFilePath);
-        OutputStream encodedFileOut = new FileOutputStream(outputFilePath);
-        HuffmanTranslator.encode(encodingTree, rawFileIn, encodedFileOut);
-        rawFileIn.close();
-        encodedFileOut.close();
-
-        //Decode the file using the huffman translator
-        OutputStream decodeStream = new FileOutputStream("decode.txt");
-        HuffmanTranslator.decode(new FileInputStream(outputFilePath), decodeStream);
+    private static final String SUFFIX = ".huff";
+    private static final double MEGABYTE = 1024 * 1024;
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: huffman <command> [options] [operands]",
+            "",
+            "Commands:",
+            "  compress [input [output]]      Compress a file (default output <input>" + SUFFIX + ") or stdin",
+            "  decompress [input [output]]    Decompress a file (default output <input> without " + SUFFIX
+                    + ") or stdin",
+            "  test [input]...                Check that compressed files decode, without writing anything",
+            "  bench <input>                  Compress and decompress a file in memory, reporting speed and size",
+            "  archive <archive> <path>...    Archive files and directories, compressing them in parallel",
+            "  extract <archive> <dir> [entry]...  Extract all entries, or only those named",
+            "",
+            "Options:",
+            "  -m, --mode <mode>       Format to compress to: " + Mode.names() + " (default parallel,",
+            "                          or sampled for stdin)",
+            "  -t, --threads <n>       Threads to compress with (default: one per processor)",
+            "  -b, --block-size <size> Input bytes per block, for modes which split their input",
+            "  --buffer-size <size>    Bytes of buffering for file and pipe I/O (default 1M)",
+            "  --sample-size <size>    Input bytes the sampled mode builds its first code from (default 1M)",
+            "  --frame-size <size>     Encoded bytes per frame for the standard and parallel modes, a multiple of 4",
+            "                          up to 16M (default 256K)",
+            "  -p, --pipeline          Read ahead and write behind on threads of their own, overlapping I/O with",
+            "                          compression (buffers of --buffer-size)",
+            "  -n, --iterations <n>    Timed runs for bench, after one warm-up run (default "
+                    + Options.DEFAULT_ITERATIONS + ")",
+            "  -q, --quiet             Do not report statistics",
+            "Sizes may have a K, M or G suffix.");
+
+    public static void main(String[] args) {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        try {
+            switch (options.getCommand()) {
+                case "compress":
+                    compress(options);
+                    break;
+                case "decompress":
+                    decompress(options);
+                    break;
+                case "test":
+                    if (!test(options)) {
+                        System.exit(1);
+                    }
+                    break;
+                case "bench":
+                    bench(options);
+                    break;
+                case "archive":
+                    archive(options);
+                    break;
+                case "extract":
+                    extract(options);
+                    break;
+                case "help":
+                case "-h":
+                case "--help":
+                    System.out.println(USAGE);
+                    break;
+                default:
+                    System.err.println("Unknown command: " + options.getCommand());
+                    System.err.println(USAGE);
+                    System.exit(2);
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+        } catch (IOException | RuntimeException e) {
+            System.err.println(options.getCommand() + " failed: " + e);
+            System.exit(1);
+        }
+    }
+
+    private static void compress(Options options) throws IOException {
+        String inputName = options.getOperand(0, "-");
+        String outputName = options.getOperand(1, inputName.equals("-") ? "-" : inputName + SUFFIX);
+        Input input = inputName.equals("-") ? Input.ofStream(System.in) : Input.ofFile(Paths.get(inputName));
+        if (inputName.equals("-") && options.getMode().isTwoPass()) {
+            throw new IllegalArgumentException("The " + options.getMode().name().toLowerCase(Locale.ROOT)
+                    + " mode reads its input twice, so it cannot compress stdin; give a file, or use a single pass mode"
+                    + " such as sampled or adaptive");
+        }
+
+        long start = System.nanoTime();
+        CountingOutputStream out;
+        try (Mode.Resources resources = new Mode.Resources(options.getThreads())) {
+            pipeline(input, options, resources);
+            out = new CountingOutputStream(openOutput(outputName, options, resources.io));
+            try {
+                options.getMode().encode(input, out, options, resources);
+            } finally {
+                out.close();
+            }
+        }
+        report(options, "compress", input.getBytesRead(), out.getCount(), input.getBytesRead(),
+                System.nanoTime() - start);
+    }
+
+    private static void decompress(Options options) throws IOException {
+        String inputName = options.getOperand(0, "-");
+        String outputName = options.getOperand(1, null);
+        if (outputName == null) {
+            if (inputName.equals("-")) {
+                outputName = "-";
+            } else if (inputName.endsWith(SUFFIX) && inputName.length() > SUFFIX.length()) {
+                outputName = inputName.substring(0, inputName.length() - SUFFIX.length());
+            } else {
+                throw new IllegalArgumentException("Give an output name, as " + inputName + " does not end in "
+                        + SUFFIX);
+            }
+        }
+
+        long start = System.nanoTime();
+        Input input = inputName.equals("-") ? Input.ofStream(System.in) : Input.ofFile(Paths.get(inputName));
+        CountingOutputStream out;
+        try (Mode.Resources resources = new Mode.Resources(1)) {
+            pipeline(input, options, resources);
+            out = new CountingOutputStream(openOutput(outputName, options, resources.io));
+            try (InputStream in = input.open(options.getBufferSize())) {
+                HuffmanTranslator.decode(in, out);
+            } finally {
+                out.close();
+            }
+        }
+        report(options, "decompress", input.getBytesRead(), out.getCount(), out.getCount(),
+                System.nanoTime() - start);
+    }
+
+    /**
+     * Decodes each input, discarding the output.
+     *
+     * @return  Whether every input decoded successfully
+     */
+    private static boolean test(Options options) throws IOException {
+        List<String> inputs = options.getOperands().isEmpty() ? Collections.singletonList("-")
+                : options.getOperands();
+        boolean passed = true;
+        for (String inputName : inputs) {
+            long start = System.nanoTime();
+            Input input = inputName.equals("-") ? Input.ofStream(System.in) : Input.ofFile(Paths.get(inputName));
+            CountingOutputStream discard = discard();
+            try (InputStream in = input.open(options.getBufferSize())) {
+                HuffmanTranslator.decode(in, discard);
+                report(options, "test " + inputName, input.getBytesRead(), discard.getCount(), discard.getCount(),
+                        System.nanoTime() - start);
+            } catch (IOException | RuntimeException e) {
+                System.err.println(inputName + ": FAILED: " + e);
+                passed = false;
+            }
+        }
+        return passed;
+    }
+
+    /**
+     * Compresses and decompresses the input in memory, once to warm up and then the given number of times, and
+     * reports the mean speed of each, the ratio, and the bytes allocated by each run across every thread.
+     */
+    private static void bench(Options options) throws IOException {
+        if (options.getOperands().size() != 1) {
+            throw new IllegalArgumentException("bench takes exactly one input");
+        }
+        String inputName = options.getOperands().get(0);
+        byte[] rawData;
+        try (InputStream in = inputName.equals("-") ? new BufferedInputStream(System.in, options.getBufferSize())
+                : new FileInputStream(inputName)) {
+            ByteArrayOutputStream loaded = new ByteArrayOutputStream();
+            byte[] buffer = new byte[64 * 1024];
+            for (int read; (read = in.read(buffer)) >= 0;) {
+                loaded.write(buffer, 0, read);
+            }
+            rawData = loaded.toByteArray();
+        }
+        Input input = Input.ofBytes(rawData);
+
+        long encodeNanos = 0;
+        long decodeNanos = 0;
+        long encodeAllocated = 0;
+        long decodeAllocated = 0;
+        byte[] encoded = new byte[0];
+        try (Mode.Resources resources = new Mode.Resources(options.getThreads())) {
+            for (int run = 0; run <= options.getIterations(); run++) {
+                ByteArrayOutputStream encodedOut = new ByteArrayOutputStream(rawData.length / 2 + 1024);
+                long allocated = allocatedBytes();
+                long start = System.nanoTime();
+                options.getMode().encode(input, encodedOut, options, resources);
+                long encodeTime = System.nanoTime() - start;
+                long encodeAllocation = allocatedBytes() - allocated;
+                encoded = encodedOut.toByteArray();
+
+                CountingOutputStream decoded = discard();
+                allocated = allocatedBytes();
+                start = System.nanoTime();
+                HuffmanTranslator.decode(new ByteArrayInputStream(encoded), decoded);
+                long decodeTime = System.nanoTime() - start;
+                long decodeAllocation = allocatedBytes() - allocated;
+                if (decoded.getCount() != rawData.length) {
+                    throw new IOException("Decoded " + decoded.getCount() + " bytes, expected " + rawData.length);
+                }
+
+                //The first run only warms up
+                if (run > 0) {
+                    encodeNanos += encodeTime;
+                    decodeNanos += decodeTime;
+                    encodeAllocated += encodeAllocation;
+                    decodeAllocated += decodeAllocation;
+                }
+            }
+        }
+
+        int runs = options.getIterations();
+        System.out.printf("%s, mode %s, %d threads, %d runs%n", inputName,
+                options.getMode().name().toLowerCase(Locale.ROOT), options.getThreads(), runs);
+        System.out.printf("  size:       %,d -> %,d bytes (%.2f%%)%n", rawData.length, encoded.length,
+                100.0 * encoded.length / Math.max(1, rawData.length));
+        System.out.printf("  compress:   %8.1f MB/s, %,d bytes allocated per run%n",
+                megabytesPerSecond(rawData.length, encodeNanos / runs), encodeAllocated / runs);
+        System.out.printf("  decompress: %8.1f MB/s, %,d bytes allocated per run%n",
+                megabytesPerSecond(rawData.length, decodeNanos / runs), decodeAllocated / runs);
+    }
+
+    /**
+     * Archives many files and directories in one run, compressing a file on each thread at once.
+     */
+    private static void archive(Options options) throws IOException {
+        if (options.getOperands().size() < 2) {
+            throw new IllegalArgumentException("archive takes an archive name and at least one file or directory");
+        }
+        List<Path> sources = options.getOperands().subList(1, options.getOperands().size()).stream()
+                .map(Paths::get).collect(Collectors.toList());
+        long start = System.nanoTime();
+        try (Mode.Resources resources = new Mode.Resources(options.getThreads());
+             OutputStream out = openOutput(options.getOperands().get(0), options)) {
+            List<ArchiveEntry> entries = new ArchiveWriter(resources.executor, options.getThreads() * 4)
+                    .write(sources, out);
+            long size = entries.stream().mapToLong(ArchiveEntry::getSize).sum();
+            long compressed = entries.stream().mapToLong(ArchiveEntry::getCompressedSize).sum();
+            report(options, "archive of " + entries.size() + " files", size, compressed, size,
+                    System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Extracts the named entries of an archive into a directory, or every entry if none are named.
+     */
+    private static void extract(Options options) throws IOException {
+        if (options.getOperands().size() < 2) {
+            throw new IllegalArgumentException("extract takes an archive name and a directory");
+        }
+        Path directory = Paths.get(options.getOperands().get(1));
+        List<String> names = options.getOperands().subList(2, options.getOperands().size());
+        try (FileChannel channel = FileChannel.open(Paths.get(options.getOperands().get(0)),
+                StandardOpenOption.READ)) {
+            ArchiveReader reader = ArchiveReader.open(channel);
+            if (names.isEmpty()) {
+                try (Mode.Resources resources = new Mode.Resources(options.getThreads())) {
+                    reader.extractAll(directory, resources.executor);
+                }
+                return;
+            }
+            for (String name : names) {
+                ArchiveEntry entry = reader.getEntry(name)
+                        .orElseThrow(() -> new IOException("The archive holds no entry named " + name));
+                reader.extract(entry, directory);
+            }
+        }
+    }
+
+    /**
+     * @return  A stream which counts and then drops everything written to it
+     */
+    private static CountingOutputStream discard() {
+        return new CountingOutputStream(new OutputStream() {
+            @Override
+            public void write(int byt) {}
+
+            @Override
+            public void write(byte[] data, int offset, int length) {}
+        });
+    }
+
+    private static OutputStream openOutput(String name, Options options) throws IOException {
+        return openOutput(name, options, null);
+    }
+
+    /**
+     * @param writeBehind  The executor to write on when the pipeline option is given, or null to always write on the
+     *     caller's thread
+     */
+    private static OutputStream openOutput(String name, Options options, ExecutorService writeBehind)
+            throws IOException {
+        OutputStream out = name.equals("-") ? new FileOutputStream(FileDescriptor.out)
+                : Files.newOutputStream(Paths.get(name));
+        if (options.isPipelined() && writeBehind != null) {
+            return new RingOutputStream(out, writeBehind, options.getBufferSize(),
+                    RingOutputStream.DEFAULT_BUFFER_COUNT);
+        }
+        return new BufferedOutputStream(out, options.getBufferSize());
+    }
+
+    /**
+     * Has the input read ahead on the I/O threads when the pipeline option is given.
+     */
+    private static void pipeline(Input input, Options options, Mode.Resources resources) {
+        if (options.isPipelined()) {
+            input.setReadAhead(resources.io);
+        }
+    }
+
+    /**
+     * Writes a one-line summary to stderr, with the speed measured over 'rawLength' (the uncompressed size).
+     */
+    private static void report(Options options, String what, long inLength, long outLength, long rawLength,
+                               long nanos) {
+        if (options.isQuiet()) {
+            return;
+        }
+        System.err.printf("%s: %,d -> %,d bytes (%.2f%%) in %.3f s, %.1f MB/s%n", what, inLength, outLength,
+                100.0 * outLength / Math.max(1, inLength), nanos / 1e9, megabytesPerSecond(rawLength, nanos));
+    }
+
+    private static double megabytesPerSecond(long bytes, long nanos) {
+        return bytes / MEGABYTE / Math.max(nanos / 1e9, 1e-9);
+    }
+
+    /**
+     * @return  The bytes allocated so far by every live thread, or 0 if the JVM cannot say
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return 0;
+        }
+        long total = 0;
+        for (long allocated : ((com.sun.management.ThreadMXBean)threads).getThreadAllocatedBytes(
+                threads.getAllThreadIds())) {
+            total += Math.max(allocated, 0);
+        }
+        return total;
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count = 0;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public void write(int byt) throws IOException {
+            out.write(byt);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] data, int offset, int length) throws IOException {
+            out.write(data, offset, length);
+            count += length;
+        }
     }
 }
@@ -0,0 +1,267 @@
+package com.bitfracture.huffmanrunner;
+
+import com.bitfracture.huffman.ContextModel;
+import com.bitfracture.huffman.HuffmanOutputStream;
+import com.bitfracture.huffman.HuffmanTranslator;
+import com.bitfracture.huffman.HuffmanTree;
+import com.bitfracture.huffman.IndexedEncoder;
+import com.bitfracture.huffman.InterleavedEncoder;
+import com.bitfracture.huffman.PairModel;
+import com.bitfracture.huffman.ParallelEncoder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+/**
+ * The formats the command line can compress to. Every one of them is read back by HuffmanTranslator.decode(), so
+ * decompressing needs no mode. The block size, where given, sets the unit each mode splits its input into.
+ */
+enum Mode {
+    /**
+     * One code for the whole input, encoded on a single thread into frames of the frame size option.
+     */
+    STANDARD(true) {
+        @Override
+        void encode(Input input, OutputStream encodedData, Options options, Resources resources)
+                throws IOException {
+            HuffmanTree tree = tree(input, options, resources);
+            try (InputStream in = input.open(options.getBufferSize())) {
+                HuffmanTranslator.encode(tree, in, encodedData, options.getFrameSize());
+            }
+        }
+    },
+
+    /**
+     * The same format as STANDARD, with blocks of input encoded on several threads.
+     */
+    PARALLEL(true) {
+        @Override
+        void encode(Input input, OutputStream encodedData, Options options, Resources resources)
+                throws IOException {
+            HuffmanTree tree = tree(input, options, resources);
+            try (InputStream in = input.open(options.getBufferSize())) {
+                new ParallelEncoder(resources.executor, blockSize(options, ParallelEncoder.DEFAULT_CHUNK_SIZE),
+                        options.getThreads() * 2, options.getFrameSize()).encode(tree, in, encodedData);
+            }
+        }
+    },
+
+    /**
+     * Four interleaved streams per block, for faster decoding.
+     */
+    INTERLEAVED(true) {
+        @Override
+        void encode(Input input, OutputStream encodedData, Options options, Resources resources)
+                throws IOException {
+            HuffmanTree tree = tree(input, options, resources);
+            try (InputStream in = input.open(options.getBufferSize())) {
+                new InterleavedEncoder(blockSize(options, InterleavedEncoder.DEFAULT_FRAME_SIZE))
+                        .encode(tree, in, encodedData);
+            }
+        }
+    },
+
+    /**
+     * Independently decodable blocks with an index, for random access.
+     */
+    INDEXED(true) {
+        @Override
+        void encode(Input input, OutputStream encodedData, Options options, Resources resources)
+                throws IOException {
+            HuffmanTree tree = tree(input, options, resources);
+            try (InputStream in = input.open(options.getBufferSize())) {
+                new IndexedEncoder(blockSize(options, IndexedEncoder.DEFAULT_FRAME_SIZE)).encode(tree, in, encodedData);
+            }
+        }
+    },
+
+    /**
+     * A single pass with a code chosen per block, which is the only mode that streams stdin without buffering it.
+     */
+    ADAPTIVE(false) {
+        @Override
+        void encode(Input input, OutputStream encodedData, Options options, Resources resources)
+                throws IOException {
+            try (InputStream in = input.open(options.getBufferSize())) {
+                HuffmanTranslator.encodeAdaptive(in, encodedData,
+                        blockSize(options, HuffmanOutputStream.DEFAULT_CHUNK_SIZE));
+            }
+        }
+    },
+
+    /**
+     * A single pass like ADAPTIVE, with one code trained on a sample from the start of the input and rebuilt only for
+     * blocks whose statistics drift away from it.
+     */
+    SAMPLED(false) {
+        @Override
+        void encode(Input input, OutputStream encodedData, Options options, Resources resources)
+                throws IOException {
+            try (InputStream in = input.open(options.getBufferSize())) {
+                HuffmanTranslator.encodeSampled(in, encodedData,
+                        blockSize(options, HuffmanOutputStream.DEFAULT_CHUNK_SIZE), options.getSampleSize());
+            }
+        }
+    },
+
+    /**
+     * An order-1 model, coding each byte according to the one before it.
+     */
+    CONTEXT(true) {
+        @Override
+        void encode(Input input, OutputStream encodedData, Options options, Resources resources)
+                throws IOException {
+            ContextModel model;
+            try (InputStream in = input.open(options.getBufferSize())) {
+                model = HuffmanTranslator.generateContextModel(in);
+            }
+            try (InputStream in = input.open(options.getBufferSize())) {
+                HuffmanTranslator.encode(model, in, encodedData);
+            }
+        }
+    },
+
+    /**
+     * 16-bit symbols, giving the most frequent aligned byte pairs codes of their own, for UTF-16 text or 16-bit
+     * samples.
+     */
+    PAIRS(true) {
+        @Override
+        void encode(Input input, OutputStream encodedData, Options options, Resources resources)
+                throws IOException {
+            PairModel model;
+            try (InputStream in = input.open(options.getBufferSize())) {
+                model = HuffmanTranslator.generatePairModel(in);
+            }
+            try (InputStream in = input.open(options.getBufferSize())) {
+                HuffmanTranslator.encode(model, in, encodedData);
+            }
+        }
+    },
+
+    /**
+     * A filter chain chosen for the data, such as run-length or delta coding, applied before a single code.
+     */
+    FILTERED(true) {
+        @Override
+        void encode(Input input, OutputStream encodedData, Options options, Resources resources)
+                throws IOException {
+            try (InputStream first = input.open(options.getBufferSize())) {
+                //The second stream is only opened once the first has been read to the end
+                HuffmanTranslator.encodeFiltered(first, new LazyInputStream(input, options), encodedData);
+            }
+        }
+    };
+
+    private final boolean twoPass;
+
+    Mode(boolean twoPass) {
+        this.twoPass = twoPass;
+    }
+
+    /**
+     * @return  Whether the mode reads its input twice, and so cannot stream it
+     */
+    boolean isTwoPass() {
+        return twoPass;
+    }
+
+    /**
+     * Compresses the whole of 'input' into 'encodedData'.
+     */
+    abstract void encode(Input input, OutputStream encodedData, Options options, Resources resources)
+            throws IOException;
+
+    /**
+     * @throws IllegalArgumentException  If there is no mode with the given name
+     */
+    static Mode fromName(String name) {
+        try {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown mode: " + name + " (expected one of " + names() + ")");
+        }
+    }
+
+    static String names() {
+        return Arrays.stream(values()).map(mode -> mode.name().toLowerCase(Locale.ROOT))
+                .collect(Collectors.joining(", "));
+    }
+
+    private static HuffmanTree tree(Input input, Options options, Resources resources) throws IOException {
+        return HuffmanTranslator.generateTree(input.histogram(resources.pool, options.getBufferSize()),
+                HuffmanTranslator.MAX_CODE_LENGTH);
+    }
+
+    private static int blockSize(Options options, int fallback) {
+        return options.getBlockSize() > 0 ? options.getBlockSize() : fallback;
+    }
+
+    /**
+     * The thread pools a mode may use, sized by the thread count option and shared across runs.
+     */
+    static class Resources implements AutoCloseable {
+        final ExecutorService executor;
+        final ForkJoinPool pool;
+        //The read-ahead and write-behind stages, which spend their time waiting rather than computing
+        final ExecutorService io;
+
+        Resources(int threads) {
+            this.executor = Executors.newFixedThreadPool(threads);
+            this.pool = new ForkJoinPool(threads);
+            this.io = Executors.newCachedThreadPool();
+        }
+
+        @Override
+        public void close() {
+            executor.shutdownNow();
+            pool.shutdownNow();
+            io.shutdownNow();
+        }
+    }
+
+    /**
+     * Opens the input only when first read.
+     */
+    private static class LazyInputStream extends InputStream {
+        private final Input input;
+        private final Options options;
+        private InputStream in;
+
+        LazyInputStream(Input input, Options options) {
+            this.input = input;
+            this.options = options;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return open().read();
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            return open().read(buffer, offset, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (in != null) {
+                in.close();
+            }
+        }
+
+        private InputStream open() throws IOException {
+            if (in == null) {
+                in = input.open(options.getBufferSize());
+            }
+            return in;
+        }
+    }
+}
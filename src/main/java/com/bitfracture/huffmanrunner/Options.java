@@ -0,0 +1,223 @@
+package com.bitfracture.huffmanrunner;
+
+import com.bitfracture.huffman.HuffmanOutputStream;
+import com.bitfracture.serial.BitBlock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The parsed command line: a command, the flags that tune it, and its remaining operands. Flags may appear anywhere
+ * after the command, and '--' ends them so that a following operand may start with '-'.
+ */
+class Options {
+    static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+    static final int DEFAULT_ITERATIONS = 5;
+
+    private String command;
+    private final List<String> operands = new ArrayList<>();
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int blockSize = 0;
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+    private int sampleSize = HuffmanOutputStream.DEFAULT_SAMPLE_SIZE;
+    private int frameSize = BitBlock.DEFAULT_FRAME_SIZE;
+    private Mode mode = null;
+    private int iterations = DEFAULT_ITERATIONS;
+    private boolean quiet = false;
+    private boolean pipelined = false;
+
+    private Options() {}
+
+    /**
+     * @throws IllegalArgumentException  If the command line is malformed, with a message to show the user
+     */
+    static Options parse(String[] args) {
+        if (args.length == 0) {
+            throw new IllegalArgumentException("No command given");
+        }
+        Options options = new Options();
+        options.command = args[0];
+        boolean flags = true;
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i];
+            if (!flags || arg.equals("-") || !arg.startsWith("-")) {
+                options.operands.add(arg);
+                continue;
+            }
+
+            //Accept both '--flag value' and '--flag=value'
+            String value = null;
+            int equals = arg.indexOf('=');
+            if (arg.startsWith("--") && equals > 0) {
+                value = arg.substring(equals + 1);
+                arg = arg.substring(0, equals);
+            }
+            switch (arg) {
+                case "--":
+                    flags = false;
+                    break;
+                case "-q":
+                case "--quiet":
+                    options.quiet = true;
+                    break;
+                case "-p":
+                case "--pipeline":
+                    options.pipelined = true;
+                    break;
+                case "-t":
+                case "--threads":
+                    options.threads = positive(arg, parseCount(arg, value != null ? value : next(args, ++i, arg)));
+                    break;
+                case "-b":
+                case "--block-size":
+                    options.blockSize = positive(arg, parseSize(value != null ? value : next(args, ++i, arg)));
+                    break;
+                case "--buffer-size":
+                    options.bufferSize = positive(arg, parseSize(value != null ? value : next(args, ++i, arg)));
+                    break;
+                case "--sample-size":
+                    options.sampleSize = positive(arg, parseSize(value != null ? value : next(args, ++i, arg)));
+                    break;
+                case "--frame-size":
+                    options.frameSize = parseSize(value != null ? value : next(args, ++i, arg));
+                    BitBlock.checkFrameSize(options.frameSize);
+                    break;
+                case "-m":
+                case "--mode":
+                    options.mode = Mode.fromName(value != null ? value : next(args, ++i, arg));
+                    break;
+                case "-n":
+                case "--iterations":
+                    options.iterations = positive(arg, parseCount(arg, value != null ? value : next(args, ++i, arg)));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Parses a byte count, which may have a K, M or G suffix (with or without a trailing B) for binary multiples.
+     *
+     * @throws IllegalArgumentException  If the size is malformed or does not fit in an int
+     */
+    static int parseSize(String size) {
+        String upper = size.trim().toUpperCase(Locale.ROOT);
+        if (upper.endsWith("B")) {
+            upper = upper.substring(0, upper.length() - 1);
+        }
+        int shift = 0;
+        if (upper.endsWith("K")) {
+            shift = 10;
+        } else if (upper.endsWith("M")) {
+            shift = 20;
+        } else if (upper.endsWith("G")) {
+            shift = 30;
+        }
+        String digits = shift == 0 ? upper : upper.substring(0, upper.length() - 1);
+        try {
+            long bytes = Long.parseLong(digits) << shift;
+            if (digits.length() > 10 || bytes > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Size is too large: " + size);
+            }
+            return (int)bytes;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid size: " + size);
+        }
+    }
+
+    private static int parseCount(String flag, String count) {
+        try {
+            return Integer.parseInt(count);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for " + flag + ": " + count);
+        }
+    }
+
+    private static int positive(String flag, int value) {
+        if (value < 1) {
+            throw new IllegalArgumentException("The value for " + flag + " must be positive");
+        }
+        return value;
+    }
+
+    private static String next(String[] args, int index, String flag) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + flag);
+        }
+        return args[index];
+    }
+
+    String getCommand() {
+        return command;
+    }
+
+    List<String> getOperands() {
+        return Collections.unmodifiableList(operands);
+    }
+
+    /**
+     * @return  The operand at 'index', or 'fallback' if there are fewer operands
+     */
+    String getOperand(int index, String fallback) {
+        return index < operands.size() ? operands.get(index) : fallback;
+    }
+
+    int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @return  The block size given, or 0 to use the mode's default
+     */
+    int getBlockSize() {
+        return blockSize;
+    }
+
+    int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * @return  The bytes at the start of the input that the sampled mode builds its code from
+     */
+    int getSampleSize() {
+        return sampleSize;
+    }
+
+    /**
+     * @return  The bytes of encoded bits per frame, for modes which write the framed format
+     */
+    int getFrameSize() {
+        return frameSize;
+    }
+
+    /**
+     * @return  The mode given, or else parallel, except when compressing stdin. Parallel reads its input twice, which
+     *     would mean holding the whole of stdin in memory, so stdin is compressed in one pass with sampled instead.
+     */
+    Mode getMode() {
+        if (mode != null) {
+            return mode;
+        }
+        return command.equals("compress") && getOperand(0, "-").equals("-") ? Mode.SAMPLED : Mode.PARALLEL;
+    }
+
+    int getIterations() {
+        return iterations;
+    }
+
+    boolean isQuiet() {
+        return quiet;
+    }
+
+    /**
+     * @return  Whether file and pipe I/O runs on threads of its own, overlapping with compression
+     */
+    boolean isPipelined() {
+        return pipelined;
+    }
+}
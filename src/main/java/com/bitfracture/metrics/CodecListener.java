@@ -0,0 +1,41 @@
+package com.bitfracture.metrics;
+
+/**
+ * Receives measurements from the codec once registered with Metrics.addListener(). Calls may come from any thread,
+ * often from several at once, and are made on the codec's own hot paths, so implementations must be thread safe and
+ * should do no more than update counters. Every method does nothing by default, so a listener need only implement
+ * what it uses.
+ */
+public interface CodecListener {
+    /**
+     * Called when a stage of the codec finishes a unit of work, such as encoding one buffer.
+     *
+     * @param phase  The stage which did the work
+     * @param nanos  The time the work took
+     * @param bytes  The uncompressed bytes the work covered, or 0 for stages which build tables or trees
+     */
+    default void phaseCompleted(Phase phase, long nanos, long bytes) {}
+
+    /**
+     * Called when a serialized BitBlock is written.
+     *
+     * @param encodedBytes  The size of the serialized block
+     */
+    default void blockWritten(int encodedBytes) {}
+
+    /**
+     * Called when a serialized BitBlock is read.
+     *
+     * @param encodedBytes  The size of the serialized block
+     */
+    default void blockRead(int encodedBytes) {}
+
+    /**
+     * Called when a code is built from byte counts, with what it will spend on the data it was built from.
+     *
+     * @param symbols  The number of bytes counted
+     * @param codedBits  The bits the code takes to encode those bytes
+     * @param entropyBits  The fewest bits any code could take, from the entropy of the counts
+     */
+    default void codeBuilt(long symbols, double codedBits, double entropyBits) {}
+}
@@ -0,0 +1,221 @@
+package com.bitfracture.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * A listener which totals every measurement in striped counters, so that threads reporting at once rarely contend,
+ * and exposes the totals through getters and, once registered, as a JMX MBean.
+ *
+ * <pre>
+ *     CodecMetrics metrics = CodecMetrics.register();
+ *     ...
+ *     System.out.println(metrics.getEncodeNanos());
+ *     metrics.unregister();
+ * </pre>
+ */
+public class CodecMetrics implements CodecListener, CodecMetricsMBean {
+    /**
+     * The name the MBean is registered under by register().
+     */
+    public static final String OBJECT_NAME = "com.bitfracture.huffman:type=CodecMetrics";
+
+    private final LongAdder[] phaseNanos = adders(Phase.values().length);
+    private final LongAdder[] phaseBytes = adders(Phase.values().length);
+    private final LongAdder blocksWritten = new LongAdder();
+    private final LongAdder encodedBytesWritten = new LongAdder();
+    private final LongAdder blocksRead = new LongAdder();
+    private final LongAdder encodedBytesRead = new LongAdder();
+    private final LongAdder codesBuilt = new LongAdder();
+    private final LongAdder codedSymbols = new LongAdder();
+    private final DoubleAdder codedBits = new DoubleAdder();
+    private final DoubleAdder entropyBits = new DoubleAdder();
+    private ObjectName name;
+
+    /**
+     * Creates metrics which collect measurements and register with JMX under OBJECT_NAME.
+     *
+     * @throws IllegalStateException  If metrics are already registered under OBJECT_NAME
+     */
+    public static CodecMetrics register() {
+        try {
+            return register(new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            throw new IllegalStateException("Metrics could not be registered", e);
+        }
+    }
+
+    /**
+     * Creates metrics which collect measurements and register with JMX under the given name.
+     *
+     * @throws JMException  If the name is in use or the MBean cannot be registered
+     */
+    public static CodecMetrics register(ObjectName name) throws JMException {
+        CodecMetrics metrics = new CodecMetrics();
+        ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, name);
+        metrics.name = name;
+        Metrics.addListener(metrics);
+        return metrics;
+    }
+
+    /**
+     * Stops collecting measurements and removes the MBean, if it was registered.
+     */
+    public void unregister() {
+        Metrics.removeListener(this);
+        if (name != null) {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException e) {
+                //Already gone
+            }
+            name = null;
+        }
+    }
+
+    @Override
+    public void phaseCompleted(Phase phase, long nanos, long bytes) {
+        phaseNanos[phase.ordinal()].add(nanos);
+        phaseBytes[phase.ordinal()].add(bytes);
+    }
+
+    @Override
+    public void blockWritten(int encodedBytes) {
+        blocksWritten.increment();
+        encodedBytesWritten.add(encodedBytes);
+    }
+
+    @Override
+    public void blockRead(int encodedBytes) {
+        blocksRead.increment();
+        encodedBytesRead.add(encodedBytes);
+    }
+
+    @Override
+    public void codeBuilt(long symbols, double codedBits, double entropyBits) {
+        codesBuilt.increment();
+        codedSymbols.add(symbols);
+        this.codedBits.add(codedBits);
+        this.entropyBits.add(entropyBits);
+    }
+
+    /**
+     * @return  The time spent in a phase, summed across threads
+     */
+    public long getNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()].sum();
+    }
+
+    /**
+     * @return  The uncompressed bytes a phase has covered
+     */
+    public long getBytes(Phase phase) {
+        return phaseBytes[phase.ordinal()].sum();
+    }
+
+    @Override
+    public long getHistogramNanos() {
+        return getNanos(Phase.HISTOGRAM);
+    }
+
+    @Override
+    public long getTreeBuildNanos() {
+        return getNanos(Phase.TREE_BUILD);
+    }
+
+    @Override
+    public long getTableBuildNanos() {
+        return getNanos(Phase.TABLE_BUILD);
+    }
+
+    @Override
+    public long getEncodeNanos() {
+        return getNanos(Phase.ENCODE);
+    }
+
+    @Override
+    public long getDecodeNanos() {
+        return getNanos(Phase.DECODE);
+    }
+
+    @Override
+    public long getBytesCounted() {
+        return getBytes(Phase.HISTOGRAM);
+    }
+
+    @Override
+    public long getBytesEncoded() {
+        return getBytes(Phase.ENCODE);
+    }
+
+    @Override
+    public long getBytesDecoded() {
+        return getBytes(Phase.DECODE);
+    }
+
+    @Override
+    public long getBlocksWritten() {
+        return blocksWritten.sum();
+    }
+
+    @Override
+    public long getEncodedBytesWritten() {
+        return encodedBytesWritten.sum();
+    }
+
+    @Override
+    public long getBlocksRead() {
+        return blocksRead.sum();
+    }
+
+    @Override
+    public long getEncodedBytesRead() {
+        return encodedBytesRead.sum();
+    }
+
+    @Override
+    public long getCodesBuilt() {
+        return codesBuilt.sum();
+    }
+
+    @Override
+    public double getAverageCodeLength() {
+        long symbols = codedSymbols.sum();
+        return symbols == 0 ? 0 : codedBits.sum() / symbols;
+    }
+
+    @Override
+    public double getEntropyGap() {
+        long symbols = codedSymbols.sum();
+        return symbols == 0 ? 0 : (codedBits.sum() - entropyBits.sum()) / symbols;
+    }
+
+    @Override
+    public void reset() {
+        for (Phase phase : Phase.values()) {
+            phaseNanos[phase.ordinal()].reset();
+            phaseBytes[phase.ordinal()].reset();
+        }
+        blocksWritten.reset();
+        encodedBytesWritten.reset();
+        blocksRead.reset();
+        encodedBytesRead.reset();
+        codesBuilt.reset();
+        codedSymbols.reset();
+        codedBits.reset();
+        entropyBits.reset();
+    }
+
+    private static LongAdder[] adders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+}
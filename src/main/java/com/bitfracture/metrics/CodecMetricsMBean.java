@@ -0,0 +1,57 @@
+package com.bitfracture.metrics;
+
+/**
+ * The attributes CodecMetrics exposes over JMX. Times are in nanoseconds, summed across threads, so phases run on
+ * several threads at once may add up to more than the time that passed.
+ */
+public interface CodecMetricsMBean {
+    long getHistogramNanos();
+
+    long getTreeBuildNanos();
+
+    long getTableBuildNanos();
+
+    long getEncodeNanos();
+
+    long getDecodeNanos();
+
+    /**
+     * @return  The uncompressed bytes counted into histograms
+     */
+    long getBytesCounted();
+
+    /**
+     * @return  The uncompressed bytes encoded
+     */
+    long getBytesEncoded();
+
+    /**
+     * @return  The uncompressed bytes decoded
+     */
+    long getBytesDecoded();
+
+    long getBlocksWritten();
+
+    long getEncodedBytesWritten();
+
+    long getBlocksRead();
+
+    long getEncodedBytesRead();
+
+    long getCodesBuilt();
+
+    /**
+     * @return  The mean code length in bits per byte, over the data every code was built from
+     */
+    double getAverageCodeLength();
+
+    /**
+     * @return  How many bits per byte the codes spent beyond the entropy of the data they were built from
+     */
+    double getEntropyGap();
+
+    /**
+     * Sets every counter back to zero.
+     */
+    void reset();
+}
@@ -0,0 +1,86 @@
+package com.bitfracture.metrics;
+
+import java.util.Arrays;
+
+/**
+ * The switchboard between the codec and any registered listeners. Metrics are off until a listener is added, and
+ * while they are off the codec's only cost is a check of a volatile field at the start and end of each unit of work:
+ * no clock is read, nothing is allocated, and nothing is logged.
+ *
+ * The codec reports a unit of work by taking start() before it and passing the result to phaseCompleted() after it.
+ * If metrics were off when the work started, nothing is reported, even if a listener has been added since.
+ */
+public final class Metrics {
+    /**
+     * The value start() returns when metrics are off.
+     */
+    public static final long DISABLED = Long.MIN_VALUE;
+
+    private static volatile CodecListener[] listeners = new CodecListener[0];
+
+    private Metrics() {}
+
+    /**
+     * Starts sending measurements to 'listener'.
+     */
+    public static synchronized void addListener(CodecListener listener) {
+        CodecListener[] updated = Arrays.copyOf(listeners, listeners.length + 1);
+        updated[listeners.length] = listener;
+        listeners = updated;
+    }
+
+    /**
+     * Stops sending measurements to 'listener'. Metrics are off again once every listener has been removed.
+     */
+    public static synchronized void removeListener(CodecListener listener) {
+        listeners = Arrays.stream(listeners).filter(registered -> registered != listener)
+                .toArray(CodecListener[]::new);
+    }
+
+    /**
+     * @return  Whether any listener is registered
+     */
+    public static boolean isEnabled() {
+        return listeners.length > 0;
+    }
+
+    /**
+     * @return  The current time for timing a unit of work, or DISABLED if metrics are off
+     */
+    public static long start() {
+        return listeners.length > 0 ? System.nanoTime() : DISABLED;
+    }
+
+    /**
+     * Reports a unit of work which began at 'start', as returned by start().
+     *
+     * @param bytes  The uncompressed bytes the work covered, or 0 for stages which build tables or trees
+     */
+    public static void phaseCompleted(Phase phase, long start, long bytes) {
+        if (start == DISABLED) {
+            return;
+        }
+        long nanos = System.nanoTime() - start;
+        for (CodecListener listener : listeners) {
+            listener.phaseCompleted(phase, nanos, bytes);
+        }
+    }
+
+    public static void blockWritten(int encodedBytes) {
+        for (CodecListener listener : listeners) {
+            listener.blockWritten(encodedBytes);
+        }
+    }
+
+    public static void blockRead(int encodedBytes) {
+        for (CodecListener listener : listeners) {
+            listener.blockRead(encodedBytes);
+        }
+    }
+
+    public static void codeBuilt(long symbols, double codedBits, double entropyBits) {
+        for (CodecListener listener : listeners) {
+            listener.codeBuilt(symbols, codedBits, entropyBits);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.bitfracture.metrics;
+
+/**
+ * The stages of the codec which are timed.
+ */
+public enum Phase {
+    /**
+     * Counting the bytes of the data.
+     */
+    HISTOGRAM,
+    /**
+     * Building a tree and its code lengths from the byte counts.
+     */
+    TREE_BUILD,
+    /**
+     * Building an encode or decode table from a tree or code.
+     */
+    TABLE_BUILD,
+    /**
+     * Translating bytes into codes.
+     */
+    ENCODE,
+    /**
+     * Translating codes back into bytes.
+     */
+    DECODE
+}
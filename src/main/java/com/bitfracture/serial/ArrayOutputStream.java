@@ -0,0 +1,56 @@
+package com.bitfracture.serial;
+
+import java.io.OutputStream;
+
+/**
+ * Writes into a range of a caller-provided array, which can be swapped for another with reset() so that one stream
+ * (and whatever is wrapped around it) can be reused for any number of outputs without allocating. Writing past the
+ * end of the range throws rather than growing it.
+ */
+public class ArrayOutputStream extends OutputStream {
+    private byte[] array = new byte[0];
+    private int position = 0;
+    private int end = 0;
+
+    /**
+     * Directs further writes to the given range, starting at its beginning.
+     */
+    public void reset(byte[] array, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > array.length || offset + length < 0) {
+            throw new IndexOutOfBoundsException("The range does not fit in the array");
+        }
+        this.array = array;
+        this.position = offset;
+        this.end = offset + length;
+    }
+
+    /**
+     * @return  The index in the array the next byte will be written to
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * @throws IndexOutOfBoundsException  If the range is full
+     */
+    @Override
+    public void write(int byt) {
+        if (position == end) {
+            throw new IndexOutOfBoundsException("The destination is too small for the data written to it");
+        }
+        array[position++] = (byte)byt;
+    }
+
+    /**
+     * @throws IndexOutOfBoundsException  If the data does not fit in what remains of the range
+     */
+    @Override
+    public void write(byte[] data, int offset, int length) {
+        if (length > end - position) {
+            throw new IndexOutOfBoundsException("The destination is too small for the data written to it");
+        }
+        System.arraycopy(data, offset, array, position, length);
+        position += length;
+    }
+}
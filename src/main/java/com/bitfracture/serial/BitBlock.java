@@ -1,18 +1,30 @@
 package com.bitfracture.serial;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.Iterator;
+import java.util.Optional;
 import java.util.function.Consumer;
 
 public class BitBlock implements Iterable<Boolean> {
-    private static final int BLOCK_SIZE_BYTES = 1024;
-    private static final int INTEGER_SIZE_BYTES = 4;
+    static final int BLOCK_SIZE_BYTES = 1024;
+    static final int INTEGER_SIZE_BYTES = 4;
     private static final int BYTE_WIDTH = 8;
     private static final int MAX_RAW_BYTES = BLOCK_SIZE_BYTES - INTEGER_SIZE_BYTES;
-    private static final int MAX_BIT_COUNT = MAX_RAW_BYTES * BYTE_WIDTH;
+    static final int MAX_BIT_COUNT = MAX_RAW_BYTES * BYTE_WIDTH;
+
+    /**
+     * The bytes of bits in each variable-length frame that the framed format uses when no size is given.
+     */
+    public static final int DEFAULT_FRAME_SIZE = 256 * 1024;
+    /**
+     * The largest frame size, which bounds the buffer a reader allocates for a frame size it reads from a header.
+     */
+    public static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+    private static final int MIN_FRAME_SIZE = 16;
 
     private byte[] raw = new byte[MAX_RAW_BYTES];
     private int bitCount = 0;
@@ -66,13 +78,93 @@ public class BitBlock implements Iterable<Boolean> {
         return bitCount >= MAX_BIT_COUNT;
     }
 
-    public static BitBlock fromSerialStream(InputStream serial) throws IOException {
+    /**
+     * @return  The number of bytes taken by a bit stream of 'bitCount' bits when it is serialized as a sequence of
+     *     blocks, every one full but the last (as BitWriter writes it)
+     */
+    public static long serialSize(long bitCount) {
+        long blocks = (bitCount + MAX_BIT_COUNT - 1) / MAX_BIT_COUNT;
+        return blocks * INTEGER_SIZE_BYTES + (bitCount + BYTE_WIDTH - 1) / BYTE_WIDTH;
+    }
+
+    /**
+     * @return  The number of bytes taken by a bit stream of 'bitCount' bits when it is written as variable-length
+     *     frames of 'frameSize' bytes, every one full but the last
+     */
+    public static long serialSize(long bitCount, int frameSize) {
+        long frameBits = (long)frameSize * BYTE_WIDTH;
+        long fullFrames = bitCount / frameBits;
+        long tailBits = bitCount % frameBits;
+        long headers = fullFrames * varIntSize(frameBits) + (tailBits > 0 ? varIntSize(tailBits) : 0);
+        return headers + (bitCount + BYTE_WIDTH - 1) / BYTE_WIDTH;
+    }
+
+    private static int varIntSize(long value) {
+        int size = 1;
+        for (; value >= 0x80; value >>>= 7) {
+            size++;
+        }
+        return size;
+    }
+
+    /**
+     * Checks a size for variable-length frames, which must be a whole number of 32-bit words from 16 bytes to
+     * MAX_FRAME_SIZE.
+     *
+     * @throws IllegalArgumentException  If the size is not valid
+     */
+    public static void checkFrameSize(int frameSize) {
+        if (frameSize < MIN_FRAME_SIZE || frameSize > MAX_FRAME_SIZE || frameSize % 4 != 0) {
+            throw new IllegalArgumentException("Frame size must be a multiple of 4 from " + MIN_FRAME_SIZE + " to "
+                    + MAX_FRAME_SIZE + " bytes: " + frameSize);
+        }
+    }
+
+    /**
+     * @return  The number of bits stored in this block
+     */
+    public int getBitCount() {
+        return bitCount;
+    }
+
+    byte[] getRaw() {
+        return raw;
+    }
+
+    /**
+     * Reads the next serialized block from a stream.
+     *
+     * @param serial  The stream positioned at the start of a block, or at its end
+     * @return  The block, or empty if the stream ended cleanly before the block started
+     * @throws IOException  If the stream fails, or ends part way through a block
+     */
+    public static Optional<BitBlock> fromSerialStream(InputStream serial) throws IOException {
         BitBlock newBitBlock = new BitBlock();
         byte[] intBuffer = new byte[INTEGER_SIZE_BYTES];
-        serial.read(intBuffer, 0, INTEGER_SIZE_BYTES);
+        int first = serial.read();
+        if (first < 0) {
+            return Optional.empty();
+        }
+        intBuffer[0] = (byte)first;
+        readFully(serial, intBuffer, 1, INTEGER_SIZE_BYTES - 1);
         newBitBlock.bitCount = ByteBuffer.wrap(intBuffer).order(ByteOrder.LITTLE_ENDIAN).getInt();
-        serial.read(newBitBlock.raw, 0, newBitBlock.bitCount);
-        return newBitBlock;
+        if (newBitBlock.bitCount < 0 || newBitBlock.bitCount > MAX_BIT_COUNT) {
+            throw new IOException("Block bit count is out of range: " + newBitBlock.bitCount);
+        }
+        int rawLen = newBitBlock.bitCount / BYTE_WIDTH + ((newBitBlock.bitCount % BYTE_WIDTH) > 0 ? 1 : 0);
+        readFully(serial, newBitBlock.raw, 0, rawLen);
+        return Optional.of(newBitBlock);
+    }
+
+    private static void readFully(InputStream serial, byte[] buffer, int offset, int length) throws IOException {
+        while (length > 0) {
+            int read = serial.read(buffer, offset, length);
+            if (read < 0) {
+                throw new EOFException("The stream ended part way through a block");
+            }
+            offset += read;
+            length -= read;
+        }
     }
 
     public static BitBlock fromSerial(Iterator<Byte> serial) {
@@ -0,0 +1,288 @@
+package com.bitfracture.serial;
+
+import com.bitfracture.metrics.Metrics;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Reads the bit stream stored across a sequence of BitBlocks through a 64-bit accumulator, so that a consumer can look
+ * at many bits at once instead of iterating one boxed Boolean at a time. Bits come out in the same order BitBlock
+ * stores them: least significant bit of each byte first. The blockSupplier is called each time the current block is
+ * exhausted, in the same fashion as IteratorIterator.
+ *
+ * A reader created without a supplier instead reads serialized blocks straight out of an array or ByteBuffer (heap or
+ * direct) given to reset(). It copies each block into a buffer it owns, so it can be reset and reused for any number
+ * of inputs without allocating.
+ *
+ * A reader created with a stream and a frame size reads the variable-length frames BitWriter writes when given a frame
+ * size, reading each frame fully into a single buffer which is reused for every frame.
+ */
+public class BitReader {
+    private static final int LONG_SIZE_BYTES = 8;
+    private static final int BYTE_WIDTH = 8;
+    private static final int REFILL_THRESHOLD = 56;
+
+    private Supplier<Optional<BitBlock>> blockSupplier;
+    private boolean noMoreBlocks = false;
+
+    private ByteBuffer words;
+    private byte[] raw = new byte[0];
+    private int rawIndex = 0;
+    private int rawFullBytes = 0;
+    private int rawTailBits = 0;
+
+    private InputStream frames;
+    private int frameSize;
+
+    private byte[] serial;
+    private ByteBuffer serialBuffer;
+    private int serialIndex = 0;
+    private int serialEnd = 0;
+
+    private long accumulator = 0;
+    private int accumulatorBits = 0;
+
+    public BitReader(Supplier<Optional<BitBlock>> blockSupplier) {
+        this.blockSupplier = blockSupplier;
+    }
+
+    /**
+     * Creates a reader of the variable-length frames in the rest of a stream, up to its end.
+     *
+     * @param frameSize  The frame size the frames were written with, which no frame may exceed
+     * @throws IllegalArgumentException  If the frame size is not valid for BitBlock.checkFrameSize()
+     */
+    public BitReader(InputStream frames, int frameSize) {
+        BitBlock.checkFrameSize(frameSize);
+        this.frames = frames;
+        this.frameSize = frameSize;
+        this.words = ByteBuffer.wrap(raw).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Creates a reader for serialized blocks held in arrays or buffers, which has no bits until reset() is called.
+     */
+    public BitReader() {
+        this.raw = new byte[BitBlock.BLOCK_SIZE_BYTES];
+        this.words = ByteBuffer.wrap(raw).order(ByteOrder.LITTLE_ENDIAN);
+        this.serial = new byte[0];
+        this.noMoreBlocks = true;
+    }
+
+    /**
+     * Discards any buffered bits, and starts reading the serialized blocks held in the given range of an array. Only
+     * readers created without a block supplier may be reset.
+     */
+    public void reset(byte[] serial, int offset, int length) {
+        if (blockSupplier != null || frames != null) {
+            throw new IllegalStateException("A reader with a block supplier cannot be reset");
+        }
+        if (offset < 0 || length < 0 || offset + length > serial.length || offset + length < 0) {
+            throw new IndexOutOfBoundsException("The range does not fit in the array");
+        }
+        this.serial = serial;
+        this.serialBuffer = null;
+        start(offset, length);
+    }
+
+    /**
+     * Discards any buffered bits, and starts reading the serialized blocks held between the given absolute indexes of
+     * a buffer. The buffer's position is not changed. Only readers created without a block supplier may be reset.
+     */
+    public void reset(ByteBuffer serial, int offset, int length) {
+        if (blockSupplier != null || frames != null) {
+            throw new IllegalStateException("A reader with a block supplier cannot be reset");
+        }
+        if (offset < 0 || length < 0 || offset + length > serial.limit() || offset + length < 0) {
+            throw new IndexOutOfBoundsException("The range does not fit in the buffer");
+        }
+        this.serial = null;
+        this.serialBuffer = serial;
+        start(offset, length);
+    }
+
+    private void start(int offset, int length) {
+        this.serialIndex = offset;
+        this.serialEnd = offset + length;
+        this.noMoreBlocks = false;
+        this.rawIndex = 0;
+        this.rawFullBytes = 0;
+        this.rawTailBits = 0;
+        this.accumulator = 0;
+        this.accumulatorBits = 0;
+    }
+
+    /**
+     * Tops up the accumulator so that at least 56 bits are buffered, or every remaining bit if the stream is shorter.
+     *
+     * @return  The number of bits available to peek at
+     */
+    public int fill() {
+        while (accumulatorBits < REFILL_THRESHOLD) {
+            if (rawIndex + LONG_SIZE_BYTES <= rawFullBytes) {
+                //Load a whole word, keeping only the bytes that fit entirely into the accumulator
+                accumulator |= words.getLong(rawIndex) << accumulatorBits;
+                int bytes = (63 - accumulatorBits) >>> 3;
+                rawIndex += bytes;
+                accumulatorBits += bytes * BYTE_WIDTH;
+            } else if (rawIndex < rawFullBytes) {
+                accumulator |= (long)(raw[rawIndex++] & 0xFF) << accumulatorBits;
+                accumulatorBits += BYTE_WIDTH;
+            } else if (rawTailBits > 0) {
+                //The final byte of a block may only be partially used
+                accumulator |= (long)(raw[rawIndex++] & ((1 << rawTailBits) - 1)) << accumulatorBits;
+                accumulatorBits += rawTailBits;
+                rawTailBits = 0;
+            } else if (!nextBlock()) {
+                break;
+            }
+        }
+        return accumulatorBits;
+    }
+
+    /**
+     * @return  The buffered bits, with the next bit in the stream as the least significant bit. Only the lowest
+     *     available() bits are meaningful.
+     */
+    public long peek() {
+        return accumulator;
+    }
+
+    /**
+     * Consumes bits which have already been buffered by fill().
+     *
+     * @param bits  The number of bits to consume, which must not exceed available()
+     */
+    public void skip(int bits) {
+        if (bits > accumulatorBits) {
+            throw new IndexOutOfBoundsException("Cannot skip more bits than are buffered");
+        }
+        accumulator = bits == Long.SIZE ? 0 : accumulator >>> bits;
+        accumulatorBits -= bits;
+    }
+
+    /**
+     * @return  The number of bits currently buffered
+     */
+    public int available() {
+        return accumulatorBits;
+    }
+
+    private boolean nextBlock() {
+        if (noMoreBlocks) {
+            return false;
+        } else if (frames != null) {
+            return nextFrame();
+        } else if (blockSupplier == null) {
+            return nextSerialBlock();
+        }
+        BitBlock block = blockSupplier.get().orElse(null);
+        if (block == null) {
+            noMoreBlocks = true;
+            return false;
+        }
+        raw = block.getRaw();
+        words = ByteBuffer.wrap(raw).order(ByteOrder.LITTLE_ENDIAN);
+        rawIndex = 0;
+        rawFullBytes = block.getBitCount() / BYTE_WIDTH;
+        rawTailBits = block.getBitCount() % BYTE_WIDTH;
+        if (Metrics.isEnabled()) {
+            Metrics.blockRead(BitBlock.INTEGER_SIZE_BYTES + (block.getBitCount() + BYTE_WIDTH - 1) / BYTE_WIDTH);
+        }
+        return true;
+    }
+
+    /**
+     * Copies the next block out of the serial array or buffer, in the layout BitBlock.toSerial() writes.
+     */
+    private boolean nextSerialBlock() {
+        if (serialIndex == serialEnd) {
+            noMoreBlocks = true;
+            return false;
+        }
+        if (serialEnd - serialIndex < BitBlock.INTEGER_SIZE_BYTES) {
+            throw new RuntimeException("The serialized blocks end part way through a block");
+        }
+        int bitCount = serialByte(serialIndex) | serialByte(serialIndex + 1) << 8
+                | serialByte(serialIndex + 2) << 16 | serialByte(serialIndex + 3) << 24;
+        if (bitCount < 0 || bitCount > BitBlock.MAX_BIT_COUNT) {
+            throw new RuntimeException("Block bit count is out of range: " + bitCount);
+        }
+        int rawLength = (bitCount + BYTE_WIDTH - 1) / BYTE_WIDTH;
+        serialIndex += BitBlock.INTEGER_SIZE_BYTES;
+        if (serialEnd - serialIndex < rawLength) {
+            throw new RuntimeException("The serialized blocks end part way through a block");
+        }
+        if (serialBuffer == null) {
+            System.arraycopy(serial, serialIndex, raw, 0, rawLength);
+        } else {
+            for (int i = 0; i < rawLength; i++) {
+                raw[i] = serialBuffer.get(serialIndex + i);
+            }
+        }
+        serialIndex += rawLength;
+        rawIndex = 0;
+        rawFullBytes = bitCount / BYTE_WIDTH;
+        rawTailBits = bitCount % BYTE_WIDTH;
+        if (Metrics.isEnabled()) {
+            Metrics.blockRead(BitBlock.INTEGER_SIZE_BYTES + rawLength);
+        }
+        return true;
+    }
+
+    /**
+     * Reads the next variable-length frame from the stream, growing the buffer if the frame does not fit.
+     */
+    private boolean nextFrame() {
+        try {
+            int first = frames.read();
+            if (first < 0) {
+                noMoreBlocks = true;
+                return false;
+            }
+            long bitCount = first & 0x7F;
+            for (int shift = 7; (first & 0x80) != 0; shift += 7) {
+                first = frames.read();
+                if (first < 0) {
+                    throw new EOFException("The stream ended part way through a frame");
+                } else if (shift > 28) {
+                    throw new IOException("Frame bit count is too long");
+                }
+                bitCount |= (long)(first & 0x7F) << shift;
+            }
+            if (bitCount > (long)frameSize * BYTE_WIDTH) {
+                throw new IOException("Frame bit count is out of range: " + bitCount);
+            }
+            int rawLength = (int)((bitCount + BYTE_WIDTH - 1) / BYTE_WIDTH);
+            if (raw.length < rawLength) {
+                raw = new byte[rawLength];
+                words = ByteBuffer.wrap(raw).order(ByteOrder.LITTLE_ENDIAN);
+            }
+            for (int offset = 0, read; offset < rawLength; offset += read) {
+                read = frames.read(raw, offset, rawLength - offset);
+                if (read < 0) {
+                    throw new EOFException("The stream ended part way through a frame");
+                }
+            }
+            rawIndex = 0;
+            rawFullBytes = (int)(bitCount / BYTE_WIDTH);
+            rawTailBits = (int)(bitCount % BYTE_WIDTH);
+            if (Metrics.isEnabled()) {
+                Metrics.blockRead(rawLength);
+            }
+            return true;
+        } catch (IOException e) {
+            throw new RuntimeException("Data failed to read due to a IO error", e);
+        }
+    }
+
+    private int serialByte(int index) {
+        return (serialBuffer == null ? serial[index] : serialBuffer.get(index)) & 0xFF;
+    }
+}
@@ -0,0 +1,137 @@
+package com.bitfracture.serial;
+
+import com.bitfracture.metrics.Metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Writes a bit stream as serialized BitBlocks, collecting bits in a 64-bit accumulator and moving them into the block
+ * buffer a whole 32-bit word at a time. The output is identical to pushing the same bits into a sequence of BitBlocks
+ * and writing each one with toSerial(): every block but the last is full, and bits are stored least significant bit
+ * of each byte first.
+ *
+ * A writer given a frame size instead writes variable-length frames: each holds up to that many bytes of bits and is
+ * preceded by its bit count as a VarInt rather than a fixed 4-byte int. The count is written into the space just
+ * before the frame's bits, so each frame still goes to the output in a single write.
+ */
+public class BitWriter {
+    private static final int BYTE_WIDTH = 8;
+    private static final int WORD_SIZE_BYTES = 4;
+    private static final int WORD_BITS = WORD_SIZE_BYTES * BYTE_WIDTH;
+
+    //A frame's bit count never needs more than this many VarInt bytes
+    private static final int MAX_FRAME_HEADER_SIZE = 5;
+
+    private OutputStream output;
+    private final boolean framed;
+    private final int headerSize;
+    private byte[] block;
+    private ByteBuffer words;
+    private int blockIndex;
+
+    private long accumulator = 0;
+    private int accumulatorBits = 0;
+
+    /**
+     * Creates a writer of 1 KiB BitBlocks, each with a 4-byte bit count.
+     */
+    public BitWriter(OutputStream output) {
+        this.output = output;
+        this.framed = false;
+        this.headerSize = BitBlock.INTEGER_SIZE_BYTES;
+        this.block = new byte[BitBlock.BLOCK_SIZE_BYTES];
+        this.words = ByteBuffer.wrap(block).order(ByteOrder.LITTLE_ENDIAN);
+        this.blockIndex = headerSize;
+    }
+
+    /**
+     * Creates a writer of variable-length frames, which BitReader reads back when given the same frame size.
+     *
+     * @param frameSize  The bytes of bits in every frame but the last
+     * @throws IllegalArgumentException  If the frame size is not valid for BitBlock.checkFrameSize()
+     */
+    public BitWriter(OutputStream output, int frameSize) {
+        BitBlock.checkFrameSize(frameSize);
+        this.output = output;
+        this.framed = true;
+        this.headerSize = MAX_FRAME_HEADER_SIZE;
+        this.block = new byte[MAX_FRAME_HEADER_SIZE + frameSize];
+        this.words = ByteBuffer.wrap(block).order(ByteOrder.LITTLE_ENDIAN);
+        this.blockIndex = headerSize;
+    }
+
+    /**
+     * Appends bits to the stream.
+     *
+     * @param bits  The bits to write, the first in the least significant position
+     * @param count  The number of bits to write, from 0 to 32
+     * @throws IOException  If a full block cannot be written to the output
+     */
+    public void write(long bits, int count) throws IOException {
+        accumulator |= (bits & ((1L << count) - 1)) << accumulatorBits;
+        accumulatorBits += count;
+        if (accumulatorBits >= WORD_BITS) {
+            words.putInt(blockIndex, (int)accumulator);
+            blockIndex += WORD_SIZE_BYTES;
+            accumulator >>>= WORD_BITS;
+            accumulatorBits -= WORD_BITS;
+            if (blockIndex == block.length) {
+                writeBlock((block.length - headerSize) * BYTE_WIDTH, block.length);
+            }
+        }
+    }
+
+    /**
+     * Writes the final, partially filled block (if there is one). The writer may continue to be used afterwards, in
+     * which case the next bit begins a new block.
+     *
+     * @throws IOException  If the block cannot be written to the output
+     */
+    public void finish() throws IOException {
+        int bitCount = (blockIndex - headerSize) * BYTE_WIDTH + accumulatorBits;
+        while (accumulatorBits > 0) {
+            block[blockIndex++] = (byte)accumulator;
+            accumulator >>>= BYTE_WIDTH;
+            accumulatorBits = Math.max(0, accumulatorBits - BYTE_WIDTH);
+        }
+        if (bitCount > 0) {
+            writeBlock(bitCount, blockIndex);
+        }
+    }
+
+    /**
+     * Drops any bits which have not yet been written out, so that the next bit begins a new block.
+     */
+    public void discard() {
+        blockIndex = headerSize;
+        accumulator = 0;
+        accumulatorBits = 0;
+    }
+
+    private void writeBlock(int bitCount, int length) throws IOException {
+        int start = 0;
+        if (framed) {
+            //Start the VarInt so that it ends where the bits begin
+            start = headerSize - 1;
+            for (int value = bitCount >>> 7; value > 0; value >>>= 7) {
+                start--;
+            }
+            int index = start;
+            int value = bitCount;
+            for (; value >= 0x80; value >>>= 7) {
+                block[index++] = (byte)(value & 0x7F | 0x80);
+            }
+            block[index] = (byte)value;
+        } else {
+            words.putInt(0, bitCount);
+        }
+        output.write(block, start, length - start);
+        blockIndex = headerSize;
+        if (Metrics.isEnabled()) {
+            Metrics.blockWritten(length - start);
+        }
+    }
+}
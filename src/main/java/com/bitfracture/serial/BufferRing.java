@@ -0,0 +1,115 @@
+package com.bitfracture.serial;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A fixed set of large buffers passed between two threads: the producer takes an empty buffer, fills it and hands it
+ * over, and the consumer takes filled buffers in order and recycles each once it is done with it. Both queues are
+ * bounded by the number of buffers, so a producer that gets ahead waits for a buffer to be recycled, and no buffer is
+ * ever allocated after the ring is made.
+ */
+class BufferRing {
+    /**
+     * A buffer and the number of bytes it holds.
+     */
+    static class Buffer {
+        final byte[] data;
+        int length;
+
+        Buffer(byte[] data) {
+            this.data = data;
+        }
+    }
+
+    private static final Buffer END = new Buffer(new byte[0]);
+
+    private final BlockingQueue<Buffer> empty;
+    private final BlockingQueue<Buffer> filled;
+    private volatile IOException failure;
+
+    /**
+     * @throws IllegalArgumentException  If either the size or count is not positive
+     */
+    BufferRing(int bufferSize, int bufferCount) {
+        if (bufferSize < 1 || bufferCount < 1) {
+            throw new IllegalArgumentException("Buffer size and count must both be positive");
+        }
+        empty = new ArrayBlockingQueue<>(bufferCount);
+        //One more slot than there are buffers, so the end of the data can always be marked without waiting
+        filled = new ArrayBlockingQueue<>(bufferCount + 1);
+        for (int i = 0; i < bufferCount; i++) {
+            empty.add(new Buffer(new byte[bufferSize]));
+        }
+    }
+
+    /**
+     * Waits for an empty buffer.
+     */
+    Buffer takeEmpty() throws IOException {
+        try {
+            Buffer buffer = empty.take();
+            buffer.length = 0;
+            return buffer;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for an empty buffer");
+        }
+    }
+
+    /**
+     * Hands a filled buffer to the consumer. The queue always has room, since it holds more slots than there are
+     * buffers.
+     */
+    void putFilled(Buffer buffer) {
+        filled.add(buffer);
+    }
+
+    /**
+     * Waits for the next filled buffer.
+     *
+     * @return  The buffer, or null once the producer has finished and every buffer before that has been taken
+     * @throws IOException  If the producer failed, once every buffer it filled before that has been taken
+     */
+    Buffer takeFilled() throws IOException {
+        try {
+            Buffer buffer = filled.take();
+            if (buffer == END) {
+                //Leave the marker for any later call
+                filled.add(END);
+                if (failure != null) {
+                    throw new IOException(failure.getMessage(), failure);
+                }
+                return null;
+            }
+            return buffer;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a filled buffer");
+        }
+    }
+
+    /**
+     * Returns a buffer taken with takeFilled(), so that the producer can fill it again.
+     */
+    void recycle(Buffer buffer) {
+        empty.add(buffer);
+    }
+
+    /**
+     * Marks the end of the data, after the buffers already handed over.
+     */
+    void finish() {
+        filled.add(END);
+    }
+
+    /**
+     * Marks the end of the data with a failure, which the consumer sees once it has taken the buffers before it.
+     */
+    void fail(IOException e) {
+        failure = e;
+        finish();
+    }
+}
@@ -0,0 +1,43 @@
+package com.bitfracture.serial;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes into the remaining space of a ByteBuffer (heap or direct), advancing its position as bytes are written. The
+ * buffer can be swapped for another with reset(), so that one stream (and whatever is wrapped around it) can be reused
+ * for any number of outputs without allocating. Writing past the buffer's limit throws rather than growing it.
+ */
+public class ByteBufferOutputStream extends OutputStream {
+    private ByteBuffer buffer = ByteBuffer.allocate(0);
+
+    public ByteBufferOutputStream() {}
+
+    public ByteBufferOutputStream(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Directs further writes to the given buffer, starting at its position.
+     */
+    public void reset(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * @throws java.nio.BufferOverflowException  If the buffer is full
+     */
+    @Override
+    public void write(int byt) {
+        buffer.put((byte)byt);
+    }
+
+    /**
+     * @throws java.nio.BufferOverflowException  If the data does not fit in what remains of the buffer, in which case
+     *     none of it is written
+     */
+    @Override
+    public void write(byte[] data, int offset, int length) {
+        buffer.put(data, offset, length);
+    }
+}
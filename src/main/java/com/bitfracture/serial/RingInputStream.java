@@ -0,0 +1,149 @@
+package com.bitfracture.serial;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Reads a stream ahead on a thread of its own, so that waiting on slow storage overlaps with whatever the reading
+ * thread does with the data. The reader stage fills large buffers from the source and queues them in a BufferRing;
+ * once every buffer is full and waiting, it stops reading until one is recycled. Each buffer is filled completely
+ * before it is handed over (except at the end of the source), so the stream suits bulk data rather than interactive
+ * streams which trickle in.
+ *
+ * A failure to read the source is thrown by this stream's read methods once the data before it has been read.
+ * Closing the stream stops the reader stage and closes the source.
+ */
+public class RingInputStream extends InputStream {
+    public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+    public static final int DEFAULT_BUFFER_COUNT = 4;
+
+    private final InputStream source;
+    private final BufferRing ring;
+    private final Future<?> reader;
+    private BufferRing.Buffer current;
+    private int position = 0;
+    private boolean ended = false;
+    private boolean closed = false;
+
+    public RingInputStream(InputStream source, ExecutorService executor) {
+        this(source, executor, DEFAULT_BUFFER_SIZE, DEFAULT_BUFFER_COUNT);
+    }
+
+    /**
+     * @param source  The stream to read ahead
+     * @param executor  The executor to run the reader stage on, which holds one of its threads until the source ends
+     *     or this stream is closed
+     * @param bufferSize  The size of each buffer
+     * @param bufferCount  The number of buffers, which bounds how far the reader stage may get ahead
+     */
+    public RingInputStream(InputStream source, ExecutorService executor, int bufferSize, int bufferCount) {
+        this.source = source;
+        this.ring = new BufferRing(bufferSize, bufferCount);
+        this.reader = executor.submit(this::readAll);
+    }
+
+    /**
+     * The reader stage: fills buffers from the source until it ends.
+     */
+    private void readAll() {
+        BufferRing.Buffer buffer = null;
+        try {
+            while (true) {
+                buffer = ring.takeEmpty();
+                byte[] data = buffer.data;
+                for (int read; buffer.length < data.length
+                        && (read = source.read(data, buffer.length, data.length - buffer.length)) >= 0;) {
+                    buffer.length += read;
+                }
+                boolean full = buffer.length == data.length;
+                if (buffer.length > 0) {
+                    ring.putFilled(buffer);
+                }
+                buffer = null;
+                if (!full) {
+                    ring.finish();
+                    return;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            //Pass on whatever was read before the failure
+            if (buffer != null && buffer.length > 0) {
+                ring.putFilled(buffer);
+            }
+            ring.fail(e instanceof IOException ? (IOException)e : new IOException("The reader stage failed", e));
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return current.data[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] data, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        } else if (!fill()) {
+            return -1;
+        }
+        int count = Math.min(length, current.length - position);
+        System.arraycopy(current.data, position, data, offset, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int available() throws IOException {
+        ensureOpen();
+        return current == null ? 0 : current.length - position;
+    }
+
+    /**
+     * Stops the reader stage and closes the source.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        reader.cancel(true);
+        source.close();
+    }
+
+    /**
+     * Makes sure there is at least one unread byte in the current buffer, recycling finished buffers as it goes.
+     *
+     * @return  Whether there is, which is false only at the end of the source
+     */
+    private boolean fill() throws IOException {
+        ensureOpen();
+        if (current != null && position < current.length) {
+            return true;
+        } else if (ended) {
+            return false;
+        }
+        if (current != null) {
+            ring.recycle(current);
+            current = null;
+        }
+        current = ring.takeFilled();
+        position = 0;
+        if (current == null) {
+            ended = true;
+            return false;
+        }
+        return true;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("The stream is closed");
+        }
+    }
+}
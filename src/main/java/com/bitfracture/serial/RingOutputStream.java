@@ -0,0 +1,159 @@
+package com.bitfracture.serial;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Writes to a stream from a thread of its own, so that waiting on slow storage overlaps with whatever the writing
+ * thread does next. Written bytes are collected in large buffers which a writer stage takes from a BufferRing and
+ * writes to the sink one whole buffer at a time. Once every buffer is full and waiting, writes to this stream wait for
+ * the writer stage to recycle one.
+ *
+ * A failure to write the sink is thrown by the next write to this stream, or by close(). Closing the stream waits for
+ * everything written to reach the sink, then flushes and closes it.
+ */
+public class RingOutputStream extends OutputStream {
+    public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+    public static final int DEFAULT_BUFFER_COUNT = 4;
+
+    private final OutputStream sink;
+    private final BufferRing ring;
+    private final Future<?> writer;
+    private volatile IOException failure;
+    private BufferRing.Buffer current;
+    private boolean closed = false;
+
+    public RingOutputStream(OutputStream sink, ExecutorService executor) {
+        this(sink, executor, DEFAULT_BUFFER_SIZE, DEFAULT_BUFFER_COUNT);
+    }
+
+    /**
+     * @param sink  The stream to write to
+     * @param executor  The executor to run the writer stage on, which holds one of its threads until this stream is
+     *     closed
+     * @param bufferSize  The size of each buffer
+     * @param bufferCount  The number of buffers, which bounds how far the writing thread may get ahead
+     */
+    public RingOutputStream(OutputStream sink, ExecutorService executor, int bufferSize, int bufferCount) {
+        this.sink = sink;
+        this.ring = new BufferRing(bufferSize, bufferCount);
+        this.writer = executor.submit(() -> {
+            writeAll();
+            return null;
+        });
+    }
+
+    /**
+     * The writer stage: writes buffers to the sink until the end is marked. After a failure, the remaining buffers are
+     * still taken and recycled, so that the writing thread never waits for a buffer which will not come back.
+     */
+    private void writeAll() throws IOException {
+        for (BufferRing.Buffer buffer; (buffer = ring.takeFilled()) != null;) {
+            try {
+                if (failure == null) {
+                    sink.write(buffer.data, 0, buffer.length);
+                }
+            } catch (IOException | RuntimeException e) {
+                failure = e instanceof IOException ? (IOException)e : new IOException("The writer stage failed", e);
+            }
+            ring.recycle(buffer);
+        }
+    }
+
+    @Override
+    public void write(int byt) throws IOException {
+        ensureWritable();
+        current.data[current.length++] = (byte)byt;
+        if (current.length == current.data.length) {
+            handOver();
+        }
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        while (length > 0) {
+            ensureWritable();
+            int count = Math.min(length, current.data.length - current.length);
+            System.arraycopy(data, offset, current.data, current.length, count);
+            current.length += count;
+            offset += count;
+            length -= count;
+            if (current.length == current.data.length) {
+                handOver();
+            }
+        }
+    }
+
+    /**
+     * Hands any partly filled buffer to the writer stage. This does not wait for it to be written; close() does.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        if (current != null && current.length > 0) {
+            handOver();
+        }
+    }
+
+    /**
+     * Waits for everything written to reach the sink, then flushes and closes the sink. The sink is closed even if the
+     * writer stage failed.
+     *
+     * @throws IOException  If the sink failed at any point
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            try {
+                flush();
+                ring.finish();
+                writer.get();
+            } catch (InterruptedException e) {
+                writer.cancel(true);
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the writer stage");
+            } catch (ExecutionException e) {
+                throw new IOException("The writer stage failed", e.getCause());
+            } finally {
+                closed = true;
+            }
+            if (failure != null) {
+                throw new IOException(failure.getMessage(), failure);
+            }
+            sink.flush();
+        } finally {
+            sink.close();
+        }
+    }
+
+    private void handOver() {
+        ring.putFilled(current);
+        current = null;
+    }
+
+    /**
+     * Makes sure there is a buffer with room in it, and that the sink has not failed.
+     */
+    private void ensureWritable() throws IOException {
+        ensureOpen();
+        if (failure != null) {
+            throw new IOException(failure.getMessage(), failure);
+        }
+        if (current == null) {
+            current = ring.takeEmpty();
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("The stream is closed");
+        }
+    }
+}
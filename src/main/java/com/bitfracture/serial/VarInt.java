@@ -0,0 +1,63 @@
+package com.bitfracture.serial;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Reads and writes unsigned variable-length integers: seven bits per byte, least significant group first, with the
+ * high bit of each byte set when another byte follows. Small values, which are the common case for lengths, take a
+ * single byte.
+ */
+public class VarInt {
+    private static final int MAX_LONG_BYTES = 10;
+
+    private VarInt() {}
+
+    /**
+     * @param value  A non-negative value to write
+     * @throws IOException  If the stream fails
+     */
+    public static void write(OutputStream output, long value) throws IOException {
+        if (value < 0) {
+            throw new IllegalArgumentException("Only non-negative values can be written: " + value);
+        }
+        while (value >= 0x80) {
+            output.write((int)(value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.write((int)value);
+    }
+
+    /**
+     * @throws IOException  If the stream fails, ends part way through the value, or holds an over-long value
+     */
+    public static long read(InputStream input) throws IOException {
+        long value = 0;
+        for (int i = 0; i < MAX_LONG_BYTES; i++) {
+            int byt = input.read();
+            if (byt < 0) {
+                throw new EOFException("The stream ended part way through a variable-length integer");
+            }
+            value |= (long)(byt & 0x7F) << (7 * i);
+            if ((byt & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Variable-length integer is too long");
+    }
+
+    /**
+     * Reads a value which must fit in a non-negative int.
+     *
+     * @throws IOException  If the stream fails, or the value is out of range
+     */
+    public static int readInt(InputStream input) throws IOException {
+        long value = read(input);
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new IOException("Variable-length integer is out of range: " + value);
+        }
+        return (int)value;
+    }
+}
@@ -0,0 +1,101 @@
+package com.bitfracture.filter;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+class FilterChainUnitTests {
+    @Test
+    void testEachFilterRoundTrips() throws IOException {
+        byte[] data = sample();
+        for (ByteFilter filter : new ByteFilter[] {new RunLengthFilter(), new MoveToFrontFilter(), new DeltaFilter()}) {
+            Assertions.assertArrayEquals(data, roundTrip(new FilterChain(filter), data), filter.getClass().getName());
+        }
+        Assertions.assertArrayEquals(data, roundTrip(FilterChain.NONE, data));
+    }
+
+    @Test
+    void testChainRoundTrips() throws IOException {
+        byte[] data = sample();
+        FilterChain chain = new FilterChain(new DeltaFilter(), new MoveToFrontFilter(), new RunLengthFilter());
+        Assertions.assertArrayEquals(data, roundTrip(chain, data));
+
+        FilterChain loaded = FilterChain.fromSerialStream(new ByteArrayInputStream(chain.toSerial()));
+        Assertions.assertEquals(chain.toString(), loaded.toString());
+        Assertions.assertArrayEquals(chain.toSerial(), loaded.toSerial());
+        Assertions.assertThrows(IOException.class,
+                () -> FilterChain.fromSerialStream(new ByteArrayInputStream(new byte[] {1, 99})));
+        Assertions.assertThrows(IOException.class,
+                () -> FilterChain.fromSerialStream(new ByteArrayInputStream(new byte[] {2, 1})));
+    }
+
+    @Test
+    void testRunLengthBoundaries() throws IOException {
+        //Runs either side of the threshold and of the longest run one count can cover
+        for (int length : new int[] {0, 1, 3, 4, 5, 258, 259, 260, 263, 264, 1000}) {
+            byte[] data = new byte[length + 2];
+            data[length] = 1;
+            data[length + 1] = 1;
+            byte[] filtered = filter(new FilterChain(new RunLengthFilter()), data);
+            Assertions.assertArrayEquals(data, restore(new FilterChain(new RunLengthFilter()), filtered),
+                    "Run of " + length);
+        }
+        byte[] zeros = new byte[100000];
+        Assertions.assertTrue(filter(new FilterChain(new RunLengthFilter()), zeros).length < zeros.length / 50);
+    }
+
+    @Test
+    void testSingleByteWrites() throws IOException {
+        byte[] data = sample();
+        FilterChain chain = new FilterChain(new MoveToFrontFilter(), new RunLengthFilter());
+        ByteArrayOutputStream filtered = new ByteArrayOutputStream();
+        try (OutputStream encoder = chain.encoder(filtered)) {
+            for (byte byt : data) {
+                encoder.write(byt);
+            }
+        }
+        Assertions.assertArrayEquals(filter(chain, data), filtered.toByteArray());
+    }
+
+    private static byte[] sample() {
+        Random random = new Random(17);
+        byte[] data = new byte[50000];
+        for (int i = 0; i < data.length;) {
+            //Alternate runs, a slow ramp, and noise
+            int length = Math.min(data.length - i, 1 + random.nextInt(600));
+            int kind = random.nextInt(3);
+            int value = random.nextInt(256);
+            for (int end = i + length; i < end; i++) {
+                data[i] = (byte)(kind == 0 ? value : kind == 1 ? value + i / 7 : random.nextInt(256));
+            }
+        }
+        return data;
+    }
+
+    private static byte[] roundTrip(FilterChain chain, byte[] data) throws IOException {
+        return restore(chain, filter(chain, data));
+    }
+
+    private static byte[] filter(FilterChain chain, byte[] data) throws IOException {
+        ByteArrayOutputStream filtered = new ByteArrayOutputStream();
+        try (OutputStream encoder = chain.encoder(filtered)) {
+            encoder.write(data);
+        }
+        return filtered.toByteArray();
+    }
+
+    private static byte[] restore(FilterChain chain, byte[] filtered) throws IOException {
+        ByteArrayOutputStream restored = new ByteArrayOutputStream();
+        try (OutputStream decoder = chain.decoder(restored)) {
+            //Split the writes so that filter state must carry across them
+            decoder.write(filtered, 0, filtered.length / 3);
+            decoder.write(filtered, filtered.length / 3, filtered.length - filtered.length / 3);
+        }
+        return restored.toByteArray();
+    }
+}
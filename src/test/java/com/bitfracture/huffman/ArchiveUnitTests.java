@@ -0,0 +1,242 @@
+package com.bitfracture.huffman;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+class ArchiveUnitTests {
+    @Test
+    void testArchiveAndExtract() throws IOException {
+        Path work = Files.createTempDirectory("archive");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Path logs = Files.createDirectories(work.resolve("in/logs/2024"));
+            Random random = new Random(11);
+            for (int i = 0; i < 40; i++) {
+                StringBuilder text = new StringBuilder();
+                for (int line = 0; line < i * 10; line++) {
+                    text.append("INFO request ").append(random.nextInt(1000)).append(" served\n");
+                }
+                Files.write(logs.resolve("app" + i + ".log"), text.toString().getBytes(StandardCharsets.US_ASCII));
+            }
+            byte[] noise = new byte[5000];
+            random.nextBytes(noise);
+            Path single = Files.write(work.resolve("in/noise.bin"), noise);
+
+            Path archive = work.resolve("out.huf");
+            List<ArchiveEntry> written;
+            try (OutputStream out = Files.newOutputStream(archive)) {
+                //Fewer files in flight than there are files, so writing must wait on compression
+                written = new ArchiveWriter(executor, 3).write(Arrays.asList(work.resolve("in/logs"), single), out);
+            }
+            Assertions.assertEquals(41, written.size());
+            Assertions.assertEquals("logs/2024/app0.log", written.get(0).getName());
+            Assertions.assertFalse(written.get(40).isCompressed());
+            Assertions.assertTrue(written.get(39).isCompressed());
+            Assertions.assertTrue(written.get(39).getCompressedSize() < written.get(39).getSize());
+
+            try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.READ)) {
+                ArchiveReader reader = ArchiveReader.open(channel);
+                Assertions.assertEquals(written.stream().map(ArchiveEntry::getName).collect(Collectors.toList()),
+                        reader.getEntries().stream().map(ArchiveEntry::getName).collect(Collectors.toList()));
+
+                //A single file can be extracted on its own
+                ByteArrayOutputStream one = new ByteArrayOutputStream();
+                reader.extract(reader.getEntry("logs/2024/app17.log").get(), one);
+                Assertions.assertArrayEquals(Files.readAllBytes(logs.resolve("app17.log")), one.toByteArray());
+                Assertions.assertFalse(reader.getEntry("logs/missing.log").isPresent());
+
+                Path extracted = work.resolve("extracted");
+                reader.extractAll(extracted, executor);
+                Assertions.assertArrayEquals(noise, Files.readAllBytes(extracted.resolve("noise.bin")));
+                for (int i = 0; i < 40; i++) {
+                    Assertions.assertArrayEquals(Files.readAllBytes(logs.resolve("app" + i + ".log")),
+                            Files.readAllBytes(extracted.resolve("logs/2024/app" + i + ".log")));
+                }
+            }
+
+            //Damage to a file is caught when it is extracted
+            byte[] damaged = Files.readAllBytes(archive);
+            ArchiveEntry stored = written.get(40);
+            damaged[(int)stored.getPosition()] ^= 1;
+            Files.write(archive, damaged);
+            try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.READ)) {
+                ArchiveReader reader = ArchiveReader.open(channel);
+                Assertions.assertThrows(IOException.class,
+                        () -> reader.extract(reader.getEntry("noise.bin").get(), new ByteArrayOutputStream()));
+            }
+        } finally {
+            executor.shutdownNow();
+            try (Stream<Path> walk = Files.walk(work)) {
+                for (Path path : walk.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testLargeFilesAreStreamed() throws IOException {
+        Path work = Files.createTempDirectory("archive");
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Random random = new Random(23);
+            StringBuilder text = new StringBuilder();
+            while (text.length() < 300000) {
+                text.append("WARN disk ").append(random.nextInt(50)).append(" slow\n");
+            }
+            Path large = Files.write(work.resolve("large.log"), text.toString().getBytes(StandardCharsets.US_ASCII));
+            byte[] noise = new byte[200000];
+            random.nextBytes(noise);
+            Path incompressible = Files.write(work.resolve("noise.bin"), noise);
+            Path small = Files.write(work.resolve("small.log"), "INFO started\n".getBytes(StandardCharsets.US_ASCII));
+
+            //Anything over 100 KB is compressed through a temporary file rather than in memory
+            Path archive = work.resolve("out.huf");
+            List<ArchiveEntry> written;
+            try (OutputStream out = Files.newOutputStream(archive)) {
+                written = new ArchiveWriter(executor, 2, 100000).write(Arrays.asList(large, incompressible, small),
+                        out);
+            }
+            Assertions.assertTrue(written.get(0).isCompressed());
+            Assertions.assertFalse(written.get(1).isCompressed());
+
+            Path extracted = work.resolve("extracted");
+            try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.READ)) {
+                ArchiveReader.open(channel).extractAll(extracted, executor);
+            }
+            for (Path file : Arrays.asList(large, incompressible, small)) {
+                Assertions.assertArrayEquals(Files.readAllBytes(file),
+                        Files.readAllBytes(extracted.resolve(file.getFileName())));
+            }
+        } finally {
+            executor.shutdownNow();
+            try (Stream<Path> walk = Files.walk(work)) {
+                for (Path path : walk.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testDuplicateNamesAreRejected() throws IOException {
+        Path first = Files.createTempDirectory("archive");
+        Path second = Files.createTempDirectory("archive");
+        try {
+            Path a = Files.write(first.resolve("same.txt"), new byte[] {1});
+            Path b = Files.write(second.resolve("same.txt"), new byte[] {2});
+            Assertions.assertThrows(IllegalArgumentException.class,
+                    () -> ArchiveWriter.collect(Arrays.asList(a, b)));
+            Files.delete(a);
+            Files.delete(b);
+        } finally {
+            Files.delete(first);
+            Files.delete(second);
+        }
+    }
+
+    @Test
+    void testEntriesOutsideTheDirectoryAreRefused() throws IOException {
+        Path work = Files.createTempDirectory("archive");
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Path archive = Files.write(work.resolve("evil.huf"), storedArchive("safe.txt", "../evil.txt"));
+            Path out = work.resolve("out");
+            try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.READ)) {
+                ArchiveReader reader = ArchiveReader.open(channel);
+                Assertions.assertThrows(IOException.class,
+                        () -> reader.extract(reader.getEntry("../evil.txt").get(), out));
+                //Extracting everything refuses before writing any file, even those which are safe
+                Assertions.assertThrows(IOException.class, () -> reader.extractAll(out, executor));
+                Assertions.assertFalse(Files.exists(out.resolve("safe.txt")));
+
+                Path safe = reader.extract(reader.getEntry("safe.txt").get(), out);
+                Assertions.assertArrayEquals("safe.txt".getBytes(StandardCharsets.UTF_8), Files.readAllBytes(safe));
+            }
+            Assertions.assertFalse(Files.exists(work.resolve("evil.txt")));
+        } finally {
+            executor.shutdownNow();
+            try (Stream<Path> walk = Files.walk(work)) {
+                for (Path path : walk.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testInvalidArchivesAreRejected() throws IOException {
+        Path work = Files.createTempDirectory("archive");
+        try {
+            byte[] valid = storedArchive("a.txt", "b.txt");
+            byte[] duplicated = storedArchive("a.txt", "a.txt");
+            byte[] truncated = Arrays.copyOf(valid, valid.length - 1);
+            //Only the header, so that there is no room for a footer
+            byte[] headerOnly = Arrays.copyOf(valid, HuffmanTranslator.ARCHIVE_HEADER.length + 3);
+            byte[] badTrailer = valid.clone();
+            badTrailer[badTrailer.length - 1] ^= 1;
+            for (byte[] data : new byte[][] {duplicated, truncated, headerOnly, badTrailer}) {
+                Path archive = Files.write(work.resolve("bad.huf"), data);
+                try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.READ)) {
+                    Assertions.assertThrows(IOException.class, () -> ArchiveReader.open(channel));
+                }
+                Files.delete(archive);
+            }
+        } finally {
+            Files.delete(work);
+        }
+    }
+
+    /**
+     * @return  An archive of stored files with the given names, each holding its own name as its contents
+     */
+    private static byte[] storedArchive(String... names) throws IOException {
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        archive.write(HuffmanTranslator.ARCHIVE_HEADER);
+        ByteArrayOutputStream directory = new ByteArrayOutputStream();
+        for (String name : names) {
+            byte[] data = name.getBytes(StandardCharsets.UTF_8);
+            CRC32 crc = new CRC32();
+            crc.update(data, 0, data.length);
+            directory.write(ByteBuffer.allocate(ArchiveWriter.DIRECTORY_ENTRY_SIZE + data.length)
+                    .order(ByteOrder.LITTLE_ENDIAN)
+                    .putShort((short)data.length)
+                    .put(data)
+                    .put((byte)ArchiveWriter.METHOD_STORED)
+                    .putLong(archive.size())
+                    .putLong(data.length)
+                    .putLong(data.length)
+                    .putInt((int)crc.getValue())
+                    .array());
+            archive.write(data);
+        }
+        long directoryPosition = archive.size();
+        directory.writeTo(archive);
+        archive.write(ByteBuffer.allocate(ArchiveWriter.FOOTER_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+                .putLong(directoryPosition)
+                .putInt(names.length)
+                .put(HuffmanTranslator.ARCHIVE_HEADER)
+                .array());
+        return archive.toByteArray();
+    }
+}
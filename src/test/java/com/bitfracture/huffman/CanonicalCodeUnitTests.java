@@ -0,0 +1,49 @@
+package com.bitfracture.huffman;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+class CanonicalCodeUnitTests {
+    @Test
+    void testCanonicalSerialize() throws IOException {
+        byte[] rawData = "Canonical codes only need their lengths to be stored".getBytes(StandardCharsets.US_ASCII);
+        HuffmanTree tree = HuffmanTree.fromDataStream(new ByteArrayInputStream(rawData));
+        CanonicalCode code = tree.getCanonicalCode().get();
+
+        byte[] serial = code.toSerial();
+        Assertions.assertEquals(1 + 32 * serial[0], serial.length);
+        CanonicalCode newCode = CanonicalCode.fromSerialStream(new DataInputStream(new ByteArrayInputStream(serial)));
+
+        //The tree paths must spell out exactly the canonical codes
+        Map<Byte, List<Boolean>> translator = tree.toMap();
+        for (int symbol = 0; symbol < CanonicalCode.SYMBOL_COUNT; symbol++) {
+            Assertions.assertEquals(code.getLength(symbol), newCode.getLength(symbol));
+            Assertions.assertEquals(code.getCode(symbol), newCode.getCode(symbol));
+            List<Boolean> bits = translator.get((byte)symbol);
+            if (code.getLength(symbol) == 0) {
+                Assertions.assertNull(bits);
+                continue;
+            }
+            Assertions.assertEquals(code.getLength(symbol), bits.size());
+            for (int i = 0; i < bits.size(); i++) {
+                Assertions.assertEquals((code.getCode(symbol) >>> (bits.size() - i - 1) & 1) == 1, bits.get(i));
+            }
+        }
+    }
+
+    @Test
+    void testOversubscribedLengthsRejected() {
+        int[] lengths = new int[CanonicalCode.SYMBOL_COUNT];
+        lengths[0] = 1;
+        lengths[1] = 1;
+        lengths[2] = 1;
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CanonicalCode.fromLengths(lengths));
+    }
+}
@@ -0,0 +1,78 @@
+package com.bitfracture.huffman;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+class ChunkPlannerUnitTests {
+    @Test
+    void testPlanChoices() {
+        byte[] text = "the quick brown fox jumps over the lazy dog ".getBytes(StandardCharsets.US_ASCII);
+        Histogram textCounts = new Histogram();
+        for (int i = 0; i < 200; i++) {
+            textCounts.add(text, 0, text.length);
+        }
+        ChunkPlanner.Plan first = ChunkPlanner.plan(textCounts, null);
+        Assertions.assertEquals(HuffmanOutputStream.CHUNK_NEW_CODE, first.getChunkType());
+
+        //The same distribution again cannot justify paying for another header
+        ChunkPlanner.Plan second = ChunkPlanner.plan(textCounts, first.getCode());
+        Assertions.assertEquals(HuffmanOutputStream.CHUNK_REUSE_CODE, second.getChunkType());
+        Assertions.assertSame(first.getCode(), second.getCode());
+
+        byte[] noise = new byte[8192];
+        new Random(17).nextBytes(noise);
+        Histogram noiseCounts = new Histogram();
+        noiseCounts.add(noise, 0, noise.length);
+        Assertions.assertEquals(HuffmanOutputStream.CHUNK_STORED,
+                ChunkPlanner.plan(noiseCounts, first.getCode()).getChunkType());
+    }
+
+    @Test
+    void testPlanSampled() {
+        byte[] text = "the quick brown fox jumps over the lazy dog ".getBytes(StandardCharsets.US_ASCII);
+        Histogram textCounts = new Histogram();
+        for (int i = 0; i < 200; i++) {
+            textCounts.add(text, 0, text.length);
+        }
+        CanonicalCode trained = HuffmanTree.fromHistogram(textCounts, CanonicalCode.MAX_CODE_LENGTH)
+                .getCanonicalCode()
+                .get();
+
+        //The trained code is sent with the first chunk, then reused while the data looks the same
+        ChunkPlanner.Plan first = ChunkPlanner.planSampled(textCounts, null, trained, 0.05);
+        Assertions.assertEquals(HuffmanOutputStream.CHUNK_NEW_CODE, first.getChunkType());
+        Assertions.assertSame(trained, first.getCode());
+        ChunkPlanner.Plan second = ChunkPlanner.planSampled(textCounts, trained, trained, 0.05);
+        Assertions.assertEquals(HuffmanOutputStream.CHUNK_REUSE_CODE, second.getChunkType());
+
+        //Digits have no code in the trained one, so the chunk drifts and gets a code of its own
+        byte[] digits = "0123456789".getBytes(StandardCharsets.US_ASCII);
+        Histogram digitCounts = new Histogram();
+        for (int i = 0; i < 500; i++) {
+            digitCounts.add(digits, 0, (i % digits.length) + 1);
+        }
+        ChunkPlanner.Plan drifted = ChunkPlanner.planSampled(digitCounts, trained, trained, 0.05);
+        Assertions.assertEquals(HuffmanOutputStream.CHUNK_NEW_CODE, drifted.getChunkType());
+        Assertions.assertNotSame(trained, drifted.getCode());
+    }
+
+    @Test
+    void testAdaptiveNeverGrows() throws IOException {
+        byte[] rawData = new byte[100000];
+        new Random(19).nextBytes(rawData);
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        HuffmanTranslator.encodeAdaptive(new ByteArrayInputStream(rawData), encoded, 10000);
+
+        //Header, end marker, and per-chunk type and length only
+        Assertions.assertTrue(encoded.size() <= rawData.length + 5 + 10 * 4);
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        HuffmanTranslator.decode(new ByteArrayInputStream(encoded.toByteArray()), decoded);
+        Assertions.assertArrayEquals(rawData, decoded.toByteArray());
+    }
+}
@@ -0,0 +1,60 @@
+package com.bitfracture.huffman;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+class ContextModelUnitTests {
+    @Test
+    void testContextModelBeatsOrderZero() throws IOException {
+        //Each character strongly predicts the next, which an order-0 code cannot take advantage of
+        String[] words = {"quartz ", "jackdaw ", "sphinx ", "vow ", "black ", "judge ", "my ", "love "};
+        Random random = new Random(23);
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 200000) {
+            text.append(words[random.nextInt(words.length)]);
+        }
+        byte[] rawData = text.toString().getBytes(StandardCharsets.US_ASCII);
+
+        ContextModel model = HuffmanTranslator.generateContextModel(new ByteArrayInputStream(rawData));
+        Assertions.assertTrue(model.getClusterCount() > 1);
+        ByteArrayOutputStream contextEncoded = new ByteArrayOutputStream();
+        HuffmanTranslator.encode(model, new ByteArrayInputStream(rawData), contextEncoded);
+
+        ByteArrayOutputStream plainEncoded = new ByteArrayOutputStream();
+        HuffmanTranslator.encode(HuffmanTranslator.generateTree(new ByteArrayInputStream(rawData)),
+                new ByteArrayInputStream(rawData), plainEncoded);
+        Assertions.assertTrue(contextEncoded.size() < plainEncoded.size() * 3 / 4);
+
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        HuffmanTranslator.decode(new ByteArrayInputStream(contextEncoded.toByteArray()), decoded);
+        Assertions.assertArrayEquals(rawData, decoded.toByteArray());
+    }
+
+    @Test
+    void testSerialRoundTrip() throws IOException {
+        byte[] rawData = "abababababcdcdcdcdcd\u0000\u0000\u0000xyz".getBytes(StandardCharsets.US_ASCII);
+        ContextModel model = ContextModel.fromStream(new ByteArrayInputStream(rawData));
+        ContextModel read = ContextModel.fromSerialStream(
+                new DataInputStream(new ByteArrayInputStream(model.toSerial())));
+        Assertions.assertEquals(model.getClusterCount(), read.getClusterCount());
+        for (int context = 0; context < ContextModel.CONTEXT_COUNT; context++) {
+            Assertions.assertEquals(model.getCluster(context), read.getCluster(context));
+        }
+        Assertions.assertArrayEquals(model.toSerial(), read.toSerial());
+
+        byte[] empty = new byte[0];
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        HuffmanTranslator.encode(ContextModel.fromStream(new ByteArrayInputStream(empty)),
+                new ByteArrayInputStream(empty), encoded);
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        HuffmanTranslator.decode(new ByteArrayInputStream(encoded.toByteArray()), decoded);
+        Assertions.assertEquals(0, decoded.size());
+    }
+}
@@ -0,0 +1,100 @@
+package com.bitfracture.huffman;
+
+import com.bitfracture.filter.DeltaFilter;
+import com.bitfracture.filter.FilterChain;
+import com.bitfracture.filter.RunLengthFilter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+class FilterSelectorUnitTests {
+    @Test
+    void testSelectsDeltaForRamps() throws IOException {
+        byte[] data = new byte[100000];
+        Random random = new Random(5);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte)(i / 3 + random.nextInt(3));
+        }
+        FilterChain chain = assertEncodeDecode(data);
+        Assertions.assertTrue(chain.getFilters().get(0) instanceof DeltaFilter, chain.toString());
+    }
+
+    @Test
+    void testSelectsRunLengthForRuns() throws IOException {
+        byte[] data = new byte[100000];
+        Random random = new Random(6);
+        for (int i = 0; i < data.length; i += 500) {
+            data[i] = (byte)random.nextInt(256);
+        }
+        FilterChain chain = assertEncodeDecode(data);
+        Assertions.assertTrue(chain.getFilters().stream().anyMatch(filter -> filter instanceof RunLengthFilter),
+                chain.toString());
+    }
+
+    @Test
+    void testLeavesTextUnfiltered() throws IOException {
+        String[] words = "the quick brown fox jumps over a lazy dog while seven wizards quietly hex jolly".split(" ");
+        StringBuilder text = new StringBuilder();
+        Random random = new Random(7);
+        for (int i = 0; i < 20000; i++) {
+            text.append(words[random.nextInt(words.length)]).append(random.nextInt(10) == 0 ? ".\n" : " ");
+        }
+        Assertions.assertTrue(assertEncodeDecode(text.toString().getBytes(StandardCharsets.US_ASCII))
+                .getFilters().isEmpty());
+    }
+
+    @Test
+    void testCountsTheWholeOfLargeInputs() throws IOException {
+        //Ramps for the sample, then noise, which the chain chosen from the sample must still count in full
+        byte[] data = new byte[FilterSelector.SAMPLE_SIZE * 2 + 12345];
+        Random random = new Random(8);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte)(i < FilterSelector.SAMPLE_SIZE ? i / 3 : random.nextInt(256));
+        }
+        FilterSelector selector = FilterSelector.fromStream(new ByteArrayInputStream(data));
+        FilterChain chain = selector.getFilters();
+        Assertions.assertTrue(chain.getFilters().get(0) instanceof DeltaFilter, chain.toString());
+
+        ByteArrayOutputStream filtered = new ByteArrayOutputStream();
+        try (OutputStream out = chain.encoder(filtered)) {
+            out.write(data);
+        }
+        Histogram expected = Histogram.fromStream(new ByteArrayInputStream(filtered.toByteArray()));
+        for (int symbol = 0; symbol < 256; symbol++) {
+            Assertions.assertEquals(expected.getCount(symbol), selector.getHistogram().getCount(symbol));
+        }
+    }
+
+    @Test
+    void testDegenerateInputs() throws IOException {
+        assertEncodeDecode(new byte[0]);
+        assertEncodeDecode(new byte[] {42});
+        assertEncodeDecode(new byte[10000]);
+    }
+
+    /**
+     * @return  The chain the data was encoded with
+     */
+    private static FilterChain assertEncodeDecode(byte[] data) throws IOException {
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        HuffmanTranslator.encodeFiltered(new ByteArrayInputStream(data), new ByteArrayInputStream(data), encoded);
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        HuffmanTranslator.decode(new ByteArrayInputStream(encoded.toByteArray()), decoded);
+        Assertions.assertArrayEquals(data, decoded.toByteArray());
+
+        //The chosen chain should never be expected to do worse than no filtering
+        FilterSelector selector = FilterSelector.fromStream(new ByteArrayInputStream(data));
+        ByteArrayOutputStream unfiltered = new ByteArrayOutputStream();
+        HuffmanTranslator.encode(HuffmanTree.fromDataStream(new ByteArrayInputStream(data)),
+                new ByteArrayInputStream(data), unfiltered);
+        Assertions.assertTrue(encoded.size() <= unfiltered.size() + 8,
+                selector.getFilters() + ": " + encoded.size() + " > " + unfiltered.size());
+        return selector.getFilters();
+    }
+}
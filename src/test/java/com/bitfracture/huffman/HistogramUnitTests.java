@@ -0,0 +1,46 @@
+package com.bitfracture.huffman;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+class HistogramUnitTests {
+    @Test
+    void testHistogramSources() throws IOException {
+        //Large enough to be split across several tasks, with a long run to exercise the lanes
+        byte[] data = new byte[9 * 1024 * 1024 + 3];
+        new Random(7).nextBytes(data);
+        for (int i = 1000; i < 300000; i++) {
+            data[i] = 42;
+        }
+        long[] expected = new long[CanonicalCode.SYMBOL_COUNT];
+        for (byte byt : data) {
+            expected[byt & 0xFF]++;
+        }
+
+        Path file = Files.createTempFile("histogram", ".bin");
+        try {
+            Files.write(file, data);
+            ForkJoinPool pool = new ForkJoinPool(4);
+            Histogram fromStream = Histogram.fromStream(new ByteArrayInputStream(data));
+            Histogram fromBytes = Histogram.fromBytes(data, pool);
+            Histogram fromFile = Histogram.fromFile(file, pool);
+            pool.shutdown();
+
+            for (int symbol = 0; symbol < CanonicalCode.SYMBOL_COUNT; symbol++) {
+                Assertions.assertEquals(expected[symbol], fromStream.getCount(symbol));
+                Assertions.assertEquals(expected[symbol], fromBytes.getCount(symbol));
+                Assertions.assertEquals(expected[symbol], fromFile.getCount(symbol));
+            }
+            Assertions.assertEquals(data.length, fromFile.getTotal());
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.bitfracture.huffman;
+
+import com.bitfracture.serial.BitBlock;
+import com.bitfracture.serial.BitReader;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+class HuffmanDecodeTableUnitTests {
+    @Test
+    void testTableMatchesTreeDecode() throws IOException {
+        Random random = new Random(42);
+        byte[] original = new byte[5000];
+        for (int i = 0; i < original.length; i++) {
+            original[i] = (byte)(random.nextGaussian() * 20);
+        }
+        assertTableMatchesTree(original);
+    }
+
+    @Test
+    void testLongCodesUseLinkedTables() throws IOException {
+        //Fibonacci weights produce the deepest possible tree, with codes well past the root table width
+        List<Byte> data = new ArrayList<>();
+        int previous = 1;
+        int current = 1;
+        for (int symbol = 0; symbol < 20; symbol++) {
+            for (int i = 0; i < current; i++) {
+                data.add((byte)symbol);
+            }
+            int next = previous + current;
+            previous = current;
+            current = next;
+        }
+        byte[] original = new byte[data.size()];
+        for (int i = 0; i < original.length; i++) {
+            original[(i * 7919) % original.length] = data.get(i);
+        }
+        assertTableMatchesTree(original);
+    }
+
+    private static void assertTableMatchesTree(byte[] original) throws IOException {
+        HuffmanTree tree = HuffmanTree.fromDataStream(new ByteArrayInputStream(original));
+        Map<Byte, List<Boolean>> translator = tree.toMap();
+        List<Boolean> bits = new ArrayList<>();
+        for (byte byt : original) {
+            bits.addAll(translator.get(byt));
+        }
+
+        List<BitBlock> blocks = new ArrayList<>();
+        Iterator<Boolean> bitIter = bits.iterator();
+        while (bitIter.hasNext()) {
+            BitBlock block = new BitBlock();
+            block.pushAll(bitIter);
+            blocks.add(block);
+        }
+
+        List<Byte> expected = new ArrayList<>();
+        Iterator<Boolean> seekIter = bits.iterator();
+        while (seekIter.hasNext()) {
+            expected.add(tree.decode(seekIter));
+        }
+
+        assertTableDecodes(HuffmanDecodeTable.fromTree(tree), blocks, expected, original);
+        assertTableDecodes(HuffmanDecodeTable.fromCanonical(tree.getCanonicalCode().get()), blocks, expected, original);
+    }
+
+    private static void assertTableDecodes(HuffmanDecodeTable table, List<BitBlock> blocks, List<Byte> expected,
+                                           byte[] original) throws IOException {
+        Iterator<BitBlock> blockIter = blocks.iterator();
+        BitReader reader = new BitReader(() -> blockIter.hasNext() ? Optional.of(blockIter.next()) : Optional.empty());
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        table.decode(reader, decoded);
+
+        byte[] actual = decoded.toByteArray();
+        Assertions.assertEquals(expected.size(), actual.length);
+        for (int i = 0; i < actual.length; i++) {
+            Assertions.assertEquals(expected.get(i).byteValue(), actual[i]);
+            Assertions.assertEquals(original[i], actual[i]);
+        }
+    }
+}
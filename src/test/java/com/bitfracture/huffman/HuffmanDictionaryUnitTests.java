@@ -0,0 +1,77 @@
+package com.bitfracture.huffman;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class HuffmanDictionaryUnitTests {
+    private static final String SAMPLE = "{\"id\":12345,\"name\":\"widget\",\"price\":9.99,\"tags\":[\"a\",\"b\"]}\n";
+
+    @Test
+    void testDictionaryRoundTrip() throws IOException {
+        StringBuilder sample = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            sample.append(SAMPLE.replace("12345", Integer.toString(i * 7919)));
+        }
+        HuffmanDictionary dictionary = HuffmanDictionary.train(
+                new ByteArrayInputStream(sample.toString().getBytes(StandardCharsets.US_ASCII)));
+        DictionaryCache cache = new DictionaryCache(4);
+        cache.put(dictionary);
+
+        //A small record, including bytes which never appeared in the sample
+        byte[] record = "{\"id\":42,\"name\":\"gadget\u00ff\",\"price\":1.5}".getBytes(StandardCharsets.ISO_8859_1);
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        HuffmanTranslator.encode(dictionary, new ByteArrayInputStream(record), encoded);
+        Assertions.assertTrue(encoded.size() < record.length);
+
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        HuffmanTranslator.decode(new ByteArrayInputStream(encoded.toByteArray()), decoded, cache);
+        Assertions.assertArrayEquals(record, decoded.toByteArray());
+
+        //Without the dictionary, the data cannot be decoded
+        Assertions.assertThrows(IOException.class, () -> HuffmanTranslator.decode(
+                new ByteArrayInputStream(encoded.toByteArray()), new ByteArrayOutputStream()));
+    }
+
+    @Test
+    void testSerialIsStable() throws IOException {
+        HuffmanDictionary dictionary = HuffmanDictionary.train(
+                new ByteArrayInputStream(SAMPLE.getBytes(StandardCharsets.US_ASCII)));
+        HuffmanDictionary loaded = HuffmanDictionary.fromSerial(dictionary.toSerial());
+        Assertions.assertEquals(dictionary.getId(), loaded.getId());
+        Assertions.assertArrayEquals(dictionary.toSerial(), loaded.toSerial());
+
+        byte[] corrupt = dictionary.toSerial();
+        corrupt[corrupt.length - 1] ^= 1;
+        Assertions.assertThrows(IOException.class, () -> HuffmanDictionary.fromSerial(corrupt));
+    }
+
+    @Test
+    void testCacheEvictsLeastRecentlyUsed() throws IOException {
+        HuffmanDictionary first = HuffmanDictionary.train(new ByteArrayInputStream(new byte[] {1, 1, 1, 2}));
+        HuffmanDictionary second = HuffmanDictionary.train(new ByteArrayInputStream(new byte[] {3, 3, 3, 4}));
+        HuffmanDictionary third = HuffmanDictionary.train(new ByteArrayInputStream(new byte[] {5, 5, 5, 6}));
+        AtomicInteger loads = new AtomicInteger();
+        DictionaryCache cache = new DictionaryCache(2, id -> {
+            loads.incrementAndGet();
+            return id == second.getId() ? second : null;
+        });
+
+        cache.put(first);
+        cache.put(second);
+        Assertions.assertSame(first, cache.get(first.getId()).get());
+        cache.put(third);
+        Assertions.assertEquals(2, cache.size());
+        Assertions.assertEquals(0, loads.get());
+
+        //The second dictionary was used least recently, so it was dropped and must be loaded again
+        Assertions.assertSame(second, cache.get(second.getId()).get());
+        Assertions.assertEquals(1, loads.get());
+        Assertions.assertFalse(cache.get(first.getId() ^ 1).isPresent());
+    }
+}
@@ -0,0 +1,66 @@
+package com.bitfracture.huffman;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+class HuffmanEncoderUnitTests {
+    @Test
+    void testContextsRoundTripManyMessages() throws IOException {
+        byte[] sample = "{\"user\":\"alice\",\"action\":\"login\",\"ok\":true}".getBytes(StandardCharsets.US_ASCII);
+        HuffmanDictionary dictionary = HuffmanDictionary.train(new ByteArrayInputStream(sample));
+        DictionaryCache cache = new DictionaryCache(1);
+        cache.put(dictionary);
+
+        HuffmanEncoder treeEncoder = new HuffmanEncoder(HuffmanTree.fromDataStream(new ByteArrayInputStream(sample)));
+        HuffmanEncoder dictionaryEncoder = new HuffmanEncoder(dictionary);
+        HuffmanDecoder decoder = new HuffmanDecoder(cache);
+        byte[] encoded = new byte[4096];
+        byte[] decoded = new byte[4096];
+        Random random = new Random(5);
+        for (int i = 0; i < 200; i++) {
+            //Messages are slices of the sample, at offsets into the buffers
+            int offset = random.nextInt(sample.length);
+            int length = random.nextInt(sample.length - offset + 1);
+            HuffmanEncoder encoder = i % 2 == 0 ? treeEncoder : dictionaryEncoder;
+            int encodedLength = encoder.compress(sample, offset, length, encoded, 7, encoded.length - 7);
+            Assertions.assertTrue(encodedLength <= encoder.maxCompressedLength(length));
+
+            int decodedLength = decoder.decompress(encoded, 7, encodedLength, decoded, 3, decoded.length - 3);
+            Assertions.assertArrayEquals(Arrays.copyOfRange(sample, offset, offset + length),
+                    Arrays.copyOfRange(decoded, 3, 3 + decodedLength));
+
+            //The output is the same as the stream API's
+            ByteArrayOutputStream streamDecoded = new ByteArrayOutputStream();
+            HuffmanTranslator.decode(new ByteArrayInputStream(encoded, 7, encodedLength), streamDecoded, cache);
+            Assertions.assertEquals(length, streamDecoded.size());
+        }
+    }
+
+    @Test
+    void testDestinationTooSmall() throws IOException {
+        byte[] rawData = new byte[3000];
+        new Random(9).nextBytes(rawData);
+        HuffmanEncoder encoder = new HuffmanEncoder(HuffmanTree.fromDataStream(new ByteArrayInputStream(rawData)));
+        byte[] encoded = new byte[encoder.maxCompressedLength(rawData.length)];
+        Assertions.assertThrows(IndexOutOfBoundsException.class,
+                () -> encoder.compress(rawData, 0, rawData.length, encoded, 0, 100));
+
+        //A failed message leaves nothing behind to corrupt the next one
+        int encodedLength = encoder.compress(rawData, 0, rawData.length, encoded, 0, encoded.length);
+        HuffmanDecoder decoder = new HuffmanDecoder();
+        Assertions.assertThrows(IndexOutOfBoundsException.class,
+                () -> decoder.decompress(encoded, 0, encodedLength, new byte[rawData.length - 1], 0,
+                        rawData.length - 1));
+        byte[] decoded = new byte[rawData.length];
+        Assertions.assertEquals(rawData.length, decoder.decompress(encoded, 0, encodedLength, decoded, 0,
+                decoded.length));
+        Assertions.assertArrayEquals(rawData, decoded);
+    }
+}
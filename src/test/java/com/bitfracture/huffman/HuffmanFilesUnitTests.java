@@ -0,0 +1,42 @@
+package com.bitfracture.huffman;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+class HuffmanFilesUnitTests {
+    @Test
+    void testMappedCompressDecompress() throws IOException {
+        Random random = new Random(9);
+        byte[] rawData = new byte[300000];
+        for (int i = 0; i < rawData.length; i++) {
+            rawData[i] = (byte)(random.nextGaussian() * 10);
+        }
+
+        Path source = Files.createTempFile("mapped", ".bin");
+        Path compressed = Files.createTempFile("mapped", ".huff");
+        Path decompressed = Files.createTempFile("mapped", ".out");
+        try {
+            Files.write(source, rawData);
+            HuffmanFiles.compress(source, compressed);
+            HuffmanFiles.decompress(compressed, decompressed);
+            Assertions.assertArrayEquals(rawData, Files.readAllBytes(decompressed));
+
+            //The mapped path must produce exactly what the stream path does
+            ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+            HuffmanTranslator.encode(HuffmanTree.fromDataStream(new ByteArrayInputStream(rawData)),
+                    new ByteArrayInputStream(rawData), streamed);
+            Assertions.assertArrayEquals(streamed.toByteArray(), Files.readAllBytes(compressed));
+        } finally {
+            Files.delete(source);
+            Files.delete(compressed);
+            Files.delete(decompressed);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.bitfracture.huffman;
+
+import com.bitfracture.serial.VarInt;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+class HuffmanOutputStreamUnitTests {
+    @Test
+    void testStreamRoundTrip() throws IOException {
+        //Text followed by binary data, so that the code has to change part way through
+        Random random = new Random(13);
+        ByteArrayOutputStream source = new ByteArrayOutputStream();
+        byte[] line = "2024-01-01 INFO request served in 12ms\n".getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < 2000; i++) {
+            source.write(line);
+        }
+        byte[] binary = new byte[50000];
+        random.nextBytes(binary);
+        source.write(binary);
+        byte[] rawData = source.toByteArray();
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = new HuffmanOutputStream(compressed, 10000)) {
+            for (int offset = 0; offset < rawData.length;) {
+                int length = Math.min(random.nextInt(3000), rawData.length - offset);
+                out.write(rawData, offset, length);
+                offset += length;
+                if (random.nextInt(20) == 0) {
+                    out.flush();
+                }
+            }
+        }
+        Assertions.assertTrue(compressed.size() < rawData.length);
+
+        ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+        try (InputStream in = new HuffmanInputStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+            byte[] buffer = new byte[4096];
+            for (int read; (read = in.read(buffer, 0, random.nextInt(buffer.length) + 1)) >= 0;) {
+                decompressed.write(buffer, 0, read);
+            }
+        }
+        Assertions.assertArrayEquals(rawData, decompressed.toByteArray());
+
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        HuffmanTranslator.decode(new ByteArrayInputStream(compressed.toByteArray()), decoded);
+        Assertions.assertArrayEquals(rawData, decoded.toByteArray());
+    }
+
+    @Test
+    void testSampledStream() throws IOException {
+        //Words drawn from the same vocabulary throughout, then binary data that the sampled code cannot encode
+        Random random = new Random(29);
+        String[] words = {"request", "served", "in", "ms", "INFO", "WARN", "user", "session", "cache", "miss", "hit"};
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 400000) {
+            text.append(words[random.nextInt(words.length)]).append(random.nextInt(8) == 0 ? '\n' : ' ');
+        }
+        byte[] textBytes = text.toString().getBytes(StandardCharsets.US_ASCII);
+        byte[] binary = new byte[30000];
+        random.nextBytes(binary);
+        ByteArrayOutputStream source = new ByteArrayOutputStream();
+        source.write(textBytes);
+        source.write(binary);
+        byte[] rawData = source.toByteArray();
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = new HuffmanOutputStream(compressed, 16384, 65536, 0.05)) {
+            for (int offset = 0; offset < rawData.length;) {
+                int length = Math.min(random.nextInt(5000), rawData.length - offset);
+                out.write(rawData, offset, length);
+                offset += length;
+            }
+        }
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        HuffmanTranslator.decode(new ByteArrayInputStream(compressed.toByteArray()), decoded);
+        Assertions.assertArrayEquals(rawData, decoded.toByteArray());
+
+        //The text alone should come close to a code built from all of it in a second pass
+        ByteArrayOutputStream sampledText = new ByteArrayOutputStream();
+        HuffmanTranslator.encodeSampled(new ByteArrayInputStream(textBytes), sampledText, 16384, 65536);
+        ByteArrayOutputStream twoPassText = new ByteArrayOutputStream();
+        HuffmanTranslator.encode(HuffmanTranslator.generateTree(new ByteArrayInputStream(textBytes)),
+                new ByteArrayInputStream(textBytes), twoPassText);
+        Assertions.assertTrue(sampledText.size() < twoPassText.size() * 1.02,
+                sampledText.size() + " vs " + twoPassText.size());
+    }
+
+    @Test
+    void testSampledStreamShorterThanSample() throws IOException {
+        byte[] rawData = "short enough to be flushed before the sample fills".getBytes(StandardCharsets.US_ASCII);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = new HuffmanOutputStream(compressed, 16, 1024, 0.05)) {
+            out.write(rawData, 0, 10);
+            out.flush();
+            out.write(rawData, 10, rawData.length - 10);
+        }
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        HuffmanTranslator.decode(new ByteArrayInputStream(compressed.toByteArray()), decoded);
+        Assertions.assertArrayEquals(rawData, decoded.toByteArray());
+
+        compressed.reset();
+        new HuffmanOutputStream(compressed, 16, 1024, 0.05).close();
+        Assertions.assertEquals(-1, new HuffmanInputStream(new ByteArrayInputStream(compressed.toByteArray())).read());
+    }
+
+    @Test
+    void testEmptyStream() throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        new HuffmanOutputStream(compressed).close();
+        InputStream in = new HuffmanInputStream(new ByteArrayInputStream(compressed.toByteArray()));
+        Assertions.assertEquals(-1, in.read());
+    }
+
+    @Test
+    void testOversizedChunksAreRejected() throws IOException {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new HuffmanOutputStream(new ByteArrayOutputStream(), HuffmanOutputStream.MAX_CHUNK_SIZE + 1));
+
+        //A stored chunk claiming far more data than any writer produces
+        ByteArrayOutputStream stored = new ByteArrayOutputStream();
+        stored.write(HuffmanTranslator.STREAM_HEADER);
+        stored.write(HuffmanOutputStream.CHUNK_STORED);
+        VarInt.write(stored, Integer.MAX_VALUE);
+        assertRejected(stored.toByteArray(), "Invalid chunk length");
+
+        //A coded chunk of a few bytes, claiming far more encoded data than they could take
+        byte[] rawData = "abracadabra".getBytes(StandardCharsets.US_ASCII);
+        ByteArrayOutputStream coded = new ByteArrayOutputStream();
+        coded.write(HuffmanTranslator.STREAM_HEADER);
+        coded.write(HuffmanOutputStream.CHUNK_NEW_CODE);
+        coded.write(HuffmanTree.fromDataStream(new ByteArrayInputStream(rawData)).getCanonicalCode().get().toSerial());
+        VarInt.write(coded, rawData.length);
+        VarInt.write(coded, 1 << 30);
+        assertRejected(coded.toByteArray(), "Invalid encoded chunk length");
+    }
+
+    private static void assertRejected(byte[] data, String message) {
+        InputStream in = new HuffmanInputStream(new ByteArrayInputStream(data));
+        IOException e = Assertions.assertThrows(IOException.class, in::read);
+        Assertions.assertTrue(e.getMessage().startsWith(message), e.getMessage());
+    }
+}
@@ -1,5 +1,7 @@
 package com.bitfracture.huffman;
 
+import com.bitfracture.serial.BitBlock;
+import com.bitfracture.serial.VarInt;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
@@ -7,7 +9,10 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.Random;
 
 class HuffmanTranslatorUnitTests {
     @Test
@@ -33,4 +38,108 @@ class HuffmanTranslatorUnitTests {
             Assertions.assertEquals(rawData[i], decoded[i]);
         }
     }
+
+    @Test
+    void testEncodeDecodeLegacyFormat() throws IOException {
+        byte[] rawData = "I like fluffy bunnies because they are great!".getBytes(StandardCharsets.US_ASCII);
+        HuffmanTree tree = HuffmanTree.fromDataStream(new ByteArrayInputStream(rawData));
+        //A tree read back from the legacy serial form carries no canonical code, so the legacy header is written
+        assertEncodeDecode(rawData, HuffmanTree.fromSerial(tree.toSerial()));
+    }
+
+    @Test
+    void testEncodeDecodeDegenerateInputs() throws IOException {
+        byte[] empty = new byte[0];
+        assertEncodeDecode(empty, HuffmanTree.fromDataStream(new ByteArrayInputStream(empty)));
+        byte[] single = "aaaaaaaaaaaaaaaa".getBytes(StandardCharsets.US_ASCII);
+        assertEncodeDecode(single, HuffmanTree.fromDataStream(new ByteArrayInputStream(single)));
+    }
+
+    @Test
+    void testEncodeDecodeFramed() throws IOException {
+        Random random = new Random(5);
+        byte[] rawData = new byte[300000];
+        for (int i = 0; i < rawData.length; i++) {
+            rawData[i] = (byte)(random.nextGaussian() * 20);
+        }
+        HuffmanTree tree = HuffmanTree.fromDataStream(new ByteArrayInputStream(rawData));
+        ByteArrayOutputStream blocks = new ByteArrayOutputStream();
+        HuffmanTranslator.encode(tree, new ByteArrayInputStream(rawData), blocks);
+        for (int frameSize : new int[] {16, 1000, BitBlock.DEFAULT_FRAME_SIZE}) {
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+            HuffmanTranslator.encode(tree, new ByteArrayInputStream(rawData), encoded, frameSize);
+            ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+            HuffmanTranslator.decode(new ByteArrayInputStream(encoded.toByteArray()), decoded);
+            Assertions.assertArrayEquals(rawData, decoded.toByteArray());
+            if (frameSize >= 1000) {
+                Assertions.assertTrue(encoded.size() < blocks.size(), encoded.size() + " vs " + blocks.size());
+            }
+        }
+
+        //A frame size in the header beyond the limit is rejected before anything is allocated for it
+        ByteArrayOutputStream badHeader = new ByteArrayOutputStream();
+        badHeader.write(HuffmanTranslator.FRAMED_HEADER);
+        VarInt.write(badHeader, BitBlock.MAX_FRAME_SIZE + 4);
+        Assertions.assertThrows(IOException.class, () -> HuffmanTranslator.decode(
+                new ByteArrayInputStream(badHeader.toByteArray()), new ByteArrayOutputStream()));
+    }
+
+    @Test
+    void testCompressDecompressBuffers() throws IOException {
+        byte[] rawData = new byte[20000];
+        Random random = new Random(3);
+        for (int i = 0; i < rawData.length; i++) {
+            rawData[i] = (byte)(random.nextGaussian() * 30);
+        }
+        for (boolean direct : new boolean[] {false, true}) {
+            ByteBuffer source = allocate(rawData.length + 10, direct);
+            source.position(10);
+            source.put(rawData);
+            source.position(10);
+            ByteBuffer compressed = allocate(HuffmanTranslator.maxCompressedLength(rawData.length), direct);
+            int compressedLength = HuffmanTranslator.compress(source, compressed);
+            Assertions.assertEquals(compressedLength, compressed.position());
+            Assertions.assertFalse(source.hasRemaining());
+            compressed.flip();
+
+            //Too little space leaves both buffers as they were
+            ByteBuffer small = allocate(rawData.length - 1, direct);
+            Assertions.assertThrows(BufferOverflowException.class,
+                    () -> HuffmanTranslator.decompress(compressed, small));
+            Assertions.assertEquals(0, small.position());
+            Assertions.assertEquals(compressedLength, compressed.remaining());
+
+            ByteBuffer decompressed = allocate(rawData.length, direct);
+            Assertions.assertEquals(rawData.length, HuffmanTranslator.decompress(compressed, decompressed));
+            Assertions.assertFalse(compressed.hasRemaining());
+            decompressed.flip();
+            byte[] decoded = new byte[rawData.length];
+            decompressed.get(decoded);
+            Assertions.assertArrayEquals(rawData, decoded);
+        }
+    }
+
+    private static ByteBuffer allocate(int capacity, boolean direct) {
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    private static void assertEncodeDecode(byte[] rawData, HuffmanTree tree) throws IOException {
+        ByteArrayOutputStream outEncode = new ByteArrayOutputStream();
+        InputStream inEncode = new ByteArrayInputStream(rawData);
+
+        HuffmanTranslator.encode(tree, inEncode, outEncode);
+
+        byte[] encoded = outEncode.toByteArray();
+        InputStream inDecode = new ByteArrayInputStream(encoded);
+        ByteArrayOutputStream outDecode = new ByteArrayOutputStream();
+
+        HuffmanTranslator.decode(inDecode, outDecode);
+
+        byte[] decoded = outDecode.toByteArray();
+
+        Assertions.assertEquals(decoded.length, rawData.length);
+        for (int i = 0; i < rawData.length; i++) {
+            Assertions.assertEquals(rawData[i], decoded[i]);
+        }
+    }
 }
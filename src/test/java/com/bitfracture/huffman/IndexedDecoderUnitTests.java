@@ -0,0 +1,105 @@
+package com.bitfracture.huffman;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+class IndexedDecoderUnitTests {
+    @Test
+    void testIndexedRangesAndParallelDecode() throws IOException {
+        Random random = new Random(5);
+        byte[] rawData = new byte[100000];
+        for (int i = 0; i < rawData.length; i++) {
+            rawData[i] = (byte)('a' + Math.abs(random.nextGaussian() * 6));
+        }
+        HuffmanTree tree = HuffmanTree.fromDataStream(new ByteArrayInputStream(rawData));
+        ByteArrayOutputStream outEncode = new ByteArrayOutputStream();
+        new IndexedEncoder(7777).encode(tree, new ByteArrayInputStream(rawData), outEncode);
+        byte[] encoded = outEncode.toByteArray();
+
+        //The indexed format still decodes sequentially
+        ByteArrayOutputStream outDecode = new ByteArrayOutputStream();
+        HuffmanTranslator.decode(new ByteArrayInputStream(encoded), outDecode);
+        Assertions.assertArrayEquals(rawData, outDecode.toByteArray());
+
+        Path file = Files.createTempFile("indexed", ".huff");
+        try (FileChannel channel = FileChannel.open(Files.write(file, encoded), StandardOpenOption.READ)) {
+            channel.position(123);
+            IndexedDecoder decoder = IndexedDecoder.open(channel);
+            Assertions.assertEquals(123, channel.position());
+            Assertions.assertEquals(rawData.length, decoder.getUncompressedLength());
+            Assertions.assertEquals(13, decoder.getFrameCount());
+
+            for (int i = 0; i < 50; i++) {
+                int offset = random.nextInt(rawData.length);
+                int length = random.nextInt(Math.min(20000, rawData.length - offset) + 1);
+                ByteArrayOutputStream range = new ByteArrayOutputStream();
+                decoder.decodeRange(offset, length, range);
+                Assertions.assertArrayEquals(Arrays.copyOfRange(rawData, offset, offset + length), range.toByteArray());
+            }
+
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+            decoder.decodeParallel(parallel, executor, 4);
+            executor.shutdown();
+            Assertions.assertArrayEquals(rawData, parallel.toByteArray());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void testCorruptFilesAreRejected() throws IOException {
+        byte[] rawData = new byte[50000];
+        new Random(6).nextBytes(rawData);
+        HuffmanTree tree = HuffmanTree.fromDataStream(new ByteArrayInputStream(rawData));
+        ByteArrayOutputStream outEncode = new ByteArrayOutputStream();
+        new IndexedEncoder(10000).encode(tree, new ByteArrayInputStream(rawData), outEncode);
+        byte[] encoded = outEncode.toByteArray();
+        int footer = encoded.length - IndexedEncoder.FOOTER_SIZE;
+        int index = footer - 5 * IndexedEncoder.INDEX_ENTRY_SIZE;
+
+        assertRejected(Arrays.copyOf(encoded, encoded.length - 1), false);
+        assertRejected(Arrays.copyOf(encoded, 300), false);
+        //The trailing magic, the frame count, the index position, and the first frame's offset in the index
+        for (int position : new int[] {encoded.length - 1, footer + 11, footer + 3, index + 8}) {
+            byte[] corrupt = encoded.clone();
+            corrupt[position] ^= 0x40;
+            assertRejected(corrupt, false);
+        }
+        //The length in the first frame's header is only read when the frame is decoded
+        byte[] corrupt = encoded.clone();
+        long framePosition = 0;
+        for (int i = 0; i < 8; i++) {
+            framePosition |= (corrupt[index + i] & 0xFFL) << (8 * i);
+        }
+        corrupt[(int)framePosition + 3] ^= 0x40;
+        assertRejected(corrupt, true);
+    }
+
+    private static void assertRejected(byte[] encoded, boolean whenDecoded) throws IOException {
+        Path file = Files.createTempFile("indexed", ".huff");
+        try (FileChannel channel = FileChannel.open(Files.write(file, encoded), StandardOpenOption.READ)) {
+            if (whenDecoded) {
+                IndexedDecoder decoder = IndexedDecoder.open(channel);
+                Assertions.assertThrows(IOException.class,
+                        () -> decoder.decodeRange(0, 1, new ByteArrayOutputStream()));
+            } else {
+                Assertions.assertThrows(IOException.class, () -> IndexedDecoder.open(channel));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
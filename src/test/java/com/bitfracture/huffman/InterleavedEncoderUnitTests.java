@@ -0,0 +1,47 @@
+package com.bitfracture.huffman;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+class InterleavedEncoderUnitTests {
+    @Test
+    void testInterleavedRoundTrip() throws IOException {
+        //Geometric weights give codes well past the root table width, and the length leaves a partial final group
+        Random random = new Random(11);
+        byte[] rawData = new byte[100003];
+        for (int i = 0; i < rawData.length; i++) {
+            rawData[i] = (byte)Math.min(40, Long.numberOfTrailingZeros(random.nextLong() | Long.MIN_VALUE));
+        }
+        HuffmanTree tree = HuffmanTree.fromDataStream(new ByteArrayInputStream(rawData));
+        Assertions.assertTrue(tree.getCanonicalCode().get().getMaxLength() > HuffmanDecodeTable.ROOT_BITS);
+        for (int frameSize : new int[] {1, 3, 7777, InterleavedEncoder.DEFAULT_FRAME_SIZE}) {
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+            new InterleavedEncoder(frameSize).encode(tree, new ByteArrayInputStream(rawData), encoded);
+            ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+            HuffmanTranslator.decode(new ByteArrayInputStream(encoded.toByteArray()), decoded);
+            Assertions.assertArrayEquals(rawData, decoded.toByteArray());
+        }
+    }
+
+    @Test
+    void testCorruptStreamLengthIsRejected() throws IOException {
+        byte[] rawData = "interleaved streams must each be used up exactly".getBytes(StandardCharsets.US_ASCII);
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        HuffmanTranslator.encodeInterleaved(HuffmanTree.fromDataStream(new ByteArrayInputStream(rawData)),
+                new ByteArrayInputStream(rawData), encoded);
+        byte[] corrupt = encoded.toByteArray();
+        //The frame's uncompressed length follows the header and code lengths; claim one symbol fewer
+        int lengthIndex = HuffmanTranslator.INTERLEAVED_HEADER.length
+                + HuffmanTree.fromDataStream(new ByteArrayInputStream(rawData)).getCanonicalCode().get()
+                .toSerial().length;
+        corrupt[lengthIndex]--;
+        Assertions.assertThrows(IOException.class, () -> HuffmanTranslator.decode(
+                new ByteArrayInputStream(corrupt), new ByteArrayOutputStream()));
+    }
+}
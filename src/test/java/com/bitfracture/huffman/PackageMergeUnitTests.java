@@ -0,0 +1,63 @@
+package com.bitfracture.huffman;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.stream.IntStream;
+
+class PackageMergeUnitTests {
+    @Test
+    void testLengthsAreBoundedAndComplete() {
+        //Fibonacci weights give an optimal tree 29 levels deep
+        int[] symbols = IntStream.range(0, 30).toArray();
+        long[] weights = new long[CanonicalCode.SYMBOL_COUNT];
+        weights[0] = 1;
+        weights[1] = 1;
+        for (int i = 2; i < symbols.length; i++) {
+            weights[i] = weights[i - 1] + weights[i - 2];
+        }
+
+        int[] lengths = PackageMerge.codeLengths(symbols, weights, 12);
+        double kraft = 0;
+        for (int symbol : symbols) {
+            Assertions.assertTrue(lengths[symbol] >= 1 && lengths[symbol] <= 12);
+            kraft += Math.pow(2, -lengths[symbol]);
+        }
+        Assertions.assertEquals(1.0, kraft, 1e-12);
+
+        //Without a binding limit, package-merge must cost exactly as much as the Huffman tree
+        int[] unbounded = PackageMerge.codeLengths(symbols, weights, 31);
+        Assertions.assertEquals(29, IntStream.of(unbounded).max().getAsInt());
+        long huffmanCost = 0;
+        for (int i = 0; i < symbols.length; i++) {
+            huffmanCost += weights[i] * Math.min(i == 0 ? 29 : 30 - i, 29);
+        }
+        long cost = 0;
+        for (int symbol : symbols) {
+            cost += weights[symbol] * unbounded[symbol];
+        }
+        Assertions.assertEquals(huffmanCost, cost);
+    }
+
+    @Test
+    void testLimitedTreeEncodeDecode() throws IOException {
+        byte[] rawData = new byte[1 << 16];
+        for (int i = 0; i < rawData.length; i++) {
+            rawData[i] = (byte)Integer.numberOfTrailingZeros(i | 0x10000);
+        }
+        HuffmanTree tree = HuffmanTranslator.generateTree(new ByteArrayInputStream(rawData), 5);
+        Assertions.assertTrue(IntStream.of(tree.toCodeLengths()).max().getAsInt() <= 5);
+
+        ByteArrayOutputStream outEncode = new ByteArrayOutputStream();
+        HuffmanTranslator.encode(tree, new ByteArrayInputStream(rawData), outEncode);
+        ByteArrayOutputStream outDecode = new ByteArrayOutputStream();
+        HuffmanTranslator.decode(new ByteArrayInputStream(outEncode.toByteArray()), outDecode);
+        Assertions.assertArrayEquals(rawData, outDecode.toByteArray());
+
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> HuffmanTranslator.generateTree(new ByteArrayInputStream(rawData), 3));
+    }
+}
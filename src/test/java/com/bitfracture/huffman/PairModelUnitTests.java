@@ -0,0 +1,90 @@
+package com.bitfracture.huffman;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+class PairModelUnitTests {
+    @Test
+    void testSamplesRoundTrip() throws IOException {
+        //Quantized 16-bit sensor readings, whose high and low bytes say little alone but a lot together
+        Random random = new Random(37);
+        ByteBuffer samples = ByteBuffer.allocate(200001);
+        double value = 0;
+        while (samples.remaining() >= 2) {
+            value += random.nextGaussian() * 3;
+            value *= 0.99;
+            samples.putShort((short)(20000 + Math.round(value) * 37));
+        }
+        samples.put((byte)7);
+        byte[] rawData = samples.array();
+
+        PairModel model = HuffmanTranslator.generatePairModel(new ByteArrayInputStream(rawData));
+        Assertions.assertTrue(model.getPairCount() > 0);
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        HuffmanTranslator.encode(model, new ByteArrayInputStream(rawData), encoded);
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        HuffmanTranslator.decode(new ByteArrayInputStream(encoded.toByteArray()), decoded);
+        Assertions.assertArrayEquals(rawData, decoded.toByteArray());
+
+        ByteArrayOutputStream standard = new ByteArrayOutputStream();
+        HuffmanTranslator.encode(HuffmanTranslator.generateTree(new ByteArrayInputStream(rawData)),
+                new ByteArrayInputStream(rawData), standard);
+        Assertions.assertTrue(encoded.size() < standard.size() * 0.85, encoded.size() + " vs " + standard.size());
+    }
+
+    @Test
+    void testUtf16RoundTrip() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            text.append("Temperatur \u00FCber ").append(i % 97).append(" Grad \u2013 Messpunkt ").append(i)
+                    .append('\n');
+        }
+        byte[] rawData = text.toString().getBytes(StandardCharsets.UTF_16BE);
+        PairModel model = PairModel.fromStream(new ByteArrayInputStream(rawData));
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        HuffmanTranslator.encode(model, new ByteArrayInputStream(rawData), encoded);
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        HuffmanTranslator.decode(new ByteArrayInputStream(encoded.toByteArray()), decoded);
+        Assertions.assertArrayEquals(rawData, decoded.toByteArray());
+    }
+
+    @Test
+    void testWithoutPairs() throws IOException {
+        //Too little data for any pair to be worth a symbol, including a single odd byte
+        for (byte[] rawData : new byte[][] {{42}, "abcdefg".getBytes(StandardCharsets.US_ASCII), {}}) {
+            PairModel model = PairModel.fromStream(new ByteArrayInputStream(rawData));
+            Assertions.assertEquals(0, model.getPairCount());
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+            HuffmanTranslator.encode(model, new ByteArrayInputStream(rawData), encoded);
+            ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+            HuffmanTranslator.decode(new ByteArrayInputStream(encoded.toByteArray()), decoded);
+            Assertions.assertArrayEquals(rawData, decoded.toByteArray());
+        }
+    }
+
+    @Test
+    void testSerialRoundTrip() throws IOException {
+        byte[] rawData = new byte[20000];
+        for (int i = 0; i < rawData.length; i += 2) {
+            rawData[i] = (byte)(i % 6);
+            rawData[i + 1] = (byte)(i % 10);
+        }
+        PairModel model = PairModel.fromStream(new ByteArrayInputStream(rawData));
+        byte[] serial = model.toSerial();
+        PairModel loaded = PairModel.fromSerialStream(new DataInputStream(new ByteArrayInputStream(serial)));
+        Assertions.assertEquals(model.getPairCount(), loaded.getPairCount());
+        Assertions.assertArrayEquals(serial, loaded.toSerial());
+
+        byte[] tooMany = {(byte)0x81, 0x40};
+        Assertions.assertThrows(IOException.class,
+                () -> PairModel.fromSerialStream(new DataInputStream(new ByteArrayInputStream(tooMany))));
+    }
+}
@@ -0,0 +1,37 @@
+package com.bitfracture.huffman;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+class ParallelEncoderUnitTests {
+    @Test
+    void testParallelEncodeDecode() throws IOException {
+        Random random = new Random(3);
+        byte[] rawData = new byte[200000];
+        for (int i = 0; i < rawData.length; i++) {
+            rawData[i] = (byte)(random.nextGaussian() * 30);
+        }
+        HuffmanTree tree = HuffmanTree.fromDataStream(new ByteArrayInputStream(rawData));
+
+        //Small, odd-sized chunks leave partial blocks throughout the stream
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        ByteArrayOutputStream outEncode = new ByteArrayOutputStream();
+        new ParallelEncoder(executor, 9999, 3).encode(tree, new ByteArrayInputStream(rawData), outEncode);
+        ByteArrayOutputStream outFramed = new ByteArrayOutputStream();
+        new ParallelEncoder(executor, 9999, 3, 4096).encode(tree, new ByteArrayInputStream(rawData), outFramed);
+        executor.shutdown();
+
+        for (ByteArrayOutputStream encoded : new ByteArrayOutputStream[] {outEncode, outFramed}) {
+            ByteArrayOutputStream outDecode = new ByteArrayOutputStream();
+            HuffmanTranslator.decode(new ByteArrayInputStream(encoded.toByteArray()), outDecode);
+            Assertions.assertArrayEquals(rawData, outDecode.toByteArray());
+        }
+    }
+}
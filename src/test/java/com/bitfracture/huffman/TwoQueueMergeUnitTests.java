@@ -0,0 +1,63 @@
+package com.bitfracture.huffman;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.stream.IntStream;
+
+class TwoQueueMergeUnitTests {
+    @Test
+    void testMatchesPackageMergeCost() {
+        //Without a binding limit, package-merge is optimal, so the two must spend exactly the same number of bits
+        Random random = new Random(31);
+        for (int trial = 0; trial < 50; trial++) {
+            int[] symbols = IntStream.range(0, CanonicalCode.SYMBOL_COUNT)
+                    .filter(symbol -> random.nextInt(4) != 0)
+                    .toArray();
+            long[] weights = new long[CanonicalCode.SYMBOL_COUNT];
+            for (int symbol : symbols) {
+                weights[symbol] = 1 + (random.nextBoolean() ? random.nextInt(10) : random.nextInt(1000000));
+            }
+
+            int[] lengths = TwoQueueMerge.codeLengths(symbols, weights);
+            int[] optimal = PackageMerge.codeLengths(symbols, weights, CanonicalCode.MAX_CODE_LENGTH);
+            long cost = 0;
+            long optimalCost = 0;
+            double kraft = 0;
+            for (int symbol : symbols) {
+                cost += weights[symbol] * lengths[symbol];
+                optimalCost += weights[symbol] * optimal[symbol];
+                kraft += Math.pow(2, -lengths[symbol]);
+            }
+            Assertions.assertEquals(optimalCost, cost);
+            Assertions.assertEquals(1.0, kraft, 1e-12);
+        }
+    }
+
+    @Test
+    void testDeepAndHeavyTrees() {
+        //Fibonacci weights give a tree 29 levels deep
+        int[] symbols = IntStream.range(0, 30).toArray();
+        long[] weights = new long[CanonicalCode.SYMBOL_COUNT];
+        weights[0] = 1;
+        weights[1] = 1;
+        for (int i = 2; i < symbols.length; i++) {
+            weights[i] = weights[i - 1] + weights[i - 2];
+        }
+        Assertions.assertEquals(29, IntStream.of(TwoQueueMerge.codeLengths(symbols, weights)).max().getAsInt());
+
+        //Weights too large to pack alongside their symbol are still sorted correctly
+        long[] heavy = new long[CanonicalCode.SYMBOL_COUNT];
+        heavy[3] = Long.MAX_VALUE / 2;
+        heavy[7] = Long.MAX_VALUE / 4;
+        heavy[9] = Long.MAX_VALUE / 4;
+        int[] lengths = TwoQueueMerge.codeLengths(new int[] {3, 7, 9}, heavy);
+        Assertions.assertEquals(1, lengths[3]);
+        Assertions.assertEquals(2, lengths[7]);
+        Assertions.assertEquals(2, lengths[9]);
+
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> TwoQueueMerge.codeLengths(new int[] {1}, weights));
+    }
+}
@@ -0,0 +1,49 @@
+package com.bitfracture.huffmanrunner;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+class OptionsUnitTests {
+    @Test
+    void testParse() {
+        Options options = Options.parse(new String[] {
+                "compress", "-m", "interleaved", "in.txt", "--threads=3", "-b", "64K", "--buffer-size", "2MB", "-q",
+                "--pipeline", "--frame-size=1M", "--", "-out"});
+        Assertions.assertEquals("compress", options.getCommand());
+        Assertions.assertEquals(Mode.INTERLEAVED, options.getMode());
+        Assertions.assertEquals(3, options.getThreads());
+        Assertions.assertEquals(64 * 1024, options.getBlockSize());
+        Assertions.assertEquals(2 * 1024 * 1024, options.getBufferSize());
+        Assertions.assertTrue(options.isQuiet());
+        Assertions.assertTrue(options.isPipelined());
+        Assertions.assertEquals(1024 * 1024, options.getFrameSize());
+        Assertions.assertEquals(Arrays.asList("in.txt", "-out"), options.getOperands());
+        Assertions.assertEquals("-", options.getOperand(2, "-"));
+
+        Options defaults = Options.parse(new String[] {"decompress", "-"});
+        Assertions.assertEquals(Mode.PARALLEL, defaults.getMode());
+        Assertions.assertEquals(0, defaults.getBlockSize());
+        Assertions.assertFalse(defaults.isPipelined());
+        Assertions.assertEquals(Arrays.asList("-"), defaults.getOperands());
+
+        //Stdin can only be read once
+        Assertions.assertEquals(Mode.PARALLEL, Options.parse(new String[] {"compress", "in.txt"}).getMode());
+        Assertions.assertEquals(Mode.SAMPLED, Options.parse(new String[] {"compress"}).getMode());
+        Assertions.assertEquals(Mode.SAMPLED, Options.parse(new String[] {"compress", "-", "out.huff"}).getMode());
+        Assertions.assertEquals(Mode.STANDARD, Options.parse(new String[] {"compress", "-m", "standard"}).getMode());
+    }
+
+    @Test
+    void testMalformed() {
+        for (String[] args : new String[][] {
+                {}, {"compress", "--mode", "zip"}, {"compress", "-t"}, {"compress", "-t", "0"}, {"compress", "-x"},
+                {"bench", "-b", "12Q"}, {"bench", "-b", "4G"}, {"compress", "--frame-size", "1001"},
+                {"compress", "--frame-size", "64M"}}) {
+            Assertions.assertThrows(IllegalArgumentException.class, () -> Options.parse(args), Arrays.toString(args));
+        }
+        Assertions.assertEquals(1 << 30, Options.parseSize("1g"));
+        Assertions.assertEquals(1000, Options.parseSize("1000"));
+    }
+}
@@ -0,0 +1,68 @@
+package com.bitfracture.metrics;
+
+import com.bitfracture.huffman.HuffmanTranslator;
+import com.bitfracture.huffman.HuffmanTree;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+class CodecMetricsUnitTests {
+    @Test
+    void testMetricsCoverEncodeAndDecode() throws IOException, JMException {
+        byte[] rawData = new byte[50000];
+        Random random = new Random(4);
+        for (int i = 0; i < rawData.length; i++) {
+            rawData[i] = (byte)(random.nextGaussian() * 20);
+        }
+
+        CodecMetrics metrics = CodecMetrics.register();
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        try {
+            Assertions.assertTrue(Metrics.isEnabled());
+            HuffmanTree tree = HuffmanTranslator.generateTree(new ByteArrayInputStream(rawData));
+            HuffmanTranslator.encode(tree, new ByteArrayInputStream(rawData), encoded);
+            HuffmanTranslator.decode(new ByteArrayInputStream(encoded.toByteArray()), new ByteArrayOutputStream());
+
+            Assertions.assertEquals(rawData.length, metrics.getBytesCounted());
+            Assertions.assertEquals(rawData.length, metrics.getBytesEncoded());
+            Assertions.assertEquals(rawData.length, metrics.getBytesDecoded());
+            Assertions.assertTrue(metrics.getBlocksWritten() > 1);
+            Assertions.assertEquals(metrics.getBlocksWritten(), metrics.getBlocksRead());
+            Assertions.assertEquals(metrics.getEncodedBytesWritten(), metrics.getEncodedBytesRead());
+            Assertions.assertTrue(metrics.getEncodedBytesWritten() < encoded.size());
+            for (Phase phase : Phase.values()) {
+                Assertions.assertTrue(metrics.getNanos(phase) > 0, phase.name());
+            }
+
+            //A Huffman code is within one bit per byte of the entropy, and never below it
+            Assertions.assertEquals(1, metrics.getCodesBuilt());
+            Assertions.assertTrue(metrics.getEntropyGap() >= 0 && metrics.getEntropyGap() < 1);
+            Assertions.assertEquals(8.0 * metrics.getEncodedBytesWritten() / rawData.length,
+                    metrics.getAverageCodeLength(), 8.0 * 4 * metrics.getBlocksWritten() / rawData.length + 0.01);
+
+            //The same numbers are visible over JMX
+            Assertions.assertEquals(metrics.getBytesEncoded(), ManagementFactory.getPlatformMBeanServer()
+                    .getAttribute(new ObjectName(CodecMetrics.OBJECT_NAME), "BytesEncoded"));
+        } finally {
+            metrics.unregister();
+        }
+
+        //Once unregistered, nothing more is collected
+        Assertions.assertFalse(Metrics.isEnabled());
+        Assertions.assertFalse(ManagementFactory.getPlatformMBeanServer()
+                .isRegistered(new ObjectName(CodecMetrics.OBJECT_NAME)));
+        HuffmanTranslator.decode(new ByteArrayInputStream(encoded.toByteArray()), new ByteArrayOutputStream());
+        Assertions.assertEquals(rawData.length, metrics.getBytesDecoded());
+
+        metrics.reset();
+        Assertions.assertEquals(0, metrics.getBytesDecoded());
+        Assertions.assertEquals(0, metrics.getAverageCodeLength());
+    }
+}
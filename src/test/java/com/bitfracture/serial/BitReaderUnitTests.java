@@ -0,0 +1,93 @@
+package com.bitfracture.serial;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+class BitReaderUnitTests {
+    @Test
+    void testBitReaderAcrossBlocks() {
+        List<Boolean> bits = new ArrayList<>();
+        Random random = new SecureRandom();
+        for (int i = 0; i < 20000; i++) {
+            bits.add(random.nextBoolean());
+        }
+
+        //Deliberately leave a partial byte at the end of the first block
+        List<BitBlock> blocks = new ArrayList<>();
+        blocks.add(new BitBlock());
+        blocks.get(0).pushAll(bits.subList(0, 1003).iterator());
+        Iterator<Boolean> rest = bits.subList(1003, bits.size()).iterator();
+        while (rest.hasNext()) {
+            BitBlock block = new BitBlock();
+            block.pushAll(rest);
+            blocks.add(block);
+        }
+
+        Iterator<BitBlock> blockIter = blocks.iterator();
+        BitReader reader = new BitReader(() -> blockIter.hasNext() ? Optional.of(blockIter.next()) : Optional.empty());
+
+        int step = 1;
+        Iterator<Boolean> orgIter = bits.iterator();
+        while (orgIter.hasNext()) {
+            int available = reader.fill();
+            int take = Math.min(step, available);
+            long peeked = reader.peek();
+            for (int i = 0; i < take; i++) {
+                Assertions.assertEquals(orgIter.next(), ((peeked >>> i) & 1) == 1);
+            }
+            reader.skip(take);
+            step = step % 13 + 1;
+        }
+        Assertions.assertEquals(0, reader.fill());
+    }
+
+    @Test
+    void testFramesFromShortReads() throws IOException {
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        BitWriter writer = new BitWriter(written, 64);
+        for (int i = 0; i < 1000; i++) {
+            writer.write(i, 13);
+        }
+        writer.finish();
+        byte[] frames = written.toByteArray();
+
+        //A stream which never returns more than 3 bytes at once, as pipes and sockets may
+        InputStream trickle = new ByteArrayInputStream(frames) {
+            @Override
+            public synchronized int read(byte[] buffer, int offset, int length) {
+                return super.read(buffer, offset, Math.min(length, 3));
+            }
+        };
+        BitReader reader = new BitReader(trickle, 64);
+        for (int i = 0; i < 1000; i++) {
+            if (reader.available() < 13) {
+                reader.fill();
+            }
+            Assertions.assertEquals(i & 0x1FFF, reader.peek() & 0x1FFF);
+            reader.skip(13);
+        }
+        Assertions.assertEquals(0, reader.fill());
+
+        //Ending part way through a frame, or claiming more bits than a frame holds, is an error
+        BitReader truncated = new BitReader(new ByteArrayInputStream(Arrays.copyOf(frames, frames.length - 1)), 64);
+        Assertions.assertThrows(RuntimeException.class, () -> {
+            while (truncated.fill() > 0) {
+                truncated.skip(truncated.available());
+            }
+        });
+        BitReader oversized = new BitReader(new ByteArrayInputStream(frames), 32);
+        Assertions.assertThrows(RuntimeException.class, oversized::fill);
+    }
+}
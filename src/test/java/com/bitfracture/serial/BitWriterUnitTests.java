@@ -0,0 +1,84 @@
+package com.bitfracture.serial;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+class BitWriterUnitTests {
+    @Test
+    void testBitWriterMatchesBitBlocks() throws IOException {
+        Random random = new Random(11);
+        List<Boolean> bits = new ArrayList<>();
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        BitWriter writer = new BitWriter(written);
+        for (int i = 0; i < 5000; i++) {
+            int count = random.nextInt(33);
+            long value = random.nextLong();
+            writer.write(value, count);
+            for (int bit = 0; bit < count; bit++) {
+                bits.add(((value >>> bit) & 1) == 1);
+            }
+        }
+        writer.finish();
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        Iterator<Boolean> bitIter = bits.iterator();
+        while (bitIter.hasNext()) {
+            BitBlock block = new BitBlock();
+            block.pushAll(bitIter);
+            expected.write(block.toSerial());
+        }
+
+        Assertions.assertArrayEquals(expected.toByteArray(), written.toByteArray());
+    }
+
+    @Test
+    void testFramedRoundTrip() throws IOException {
+        for (int frameSize : new int[] {16, 100, 4096, BitBlock.DEFAULT_FRAME_SIZE}) {
+            Random random = new Random(frameSize);
+            long[] values = new long[20000];
+            int[] counts = new int[values.length];
+            long bitCount = 0;
+            ByteArrayOutputStream written = new ByteArrayOutputStream();
+            BitWriter writer = new BitWriter(written, frameSize);
+            for (int i = 0; i < values.length; i++) {
+                values[i] = random.nextLong();
+                counts[i] = random.nextInt(33);
+                writer.write(values[i], counts[i]);
+                bitCount += counts[i];
+            }
+            writer.finish();
+            Assertions.assertEquals(BitBlock.serialSize(bitCount, frameSize), written.size());
+
+            BitReader reader = new BitReader(new ByteArrayInputStream(written.toByteArray()), frameSize);
+            for (int i = 0; i < values.length; i++) {
+                if (reader.available() < counts[i]) {
+                    reader.fill();
+                }
+                long mask = (1L << counts[i]) - 1;
+                Assertions.assertEquals(values[i] & mask, reader.peek() & mask);
+                reader.skip(counts[i]);
+            }
+            Assertions.assertEquals(0, reader.fill());
+        }
+    }
+
+    @Test
+    void testFrameSizeLimits() {
+        for (int frameSize : new int[] {0, 12, 1001, BitBlock.MAX_FRAME_SIZE + 4}) {
+            Assertions.assertThrows(IllegalArgumentException.class,
+                    () -> new BitWriter(new ByteArrayOutputStream(), frameSize));
+        }
+        //A full frame of the largest size needs a 4-byte bit count
+        Assertions.assertEquals(BitBlock.MAX_FRAME_SIZE + 4,
+                BitBlock.serialSize(8L * BitBlock.MAX_FRAME_SIZE, BitBlock.MAX_FRAME_SIZE));
+        Assertions.assertEquals(0, BitBlock.serialSize(0, BitBlock.DEFAULT_FRAME_SIZE));
+    }
+}
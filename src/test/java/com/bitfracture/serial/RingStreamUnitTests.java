@@ -0,0 +1,124 @@
+package com.bitfracture.serial;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+class RingStreamUnitTests {
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testRoundTrip() throws IOException {
+        byte[] rawData = new byte[100003];
+        new Random(11).nextBytes(rawData);
+
+        //Buffers far smaller than the data, so that both stages wait on each other many times
+        ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        try (InputStream in = new RingInputStream(new ByteArrayInputStream(rawData), executor, 1000, 2);
+             OutputStream out = new RingOutputStream(copy, executor, 777, 3)) {
+            Assertions.assertEquals(rawData[0] & 0xFF, in.read());
+            out.write(rawData[0]);
+            byte[] buffer = new byte[4096];
+            for (int read; (read = in.read(buffer)) >= 0;) {
+                out.write(buffer, 0, read);
+            }
+            Assertions.assertEquals(-1, in.read());
+        }
+        Assertions.assertArrayEquals(rawData, copy.toByteArray());
+    }
+
+    @Test
+    void testEmpty() throws IOException {
+        ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        try (InputStream in = new RingInputStream(new ByteArrayInputStream(new byte[0]), executor);
+             OutputStream out = new RingOutputStream(copy, executor)) {
+            Assertions.assertEquals(-1, in.read(new byte[10]));
+            out.flush();
+        }
+        Assertions.assertEquals(0, copy.size());
+    }
+
+    @Test
+    void testSourceFailure() throws IOException {
+        InputStream failing = new InputStream() {
+            private int count = 0;
+
+            @Override
+            public int read() throws IOException {
+                return read(new byte[1], 0, 1);
+            }
+
+            @Override
+            public int read(byte[] data, int offset, int length) throws IOException {
+                if (count >= 2500) {
+                    throw new IOException("Disk on fire");
+                }
+                int read = Math.min(length, Math.min(300, 2500 - count));
+                count += read;
+                return read;
+            }
+        };
+        try (InputStream in = new RingInputStream(failing, executor, 1000, 2)) {
+            //Everything read before the failure is still delivered
+            byte[] buffer = new byte[2500];
+            int total = 0;
+            for (int read; total < buffer.length && (read = in.read(buffer, total, buffer.length - total)) >= 0;) {
+                total += read;
+            }
+            Assertions.assertEquals(2500, total);
+            IOException e = Assertions.assertThrows(IOException.class, () -> in.read(buffer));
+            Assertions.assertEquals("Disk on fire", e.getMessage());
+            Assertions.assertThrows(IOException.class, in::read);
+        }
+    }
+
+    @Test
+    void testSinkFailure() {
+        AtomicBoolean closed = new AtomicBoolean();
+        OutputStream failing = new OutputStream() {
+            @Override
+            public void write(int byt) throws IOException {
+                throw new IOException("Disk full");
+            }
+
+            @Override
+            public void close() {
+                closed.set(true);
+            }
+        };
+        RingOutputStream out = new RingOutputStream(failing, executor, 100, 2);
+        //Writing far more than the ring holds must not wait forever once the sink has failed
+        IOException e = Assertions.assertThrows(IOException.class, () -> {
+            for (int i = 0; i < 10000; i++) {
+                out.write(new byte[50]);
+            }
+        });
+        Assertions.assertEquals("Disk full", e.getMessage());
+        //Closing reports the failure again, but still closes the sink
+        Assertions.assertThrows(IOException.class, out::close);
+        Assertions.assertTrue(closed.get());
+    }
+
+    @Test
+    void testBadParameters() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new RingInputStream(new ByteArrayInputStream(new byte[1]), executor, 0, 2));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new RingOutputStream(new ByteArrayOutputStream(), executor, 10, 0));
+    }
+}